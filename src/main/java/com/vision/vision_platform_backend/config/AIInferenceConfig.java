@@ -1,11 +1,16 @@
 package com.vision.vision_platform_backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * AI推理服务配置
@@ -13,14 +18,36 @@ import java.time.Duration;
 @Configuration
 public class AIInferenceConfig {
 
+    @Value("${ai.inference.connect-timeout:5000}")
+    private int connectTimeout;
+
+    @Value("${ai.inference.pool.client-threads:8}")
+    private int clientThreads;
+
     /**
-     * 配置RestTemplate用于HTTP请求
+     * 推理服务器专用HTTP客户端
+     * 基于JDK HttpClient：连接池复用keep-alive连接，响应以非阻塞方式回调，
+     * 每主机并发连接数由 InferenceHttpClient 控制。
+     * 客户端线程只处理连接上的读写事件，线程数固定；响应体的阻塞解析在 InferenceHttpClient 自己的线程池中进行。
+     * 连接池参数是JVM全局的系统属性，需在启动时以 -Djdk.httpclient.keepalive.timeout=秒数、
+     * -Djdk.httpclient.connectionPoolSize=空闲连接上限 指定
      */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder
-                .setConnectTimeout(Duration.ofSeconds(10))
-                .setReadTimeout(Duration.ofSeconds(30))
+    public HttpClient inferenceServerHttpClient() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, clientThreads);
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ai-inference-http-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
                 .build();
     }
-}
\ No newline at end of file
+}
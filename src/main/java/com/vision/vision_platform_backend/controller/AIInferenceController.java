@@ -3,16 +3,37 @@ package com.vision.vision_platform_backend.controller;
 import com.vision.vision_platform_backend.dto.AIInferenceDto;
 import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
 import com.vision.vision_platform_backend.service.AIInferenceService;
+import com.vision.vision_platform_backend.service.BatchInferenceJobService;
+import com.vision.vision_platform_backend.service.InferenceConcurrencyLimiter;
+import com.vision.vision_platform_backend.service.InferenceHistoryCleanupJob;
 import com.vision.vision_platform_backend.service.InferenceHistoryService;
+import com.vision.vision_platform_backend.service.ModelResidencyManager;
+import com.vision.vision_platform_backend.service.VisualizationImageStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AI推理控制器
@@ -23,12 +44,34 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class AIInferenceController {
 
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private AIInferenceService aiInferenceService;
 
     @Autowired
     private InferenceHistoryService inferenceHistoryService;
 
+    @Autowired
+    private InferenceHistoryCleanupJob cleanupJob;
+
+    @Autowired
+    private BatchInferenceJobService batchInferenceJobService;
+
+    @Autowired
+    private InferenceConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private VisualizationImageStore visualizationStore;
+
+    @Autowired
+    private ModelResidencyManager residencyManager;
+
+    private static final String BUSY_MESSAGE = "推理服务繁忙，请稍后重试";
+
     /**
      * 健康检查
      */
@@ -47,15 +90,24 @@ public class AIInferenceController {
 
     /**
      * 单张图片推理
+     * 异步返回，等待推理服务器响应期间不占用请求线程
      */
     @PostMapping("/infer")
-    public ResponseEntity<AIInferenceDto.InferenceResponse> inferSingle(
+    public CompletableFuture<ResponseEntity<AIInferenceDto.InferenceResponse>> inferSingle(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "task", defaultValue = "detect") String task,
             @RequestParam(value = "model_name", required = false) String modelName,
             @RequestParam(value = "confidence_threshold", defaultValue = "0.5") Double confidenceThreshold,
             @RequestParam(value = "nms_threshold", defaultValue = "0.4") Double nmsThreshold) {
-        
+
+        InferenceConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            AIInferenceDto.InferenceResponse busyResponse = new AIInferenceDto.InferenceResponse();
+            busyResponse.setSuccess(false);
+            busyResponse.setErrorMessage(BUSY_MESSAGE);
+            return CompletableFuture.completedFuture(tooManyRequests().body(busyResponse));
+        }
+
         try {
             AIInferenceDto.InferenceRequest request = new AIInferenceDto.InferenceRequest();
             request.setTask(task);
@@ -63,13 +115,16 @@ public class AIInferenceController {
             request.setConfidenceThreshold(confidenceThreshold);
             request.setNmsThreshold(nmsThreshold);
             
-            AIInferenceDto.InferenceResponse response = aiInferenceService.inferSingle(file, request);
-            return ResponseEntity.ok(response);
+            return aiInferenceService.inferSingleAsync(file, request)
+                .whenComplete((response, error) ->
+                    permit.release(error == null && Boolean.TRUE.equals(response.getSuccess()), 1))
+                .thenApply(ResponseEntity::ok);
         } catch (Exception e) {
+            permit.release(false, 1);
             AIInferenceDto.InferenceResponse errorResponse = new AIInferenceDto.InferenceResponse();
             errorResponse.setSuccess(false);
             errorResponse.setErrorMessage(e.getMessage());
-            return ResponseEntity.badRequest().body(errorResponse);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(errorResponse));
         }
     }
 
@@ -82,25 +137,105 @@ public class AIInferenceController {
             @RequestParam(value = "task", defaultValue = "detect") String task,
             @RequestParam(value = "model_name", required = false) String modelName,
             @RequestParam(value = "confidence_threshold", defaultValue = "0.5") Double confidenceThreshold,
-            @RequestParam(value = "nms_threshold", defaultValue = "0.4") Double nmsThreshold) {
-        
+            @RequestParam(value = "nms_threshold", defaultValue = "0.4") Double nmsThreshold,
+            @RequestParam(value = "batch_size", required = false) Integer batchSize) {
+
+        InferenceConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            return tooManyRequests().body(Map.of(
+                "success", false,
+                "error", BUSY_MESSAGE
+            ));
+        }
+
+        boolean success = false;
         try {
             AIInferenceDto.BatchInferenceRequest request = new AIInferenceDto.BatchInferenceRequest();
             request.setTask(task);
             request.setModelName(modelName);
             request.setConfidenceThreshold(confidenceThreshold);
             request.setNmsThreshold(nmsThreshold);
+            request.setBatchSize(batchSize);
             
             Map<String, Object> response = aiInferenceService.inferBatch(files, request);
+            success = Boolean.TRUE.equals(response.get("success"));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                 "success", false,
                 "error", e.getMessage()
             ));
+        } finally {
+            permit.release(success, files.size());
         }
     }
 
+    /**
+     * 并发超过上限时的429响应，Retry-After取近期平均推理耗时
+     */
+    private ResponseEntity.BodyBuilder tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(concurrencyLimiter.getRetryAfterSeconds()));
+    }
+
+    /**
+     * 提交异步批量推理任务
+     * 立即返回任务ID，任务ID同时是推理历史记录中的taskId
+     */
+    @PostMapping("/infer/batch/jobs")
+    public ResponseEntity<?> submitBatchJob(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "task", defaultValue = "detect") String task,
+            @RequestParam(value = "model_name", required = false) String modelName,
+            @RequestParam(value = "confidence_threshold", defaultValue = "0.5") Double confidenceThreshold,
+            @RequestParam(value = "nms_threshold", defaultValue = "0.4") Double nmsThreshold,
+            @RequestParam(value = "batch_size", required = false) Integer batchSize) {
+
+        try {
+            AIInferenceDto.BatchInferenceRequest request = new AIInferenceDto.BatchInferenceRequest();
+            request.setTask(task);
+            request.setModelName(modelName);
+            request.setConfidenceThreshold(confidenceThreshold);
+            request.setNmsThreshold(nmsThreshold);
+            request.setBatchSize(batchSize);
+
+            AIInferenceDto.BatchJobStatus job = batchInferenceJobService.submit(files, request);
+            return ResponseEntity.accepted().body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).body(Map.of(
+                "success", false,
+                "error", "批量推理任务队列已满，请稍后重试"
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * 查询异步批量推理任务状态、文件进度和已完成部分的结果
+     */
+    @GetMapping("/infer/batch/jobs/{jobId}")
+    public ResponseEntity<AIInferenceDto.BatchJobStatus> getBatchJob(
+            @PathVariable String jobId,
+            @RequestParam(value = "include_results", defaultValue = "true") Boolean includeResults) {
+        return batchInferenceJobService.getJob(jobId, includeResults)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 取消异步批量推理任务
+     */
+    @DeleteMapping("/infer/batch/jobs/{jobId}")
+    public ResponseEntity<AIInferenceDto.BatchJobStatus> cancelBatchJob(@PathVariable String jobId) {
+        return batchInferenceJobService.cancelJob(jobId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * 获取可用模型列表
      */
@@ -204,6 +339,104 @@ public class AIInferenceController {
         }
     }
 
+    /**
+     * 获取推理节点路由状态（健康、摘除、未完成请求数、已加载模型）
+     */
+    @GetMapping("/endpoints")
+    public ResponseEntity<List<Map<String, Object>>> getEndpoints() {
+        return ResponseEntity.ok(aiInferenceService.getEndpointStatus());
+    }
+
+    /**
+     * 获取模型目录状态（最近刷新时间、是否刷新失败）
+     */
+    @GetMapping("/models/catalogue/status")
+    public ResponseEntity<Map<String, Object>> getModelCatalogueStatus() {
+        return ResponseEntity.ok(aiInferenceService.getModelCatalogueStatus());
+    }
+
+    /**
+     * 获取推理并发限制状态
+     */
+    @GetMapping("/limiter")
+    public ResponseEntity<Map<String, Object>> getLimiterStatus() {
+        return ResponseEntity.ok(Map.of(
+            "limit", concurrencyLimiter.getLimit(),
+            "in_flight", concurrencyLimiter.getInFlight(),
+            "rejected", concurrencyLimiter.getRejectedCount()
+        ));
+    }
+
+    /**
+     * 获取推理调度通道状态（各通道排队数、在途调用数、排队耗时）
+     */
+    @GetMapping("/lanes")
+    public ResponseEntity<Map<String, Object>> getLaneStatus() {
+        return ResponseEntity.ok(aiInferenceService.getLaneStatus());
+    }
+
+    /**
+     * 获取模型驻留状态（各节点内存占用、各模型需求估计、最近的加载/卸载决定）
+     */
+    @GetMapping("/models/residency")
+    public ResponseEntity<Map<String, Object>> getResidencyStatus() {
+        return ResponseEntity.ok(residencyManager.getStatus());
+    }
+
+    /**
+     * 获取请求对冲状态（各模型对冲延迟、对冲次数、对冲胜出次数）
+     */
+    @GetMapping("/hedging")
+    public ResponseEntity<Map<String, Object>> getHedgingStatus() {
+        return ResponseEntity.ok(aiInferenceService.getHedgingStatus());
+    }
+
+    /**
+     * 获取推理结果缓存统计信息（含进行中请求合并次数）
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(aiInferenceService.getCacheStats());
+    }
+
+    /**
+     * 获取转存的可视化图片
+     * 图片按内容寻址、内容不会变化，响应可长期缓存；容器支持时以sendfile方式直接从文件发送
+     */
+    @GetMapping("/visualizations/{imageId}")
+    public void getVisualizationImage(@PathVariable String imageId,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        Optional<Path> image = visualizationStore.find(imageId);
+        if (image.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable().getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + imageId + "\"")) {
+            return;
+        }
+
+        Path file = image.get();
+        long size = Files.size(file);
+        response.setContentType(visualizationStore.contentType(file));
+        response.setContentLengthLong(size);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+
     /**
      * 获取推理服务配置
      */
@@ -350,10 +583,10 @@ public class AIInferenceController {
     public ResponseEntity<Map<String, String>> cleanupInferenceHistory(
             @RequestBody InferenceHistoryDto.CleanupInferenceHistoryRequest request) {
         try {
-            inferenceHistoryService.cleanupInferenceHistory(request);
+            boolean started = cleanupJob.start(request);
             return ResponseEntity.ok(Map.of(
-                "message", "推理历史记录清理完成",
-                "cleanedCount", "0"
+                "message", started ? "推理历史清理任务已开始" : "已有清理任务在运行",
+                "jobId", String.valueOf(cleanupJob.getStatus().get("job_id"))
             ));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
@@ -1,6 +1,11 @@
 package com.vision.vision_platform_backend.controller;
 
+import com.vision.vision_platform_backend.service.InferenceHistoryCleanupJob;
+import com.vision.vision_platform_backend.service.InferenceHistoryPartitionManager;
+import com.vision.vision_platform_backend.service.InferenceHistoryRollups;
 import com.vision.vision_platform_backend.service.InferenceHistoryService;
+import com.vision.vision_platform_backend.service.InferenceHistoryTextIndex;
+import com.vision.vision_platform_backend.service.InferenceHistoryWriter;
 import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
@@ -24,9 +29,24 @@ public class InferenceHistoryController {
 
     private static final Logger log = LoggerFactory.getLogger(InferenceHistoryController.class);
     private final InferenceHistoryService inferenceHistoryService;
+    private final InferenceHistoryWriter historyWriter;
+    private final InferenceHistoryTextIndex textIndex;
+    private final InferenceHistoryRollups rollups;
+    private final InferenceHistoryPartitionManager partitionManager;
+    private final InferenceHistoryCleanupJob cleanupJob;
 
-    public InferenceHistoryController(InferenceHistoryService inferenceHistoryService) {
+    public InferenceHistoryController(InferenceHistoryService inferenceHistoryService,
+                                      InferenceHistoryWriter historyWriter,
+                                      InferenceHistoryTextIndex textIndex,
+                                      InferenceHistoryRollups rollups,
+                                      InferenceHistoryPartitionManager partitionManager,
+                                      InferenceHistoryCleanupJob cleanupJob) {
         this.inferenceHistoryService = inferenceHistoryService;
+        this.historyWriter = historyWriter;
+        this.textIndex = textIndex;
+        this.rollups = rollups;
+        this.partitionManager = partitionManager;
+        this.cleanupJob = cleanupJob;
     }
 
     /**
@@ -121,6 +141,7 @@ public class InferenceHistoryController {
 
     /**
      * 获取推理历史记录列表（简化版搜索）
+     * 传入cursor参数（第一页为空字符串）时使用游标分页，按响应中的nextCursor继续翻页
      */
     @GetMapping
     public ResponseEntity<?> getInferenceHistoryList(
@@ -137,7 +158,9 @@ public class InferenceHistoryController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
             @RequestParam(required = false) Boolean isFavorite,
-            @RequestParam(required = false) Integer minRating) {
+            @RequestParam(required = false) Integer minRating,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") Boolean estimateTotal) {
         try {
             InferenceHistoryDto.SearchInferenceHistoryRequest request = 
                     InferenceHistoryDto.SearchInferenceHistoryRequest.builder()
@@ -155,6 +178,8 @@ public class InferenceHistoryController {
                             .endTime(endTime)
                             .isFavorite(isFavorite)
                             .minRating(minRating)
+                            .cursor(cursor)
+                            .estimateTotal(estimateTotal)
                             .build();
 
             InferenceHistoryDto.InferenceHistoryPageResponse response = 
@@ -263,16 +288,103 @@ public class InferenceHistoryController {
     }
 
     /**
-     * 清理推理历史记录
+     * 获取推理历史异步写入状态（队列积压、写入/丢弃数量、本地日志）
+     */
+    @GetMapping("/writer/status")
+    public ResponseEntity<?> getWriterStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "获取推理历史写入状态成功",
+                "data", historyWriter.getStatus()
+        ));
+    }
+
+    /**
+     * 在后台重建关键词索引（已有数据首次启用索引或索引不一致时使用）
+     */
+    @PostMapping("/text-index/rebuild")
+    public ResponseEntity<?> rebuildTextIndex() {
+        if (!textIndex.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "关键词索引未启用"
+            ));
+        }
+        boolean started = textIndex.rebuild();
+        return ResponseEntity.ok(Map.of(
+                "success", started,
+                "message", started ? "关键词索引重建已开始" : "关键词索引正在重建中",
+                "data", textIndex.getStatus()
+        ));
+    }
+
+    /**
+     * 从原始记录回填统计汇总（首次启用或汇总与记录不一致时使用）
+     */
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<?> backfillRollups() {
+        if (!rollups.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "统计汇总未启用"
+            ));
+        }
+        boolean started = rollups.backfill();
+        return ResponseEntity.ok(Map.of(
+                "success", started,
+                "message", started ? "统计汇总回填已开始" : "统计汇总正在回填中",
+                "data", rollups.getStatus()
+        ));
+    }
+
+    /**
+     * 获取统计汇总状态及最近一次回填进度
+     */
+    @GetMapping("/rollups/status")
+    public ResponseEntity<?> getRollupStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "获取统计汇总状态成功",
+                "data", rollups.getStatus()
+        ));
+    }
+
+    /**
+     * 获取分区及保留策略状态（当前分区、最近的创建/删除记录）
+     */
+    @GetMapping("/partitions")
+    public ResponseEntity<?> getPartitionStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "获取分区状态成功",
+                "data", partitionManager.getStatus()
+        ));
+    }
+
+    /**
+     * 获取关键词索引状态及最近一次重建进度
+     */
+    @GetMapping("/text-index/status")
+    public ResponseEntity<?> getTextIndexStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "获取关键词索引状态成功",
+                "data", textIndex.getStatus()
+        ));
+    }
+
+    /**
+     * 清理推理历史记录（后台分块执行，进度通过 /cleanup/status 查询）
      */
     @PostMapping("/cleanup")
     public ResponseEntity<?> cleanupInferenceHistory(
             @RequestBody InferenceHistoryDto.CleanupInferenceHistoryRequest request) {
         try {
-            inferenceHistoryService.cleanupInferenceHistory(request);
+            boolean started = cleanupJob.start(request);
             return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "message", "清理推理历史记录成功"
+                    "success", started,
+                    "message", started ? "清理任务已开始" : "已有清理任务在运行",
+                    "data", cleanupJob.getStatus()
             ));
         } catch (Exception e) {
             log.error("清理推理历史记录失败: {}", e.getMessage(), e);
@@ -283,6 +395,31 @@ public class InferenceHistoryController {
         }
     }
 
+    /**
+     * 获取清理任务进度及影响的记录数
+     */
+    @GetMapping("/cleanup/status")
+    public ResponseEntity<?> getCleanupStatus() {
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "获取清理任务状态成功",
+                "data", cleanupJob.getStatus()
+        ));
+    }
+
+    /**
+     * 停止正在运行的清理任务，已处理的记录不回滚
+     */
+    @PostMapping("/cleanup/cancel")
+    public ResponseEntity<?> cancelCleanup() {
+        boolean cancelled = cleanupJob.cancel();
+        return ResponseEntity.ok(Map.of(
+                "success", cancelled,
+                "message", cancelled ? "已请求停止清理任务" : "没有正在运行的清理任务",
+                "data", cleanupJob.getStatus()
+        ));
+    }
+
     /**
      * 标记为收藏/取消收藏
      */
@@ -130,7 +130,7 @@ public class AIInferenceDto {
         @JsonProperty("class_name")
         private String className;
         private Double confidence;
-        private String mask; // base64编码的掩码
+        private SpooledText mask; // base64编码的掩码，较大时转存临时文件
         private List<Double> bbox; // [x1, y1, x2, y2]
 
         // Getters and Setters
@@ -143,8 +143,8 @@ public class AIInferenceDto {
         public Double getConfidence() { return confidence; }
         public void setConfidence(Double confidence) { this.confidence = confidence; }
         
-        public String getMask() { return mask; }
-        public void setMask(String mask) { this.mask = mask; }
+        public SpooledText getMask() { return mask; }
+        public void setMask(SpooledText mask) { this.mask = mask; }
         
         public List<Double> getBbox() { return bbox; }
         public void setBbox(List<Double> bbox) { this.bbox = bbox; }
@@ -165,7 +165,11 @@ public class AIInferenceDto {
         private List<DetectionResult> detections;
         private List<SegmentationResult> segmentations;
         @JsonProperty("visualization_image")
-        private String visualizationImage; // base64编码的可视化图片
+        private SpooledText visualizationImage; // base64编码的可视化图片，较大时转存临时文件
+        @JsonProperty("visualization_image_id")
+        private String visualizationImageId; // 可视化图片已转存时的图片ID（内容哈希）
+        @JsonProperty("visualization_image_url")
+        private String visualizationImageUrl;
         @JsonProperty("error_message")
         private String errorMessage;
         private LocalDateTime timestamp;
@@ -192,8 +196,14 @@ public class AIInferenceDto {
         public List<SegmentationResult> getSegmentations() { return segmentations; }
         public void setSegmentations(List<SegmentationResult> segmentations) { this.segmentations = segmentations; }
         
-        public String getVisualizationImage() { return visualizationImage; }
-        public void setVisualizationImage(String visualizationImage) { this.visualizationImage = visualizationImage; }
+        public SpooledText getVisualizationImage() { return visualizationImage; }
+        public void setVisualizationImage(SpooledText visualizationImage) { this.visualizationImage = visualizationImage; }
+        
+        public String getVisualizationImageId() { return visualizationImageId; }
+        public void setVisualizationImageId(String visualizationImageId) { this.visualizationImageId = visualizationImageId; }
+        
+        public String getVisualizationImageUrl() { return visualizationImageUrl; }
+        public void setVisualizationImageUrl(String visualizationImageUrl) { this.visualizationImageUrl = visualizationImageUrl; }
         
         public String getErrorMessage() { return errorMessage; }
         public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
@@ -270,6 +280,20 @@ public class AIInferenceDto {
         private LocalDateTime lastRequestTime;
         @JsonProperty("requests_per_minute")
         private Double requestsPerMinute;
+        @JsonProperty("p50_inference_time")
+        private Double p50InferenceTime;
+        @JsonProperty("p90_inference_time")
+        private Double p90InferenceTime;
+        @JsonProperty("p99_inference_time")
+        private Double p99InferenceTime;
+        @JsonProperty("p999_inference_time")
+        private Double p999InferenceTime;
+        @JsonProperty("by_model")
+        private Map<String, LatencySummary> byModel;
+        @JsonProperty("by_task")
+        private Map<String, LatencySummary> byTask;
+        @JsonProperty("by_endpoint")
+        private Map<String, LatencySummary> byEndpoint;
 
         // Getters and Setters
         public Long getTotalRequests() { return totalRequests; }
@@ -295,6 +319,79 @@ public class AIInferenceDto {
         
         public Double getRequestsPerMinute() { return requestsPerMinute; }
         public void setRequestsPerMinute(Double requestsPerMinute) { this.requestsPerMinute = requestsPerMinute; }
+        
+        public Double getP50InferenceTime() { return p50InferenceTime; }
+        public void setP50InferenceTime(Double p50InferenceTime) { this.p50InferenceTime = p50InferenceTime; }
+        
+        public Double getP90InferenceTime() { return p90InferenceTime; }
+        public void setP90InferenceTime(Double p90InferenceTime) { this.p90InferenceTime = p90InferenceTime; }
+        
+        public Double getP99InferenceTime() { return p99InferenceTime; }
+        public void setP99InferenceTime(Double p99InferenceTime) { this.p99InferenceTime = p99InferenceTime; }
+        
+        public Double getP999InferenceTime() { return p999InferenceTime; }
+        public void setP999InferenceTime(Double p999InferenceTime) { this.p999InferenceTime = p999InferenceTime; }
+        
+        public Map<String, LatencySummary> getByModel() { return byModel; }
+        public void setByModel(Map<String, LatencySummary> byModel) { this.byModel = byModel; }
+        
+        public Map<String, LatencySummary> getByTask() { return byTask; }
+        public void setByTask(Map<String, LatencySummary> byTask) { this.byTask = byTask; }
+        
+        public Map<String, LatencySummary> getByEndpoint() { return byEndpoint; }
+        public void setByEndpoint(Map<String, LatencySummary> byEndpoint) { this.byEndpoint = byEndpoint; }
+    }
+
+    /**
+     * 按模型、任务或推理节点分组的耗时统计，耗时单位为毫秒
+     */
+    public static class LatencySummary {
+        @JsonProperty("total_requests")
+        private Long totalRequests;
+        @JsonProperty("successful_requests")
+        private Long successfulRequests;
+        @JsonProperty("failed_requests")
+        private Long failedRequests;
+        @JsonProperty("average_inference_time")
+        private Double averageInferenceTime;
+        @JsonProperty("p50_inference_time")
+        private Double p50InferenceTime;
+        @JsonProperty("p90_inference_time")
+        private Double p90InferenceTime;
+        @JsonProperty("p99_inference_time")
+        private Double p99InferenceTime;
+        @JsonProperty("p999_inference_time")
+        private Double p999InferenceTime;
+        @JsonProperty("max_inference_time")
+        private Double maxInferenceTime;
+
+        // Getters and Setters
+        public Long getTotalRequests() { return totalRequests; }
+        public void setTotalRequests(Long totalRequests) { this.totalRequests = totalRequests; }
+        
+        public Long getSuccessfulRequests() { return successfulRequests; }
+        public void setSuccessfulRequests(Long successfulRequests) { this.successfulRequests = successfulRequests; }
+        
+        public Long getFailedRequests() { return failedRequests; }
+        public void setFailedRequests(Long failedRequests) { this.failedRequests = failedRequests; }
+        
+        public Double getAverageInferenceTime() { return averageInferenceTime; }
+        public void setAverageInferenceTime(Double averageInferenceTime) { this.averageInferenceTime = averageInferenceTime; }
+        
+        public Double getP50InferenceTime() { return p50InferenceTime; }
+        public void setP50InferenceTime(Double p50InferenceTime) { this.p50InferenceTime = p50InferenceTime; }
+        
+        public Double getP90InferenceTime() { return p90InferenceTime; }
+        public void setP90InferenceTime(Double p90InferenceTime) { this.p90InferenceTime = p90InferenceTime; }
+        
+        public Double getP99InferenceTime() { return p99InferenceTime; }
+        public void setP99InferenceTime(Double p99InferenceTime) { this.p99InferenceTime = p99InferenceTime; }
+        
+        public Double getP999InferenceTime() { return p999InferenceTime; }
+        public void setP999InferenceTime(Double p999InferenceTime) { this.p999InferenceTime = p999InferenceTime; }
+        
+        public Double getMaxInferenceTime() { return maxInferenceTime; }
+        public void setMaxInferenceTime(Double maxInferenceTime) { this.maxInferenceTime = maxInferenceTime; }
     }
 
     /**
@@ -332,4 +429,93 @@ public class AIInferenceDto {
         public Map<String, Object> getValues() { return values; }
         public void setValues(Map<String, Object> values) { this.values = values; }
     }
+
+    /**
+     * 异步批量推理任务状态
+     */
+    public static class BatchJobStatus {
+        @JsonProperty("job_id")
+        private String jobId;
+        private String status; // QUEUED, PROCESSING, SUCCESS, FAILED, CANCELLED
+        @JsonProperty("total_files")
+        private Integer totalFiles;
+        @JsonProperty("processed_files")
+        private Integer processedFiles;
+        @JsonProperty("failed_files")
+        private Integer failedFiles;
+        private Double progress; // 0-100
+        @JsonProperty("created_at")
+        private LocalDateTime createdAt;
+        @JsonProperty("started_at")
+        private LocalDateTime startedAt;
+        @JsonProperty("finished_at")
+        private LocalDateTime finishedAt;
+        @JsonProperty("error_message")
+        private String errorMessage;
+        private List<BatchJobFile> files;
+        private List<Map<String, Object>> results; // 已完成文件的推理结果
+
+        // Getters and Setters
+        public String getJobId() { return jobId; }
+        public void setJobId(String jobId) { this.jobId = jobId; }
+        
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+        
+        public Integer getTotalFiles() { return totalFiles; }
+        public void setTotalFiles(Integer totalFiles) { this.totalFiles = totalFiles; }
+        
+        public Integer getProcessedFiles() { return processedFiles; }
+        public void setProcessedFiles(Integer processedFiles) { this.processedFiles = processedFiles; }
+        
+        public Integer getFailedFiles() { return failedFiles; }
+        public void setFailedFiles(Integer failedFiles) { this.failedFiles = failedFiles; }
+        
+        public Double getProgress() { return progress; }
+        public void setProgress(Double progress) { this.progress = progress; }
+        
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+        
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+        
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+        
+        public String getErrorMessage() { return errorMessage; }
+        public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+        
+        public List<BatchJobFile> getFiles() { return files; }
+        public void setFiles(List<BatchJobFile> files) { this.files = files; }
+        
+        public List<Map<String, Object>> getResults() { return results; }
+        public void setResults(List<Map<String, Object>> results) { this.results = results; }
+    }
+
+    /**
+     * 异步批量推理任务中单个文件的进度
+     */
+    public static class BatchJobFile {
+        private Integer index;
+        private String filename;
+        private String status; // PENDING, SUCCESS, FAILED, CANCELLED
+
+        public BatchJobFile() {}
+
+        public BatchJobFile(Integer index, String filename, String status) {
+            this.index = index;
+            this.filename = filename;
+            this.status = status;
+        }
+
+        public Integer getIndex() { return index; }
+        public void setIndex(Integer index) { this.index = index; }
+        
+        public String getFilename() { return filename; }
+        public void setFilename(String filename) { this.filename = filename; }
+        
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+    }
 }
\ No newline at end of file
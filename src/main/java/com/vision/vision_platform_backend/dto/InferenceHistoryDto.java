@@ -103,6 +103,7 @@ public class InferenceHistoryDto {
         private String notes;
         private Integer resultRating;
         private Boolean isFavorite;
+        private String inferenceServer;
 
 
     }
@@ -138,6 +139,15 @@ public class InferenceHistoryDto {
         private String sortBy = "createdAt";
         private String sortDirection = "desc";
 
+        /**
+         * 游标分页：不为null时按 (createdAt, id) 定位，忽略page且不统计总数；空字符串表示第一页
+         */
+        private String cursor;
+
+        /**
+         * 游标分页时是否返回估算的总记录数
+         */
+        private Boolean estimateTotal;
 
     }
 
@@ -158,6 +168,15 @@ public class InferenceHistoryDto {
         private Boolean last;
         private Boolean empty;
 
+        /**
+         * 游标分页时下一页的游标，已是最后一页时为null
+         */
+        private String nextCursor;
+
+        /**
+         * 游标分页时的估算总记录数（未请求或无法估算时为null）
+         */
+        private Long estimatedTotal;
 
     }
 
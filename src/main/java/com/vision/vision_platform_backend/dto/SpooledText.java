@@ -0,0 +1,179 @@
+package com.vision.vision_platform_backend.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 推理响应中的大文本字段（base64编码的可视化图片、分割掩码）
+ * 反序列化时直接从解析器写出，超过阈值的内容转存到临时文件，堆上只保留文件句柄；
+ * 序列化时再从文件流式写回JSON。临时文件在对象不再被引用后删除。
+ */
+@JsonSerialize(using = SpooledText.Serializer.class)
+@JsonDeserialize(using = SpooledText.Deserializer.class)
+public final class SpooledText {
+
+    /**
+     * 超过该字符数的内容转存到临时文件
+     */
+    public static final int SPOOL_THRESHOLD_CHARS = 64 * 1024;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final String inline;
+    private final Path file;
+    private final int length;
+
+    private SpooledText(String inline, Path file, int length) {
+        this.inline = inline;
+        this.file = file;
+        this.length = length;
+        if (file != null) {
+            CLEANER.register(this, () -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // 临时目录由系统清理
+                }
+            });
+        }
+    }
+
+    /**
+     * 包装内存中的文本
+     */
+    public static SpooledText of(String text) {
+        return text == null ? null : new SpooledText(text, null, text.length());
+    }
+
+    /**
+     * 字符数
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 内容是否已转存到临时文件
+     */
+    public boolean isSpooled() {
+        return file != null;
+    }
+
+    /**
+     * 以流的方式读取内容
+     */
+    public Reader openReader() throws IOException {
+        return file != null ? Files.newBufferedReader(file, StandardCharsets.UTF_8) : new StringReader(inline);
+    }
+
+    /**
+     * 完整内容，已转存的内容会重新读入内存，仅在确实需要字符串时使用
+     */
+    @Override
+    public String toString() {
+        if (file == null) {
+            return inline;
+        }
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class Serializer extends JsonSerializer<SpooledText> {
+        @Override
+        public void serialize(SpooledText value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            // TokenBuffer（convertValue等）不支持从Reader写入字符串
+            if (!value.isSpooled() || gen instanceof TokenBuffer) {
+                gen.writeString(value.toString());
+                return;
+            }
+            try (Reader reader = value.openReader()) {
+                gen.writeString(reader, value.length());
+            }
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<SpooledText> {
+        @Override
+        public SpooledText deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            try (SpoolWriter writer = new SpoolWriter()) {
+                parser.getText(writer);
+                return writer.toSpooledText();
+            }
+        }
+    }
+
+    /**
+     * 先写入内存，超过阈值后改写临时文件
+     */
+    private static class SpoolWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+        private Path file;
+        private Writer fileWriter;
+        private int length;
+        private boolean completed;
+
+        @Override
+        public void write(char[] chars, int offset, int count) throws IOException {
+            length += count;
+            if (fileWriter == null && buffer.length() + count > SPOOL_THRESHOLD_CHARS) {
+                file = Files.createTempFile("inference-", ".txt");
+                fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                fileWriter.write(buffer.toString());
+                buffer.setLength(0);
+            }
+            if (fileWriter != null) {
+                fileWriter.write(chars, offset, count);
+            } else {
+                buffer.append(chars, offset, count);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (fileWriter != null) {
+                fileWriter.flush();
+            }
+        }
+
+        SpooledText toSpooledText() throws IOException {
+            if (fileWriter == null) {
+                completed = true;
+                return new SpooledText(buffer.toString(), null, length);
+            }
+            fileWriter.close();
+            completed = true;
+            return new SpooledText(null, file, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileWriter != null) {
+                fileWriter.close();
+            }
+            // 解析中途失败时删除未完成的临时文件
+            if (!completed && file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -14,15 +14,24 @@ import java.util.List;
  * AI推理历史记录实体
  */
 @Entity
-@Table(name = "inference_history")
+@Table(name = "inference_history", indexes = {
+        // 游标分页按 (created_at, id) 定位下一页；PostgreSQL 上由 db/postgresql/inference_history_keyset_indexes.sql 创建
+        @Index(name = "idx_inference_history_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_inference_history_user_created_id", columnList = "user_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class InferenceHistory {
 
+    /**
+     * 主键取自序列并按块预分配，批量写入时可以合并为JDBC批量插入
+     * PostgreSQL 上序列由 db/postgresql/inference_history_sequence.sql 创建
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inference_history_seq")
+    @SequenceGenerator(name = "inference_history_seq", sequenceName = "inference_history_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -167,8 +176,13 @@ public class InferenceHistory {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        // 异步写入时保留记录产生的时间
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (updatedAt == null) {
+            updatedAt = createdAt;
+        }
         if (isDeleted == null) {
             isDeleted = false;
         }
@@ -0,0 +1,70 @@
+package com.vision.vision_platform_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 推理历史按小时汇总
+ * 按 (小时, 用户, 模型, 推理类型, 状态) 累计未删除记录的数量及耗时、检测对象数之和，
+ * 由 InferenceHistoryRollups 随记录写入、更新和删除增量维护；同一维度允许存在多行，统计时求和
+ */
+@Entity
+@Table(name = "inference_history_rollup", indexes = {
+        @Index(name = "idx_inference_history_rollup_bucket",
+                columnList = "bucket_hour, model_name, inference_type, status, user_id"),
+        @Index(name = "idx_inference_history_rollup_user_bucket", columnList = "user_id, bucket_hour")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InferenceHistoryRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 所属小时（创建时间截断到整点）
+     */
+    @Column(name = "bucket_hour", nullable = false)
+    private LocalDateTime bucketHour;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "model_name", nullable = false)
+    private String modelName;
+
+    @Column(name = "inference_type", nullable = false)
+    private String inferenceType;
+
+    @Column(name = "status", nullable = false)
+    private String status;
+
+    @Column(name = "inference_count", nullable = false)
+    private Long inferenceCount;
+
+    /**
+     * 处理耗时之和及参与求和的记录数（耗时为空的记录不计入平均值）
+     */
+    @Column(name = "processing_time_sum", nullable = false)
+    private Long processingTimeSum;
+
+    @Column(name = "processing_time_count", nullable = false)
+    private Long processingTimeCount;
+
+    /**
+     * 检测对象数之和及参与求和的记录数
+     */
+    @Column(name = "detected_objects_sum", nullable = false)
+    private Long detectedObjectsSum;
+
+    @Column(name = "detected_objects_count", nullable = false)
+    private Long detectedObjectsCount;
+}
@@ -0,0 +1,70 @@
+package com.vision.vision_platform_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+
+/**
+ * 推理历史关键词索引（倒排表）
+ * 每行表示一条推理历史包含某个词元，由 InferenceHistoryTextIndex 维护
+ */
+@Entity
+@Table(name = "inference_history_token", indexes = {
+        @Index(name = "idx_inference_history_token_token", columnList = "token, history_id"),
+        @Index(name = "idx_inference_history_token_history", columnList = "history_id")
+})
+@IdClass(InferenceHistoryToken.Key.class)
+@Data
+@NoArgsConstructor
+public class InferenceHistoryToken implements Persistable<InferenceHistoryToken.Key> {
+
+    /**
+     * 词元，"w:" 开头为词前缀，"g:" 开头为三元组
+     */
+    @Id
+    @Column(name = "token", length = 64, nullable = false)
+    private String token;
+
+    @Id
+    @Column(name = "history_id", nullable = false)
+    private Long historyId;
+
+    /**
+     * 主键由调用方指定，据此判断是否为新记录，避免保存前逐条查询
+     */
+    @Transient
+    private boolean persisted;
+
+    public InferenceHistoryToken(String token, Long historyId) {
+        this.token = token;
+        this.historyId = historyId;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(token, historyId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String token;
+        private Long historyId;
+    }
+}
@@ -4,11 +4,14 @@ import com.vision.vision_platform_backend.entity.InferenceHistory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,7 +19,8 @@ import java.util.Optional;
  * 推理历史记录Repository
  */
 @Repository
-public interface InferenceHistoryRepository extends JpaRepository<InferenceHistory, Long> {
+public interface InferenceHistoryRepository extends JpaRepository<InferenceHistory, Long>,
+        JpaSpecificationExecutor<InferenceHistory> {
 
     /**
      * 根据任务ID查找
@@ -33,6 +37,17 @@ public interface InferenceHistoryRepository extends JpaRepository<InferenceHisto
      */
     Optional<InferenceHistory> findByTaskIdAndIsDeletedFalse(String taskId);
 
+    /**
+     * 查询已存在的任务ID（日志重放时跳过已写入的记录）
+     */
+    @Query("SELECT ih.taskId FROM InferenceHistory ih WHERE ih.taskId IN :taskIds")
+    List<String> findExistingTaskIds(@Param("taskIds") Collection<String> taskIds);
+
+    /**
+     * 按ID顺序分块读取（包括已删除的记录，重建关键词索引时使用）
+     */
+    List<InferenceHistory> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
     /**
      * 根据ID列表查找（未删除）
      */
@@ -152,6 +167,18 @@ public interface InferenceHistoryRepository extends JpaRepository<InferenceHisto
             @Param("minRating") Integer minRating,
             Pageable pageable);
 
+    /**
+     * PostgreSQL统计信息中的表行数估计（含已软删除的记录），未分析过的表返回-1
+     * 分区表的父表没有自己的行数统计（PG14起为-1，之前为0），改为累加各分区的估计值；分区均未分析过时返回-1
+     */
+    @Query(value = "SELECT CASE WHEN c.relkind = 'p' THEN " +
+                   "(SELECT CASE WHEN COUNT(*) > 0 AND bool_and(ch.reltuples < 0) THEN -1 " +
+                   "ELSE CAST(COALESCE(SUM(GREATEST(ch.reltuples, 0)), 0) AS BIGINT) END " +
+                   "FROM pg_inherits i JOIN pg_class ch ON ch.oid = i.inhrelid WHERE i.inhparent = c.oid) " +
+                   "ELSE CAST(c.reltuples AS BIGINT) END " +
+                   "FROM pg_class c WHERE c.oid = to_regclass('inference_history')", nativeQuery = true)
+    Long estimateRowCount();
+
     /**
      * 统计查询
      */
@@ -176,6 +203,29 @@ public interface InferenceHistoryRepository extends JpaRepository<InferenceHisto
     @Query("SELECT ih.modelName, COUNT(ih) FROM InferenceHistory ih WHERE ih.isDeleted = false GROUP BY ih.modelName")
     List<Object[]> countInferencesByModel();
 
+    // 指定时间之后各模型按小时（0-23）的推理次数
+    @Query("SELECT ih.modelName, EXTRACT(HOUR FROM ih.createdAt), COUNT(ih) FROM InferenceHistory ih " +
+           "WHERE ih.isDeleted = false AND ih.createdAt >= :since " +
+           "GROUP BY ih.modelName, EXTRACT(HOUR FROM ih.createdAt)")
+    List<Object[]> countInferencesByModelAndHour(@Param("since") LocalDateTime since);
+
+    // 当前最大记录ID（重建关键词索引时确定范围）
+    @Query("SELECT MAX(ih.id) FROM InferenceHistory ih")
+    Long findMaxId();
+
+    // 最早的未删除记录创建时间（回填汇总时确定起点）
+    @Query("SELECT MIN(ih.createdAt) FROM InferenceHistory ih WHERE ih.isDeleted = false")
+    LocalDateTime findEarliestCreatedAt();
+
+    // 时间段内按小时（0-23）、用户、模型、类型、状态聚合的数量和指标之和（回填汇总时使用）
+    @Query("SELECT EXTRACT(HOUR FROM ih.createdAt), ih.userId, ih.modelName, ih.inferenceType, ih.status, COUNT(ih), " +
+           "SUM(ih.processingTime), COUNT(ih.processingTime), SUM(ih.detectedObjectsCount), COUNT(ih.detectedObjectsCount) " +
+           "FROM InferenceHistory ih " +
+           "WHERE ih.isDeleted = false AND ih.createdAt >= :startTime AND ih.createdAt < :endTime " +
+           "GROUP BY EXTRACT(HOUR FROM ih.createdAt), ih.userId, ih.modelName, ih.inferenceType, ih.status")
+    List<Object[]> aggregateByHour(@Param("startTime") LocalDateTime startTime,
+                                   @Param("endTime") LocalDateTime endTime);
+
     // 统计各推理类型使用次数
     @Query("SELECT ih.inferenceType, COUNT(ih) FROM InferenceHistory ih WHERE ih.isDeleted = false GROUP BY ih.inferenceType")
     List<Object[]> countInferencesByType();
@@ -255,14 +305,51 @@ public interface InferenceHistoryRepository extends JpaRepository<InferenceHisto
     Page<InferenceHistory> findHighRatedInferences(@Param("minRating") Integer minRating, Pageable pageable);
 
     // 软删除（批量）
-    @Query("UPDATE InferenceHistory ih SET ih.isDeleted = true, ih.updatedAt = CURRENT_TIMESTAMP WHERE ih.id IN :ids")
-    void softDeleteByIds(@Param("ids") List<Long> ids);
+    @Modifying
+    @Query("UPDATE InferenceHistory ih SET ih.isDeleted = true, ih.updatedAt = CURRENT_TIMESTAMP WHERE ih.id IN :ids AND ih.isDeleted = false")
+    int softDeleteByIds(@Param("ids") Collection<Long> ids);
 
     // 恢复软删除的记录
+    @Modifying
     @Query("UPDATE InferenceHistory ih SET ih.isDeleted = false, ih.updatedAt = CURRENT_TIMESTAMP WHERE ih.id = :id")
     void restoreById(@Param("id") Long id);
 
+    // 待清理记录ID（按创建时间顺序分块取出，status为空表示不限状态，includeDeleted表示包含已软删除的记录）
+    @Query("SELECT ih.id FROM InferenceHistory ih WHERE ih.createdAt < :cutoffDate " +
+           "AND (:status IS NULL OR ih.status = :status) AND (:includeDeleted = true OR ih.isDeleted = false) " +
+           "ORDER BY ih.createdAt, ih.id")
+    List<Long> findCleanupCandidateIds(@Param("cutoffDate") LocalDateTime cutoffDate,
+                                       @Param("status") String status,
+                                       @Param("includeDeleted") boolean includeDeleted,
+                                       Pageable pageable);
+
+    // 待清理记录数（清理任务开始时估算进度）
+    @Query("SELECT COUNT(ih) FROM InferenceHistory ih WHERE ih.createdAt < :cutoffDate " +
+           "AND (:status IS NULL OR ih.status = :status) AND (:includeDeleted = true OR ih.isDeleted = false)")
+    long countCleanupCandidates(@Param("cutoffDate") LocalDateTime cutoffDate,
+                                @Param("status") String status,
+                                @Param("includeDeleted") boolean includeDeleted);
+
+    // 指定记录中未删除部分按小时、用户、模型、类型、状态聚合的数量和指标之和（分块清理时扣除统计汇总）
+    @Query("SELECT EXTRACT(YEAR FROM ih.createdAt), EXTRACT(MONTH FROM ih.createdAt), EXTRACT(DAY FROM ih.createdAt), " +
+           "EXTRACT(HOUR FROM ih.createdAt), ih.userId, ih.modelName, ih.inferenceType, ih.status, COUNT(ih), " +
+           "SUM(ih.processingTime), COUNT(ih.processingTime), SUM(ih.detectedObjectsCount), COUNT(ih.detectedObjectsCount) " +
+           "FROM InferenceHistory ih WHERE ih.id IN :ids AND ih.isDeleted = false " +
+           "GROUP BY EXTRACT(YEAR FROM ih.createdAt), EXTRACT(MONTH FROM ih.createdAt), EXTRACT(DAY FROM ih.createdAt), " +
+           "EXTRACT(HOUR FROM ih.createdAt), ih.userId, ih.modelName, ih.inferenceType, ih.status")
+    List<Object[]> aggregateByIds(@Param("ids") Collection<Long> ids);
+
+    // 创建时间早于指定时间的记录ID（按时间保留策略分块删除时使用）
+    @Query("SELECT ih.id FROM InferenceHistory ih WHERE ih.createdAt < :cutoffDate ORDER BY ih.createdAt, ih.id")
+    List<Long> findIdsCreatedBefore(@Param("cutoffDate") LocalDateTime cutoffDate, Pageable pageable);
+
+    // 按ID物理删除
+    @Modifying
+    @Query("DELETE FROM InferenceHistory ih WHERE ih.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
     // 清理旧记录（物理删除超过指定天数的记录）
+    @Modifying
     @Query("DELETE FROM InferenceHistory ih WHERE ih.isDeleted = true AND ih.updatedAt < :cutoffDate")
     void cleanupOldRecords(@Param("cutoffDate") LocalDateTime cutoffDate);
 
@@ -0,0 +1,91 @@
+package com.vision.vision_platform_backend.repository;
+
+import com.vision.vision_platform_backend.entity.InferenceHistoryRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 推理历史汇总数据访问层
+ */
+@Repository
+public interface InferenceHistoryRollupRepository extends JpaRepository<InferenceHistoryRollup, Long> {
+
+    /**
+     * 在已有汇总行上原子累加（增量可为负）
+     *
+     * @return 更新的行数，为0表示该维度还没有汇总行
+     */
+    @Modifying
+    @Query("UPDATE InferenceHistoryRollup r SET " +
+           "r.inferenceCount = r.inferenceCount + :count, " +
+           "r.processingTimeSum = r.processingTimeSum + :processingTimeSum, " +
+           "r.processingTimeCount = r.processingTimeCount + :processingTimeCount, " +
+           "r.detectedObjectsSum = r.detectedObjectsSum + :detectedObjectsSum, " +
+           "r.detectedObjectsCount = r.detectedObjectsCount + :detectedObjectsCount " +
+           "WHERE r.id = (SELECT MIN(x.id) FROM InferenceHistoryRollup x WHERE " +
+           "x.bucketHour = :bucketHour AND " +
+           "((:userId IS NULL AND x.userId IS NULL) OR x.userId = :userId) AND " +
+           "x.modelName = :modelName AND x.inferenceType = :inferenceType AND x.status = :status)")
+    int increment(@Param("bucketHour") LocalDateTime bucketHour,
+                  @Param("userId") Long userId,
+                  @Param("modelName") String modelName,
+                  @Param("inferenceType") String inferenceType,
+                  @Param("status") String status,
+                  @Param("count") long count,
+                  @Param("processingTimeSum") long processingTimeSum,
+                  @Param("processingTimeCount") long processingTimeCount,
+                  @Param("detectedObjectsSum") long detectedObjectsSum,
+                  @Param("detectedObjectsCount") long detectedObjectsCount);
+
+    /**
+     * 按状态汇总：状态、数量、耗时之和、耗时记录数、检测对象数之和、检测对象记录数
+     */
+    @Query("SELECT r.status, SUM(r.inferenceCount), SUM(r.processingTimeSum), SUM(r.processingTimeCount), " +
+           "SUM(r.detectedObjectsSum), SUM(r.detectedObjectsCount) FROM InferenceHistoryRollup r " +
+           "WHERE (:userId IS NULL OR r.userId = :userId) " +
+           "AND r.bucketHour BETWEEN :startTime AND :endTime " +
+           "GROUP BY r.status")
+    List<Object[]> sumByStatus(@Param("userId") Long userId,
+                               @Param("startTime") LocalDateTime startTime,
+                               @Param("endTime") LocalDateTime endTime);
+
+    @Query("SELECT r.modelName, SUM(r.inferenceCount) FROM InferenceHistoryRollup r " +
+           "WHERE (:userId IS NULL OR r.userId = :userId) " +
+           "AND r.bucketHour BETWEEN :startTime AND :endTime " +
+           "GROUP BY r.modelName HAVING SUM(r.inferenceCount) > 0 " +
+           "ORDER BY SUM(r.inferenceCount) DESC")
+    List<Object[]> sumByModel(@Param("userId") Long userId,
+                              @Param("startTime") LocalDateTime startTime,
+                              @Param("endTime") LocalDateTime endTime);
+
+    @Query("SELECT r.inferenceType, SUM(r.inferenceCount) FROM InferenceHistoryRollup r " +
+           "WHERE (:userId IS NULL OR r.userId = :userId) " +
+           "AND r.bucketHour BETWEEN :startTime AND :endTime " +
+           "GROUP BY r.inferenceType HAVING SUM(r.inferenceCount) > 0 " +
+           "ORDER BY SUM(r.inferenceCount) DESC")
+    List<Object[]> sumByType(@Param("userId") Long userId,
+                             @Param("startTime") LocalDateTime startTime,
+                             @Param("endTime") LocalDateTime endTime);
+
+    @Query("SELECT r.bucketHour, SUM(r.inferenceCount) FROM InferenceHistoryRollup r " +
+           "WHERE (:userId IS NULL OR r.userId = :userId) " +
+           "AND r.bucketHour BETWEEN :startTime AND :endTime " +
+           "GROUP BY r.bucketHour ORDER BY r.bucketHour")
+    List<Object[]> sumByHour(@Param("userId") Long userId,
+                             @Param("startTime") LocalDateTime startTime,
+                             @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 删除 [startTime, endTime) 内的汇总行（回填时使用）
+     */
+    @Modifying
+    @Query("DELETE FROM InferenceHistoryRollup r WHERE r.bucketHour >= :startTime AND r.bucketHour < :endTime")
+    int deleteByBucketRange(@Param("startTime") LocalDateTime startTime,
+                            @Param("endTime") LocalDateTime endTime);
+}
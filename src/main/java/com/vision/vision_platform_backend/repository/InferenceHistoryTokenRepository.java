@@ -0,0 +1,32 @@
+package com.vision.vision_platform_backend.repository;
+
+import com.vision.vision_platform_backend.entity.InferenceHistoryToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+/**
+ * 推理历史关键词索引数据访问层
+ */
+@Repository
+public interface InferenceHistoryTokenRepository extends JpaRepository<InferenceHistoryToken, InferenceHistoryToken.Key> {
+
+    /**
+     * 删除指定记录的全部词元
+     */
+    @Modifying
+    @Query("DELETE FROM InferenceHistoryToken t WHERE t.historyId IN :historyIds")
+    int deleteByHistoryIds(@Param("historyIds") Collection<Long> historyIds);
+
+    /**
+     * 删除记录ID在 (fromId, toId] 范围内、对应记录已不存在的残留词元（重建索引时使用）
+     */
+    @Modifying
+    @Query("DELETE FROM InferenceHistoryToken t WHERE t.historyId > :fromId AND t.historyId <= :toId " +
+           "AND NOT EXISTS (SELECT 1 FROM InferenceHistory ih WHERE ih.id = t.historyId)")
+    int deleteOrphansInRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+}
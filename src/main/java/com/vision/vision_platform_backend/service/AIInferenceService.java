@@ -1,27 +1,39 @@
 package com.vision.vision_platform_backend.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vision.vision_platform_backend.dto.AIInferenceDto;
 import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
-import com.vision.vision_platform_backend.util.JwtUtil;
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
  * AI推理服务
@@ -32,118 +44,247 @@ public class AIInferenceService {
 
     private static final Logger logger = LoggerFactory.getLogger(AIInferenceService.class);
 
-    @Value("${ai.inference.server.url:http://localhost:8000}")
-    private String inferenceServerUrl;
+    /**
+     * 由结果缓存直接返回的推理在历史记录中的标签
+     */
+    private static final String CACHE_HIT_TAG = "cache_hit";
 
-    @Value("${ai.inference.timeout:30000}")
-    private int timeout;
+    private final InferenceHttpClient inferenceClient;
+    private final InferenceEndpointRouter endpointRouter;
+    private final InferenceRequestHedger requestHedger;
+    private final InferenceLaneScheduler laneScheduler;
+    private final InferenceMicroBatcher microBatcher;
+    private final InferenceResultCache resultCache;
+    private final InferenceSingleFlight singleFlight;
+    private final InferenceModelRegistry modelRegistry;
+    private final InferenceHealthMonitor healthMonitor;
+    private final VisualizationImageStore visualizationStore;
+    private final InferenceImagePreprocessor imagePreprocessor;
+    private final InferenceLatencyStats latencyStats;
+    private final InferenceHistoryWriter historyWriter;
+    private final InferenceConcurrencyLimiter concurrencyLimiter;
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private final InferenceHistoryService inferenceHistoryService;
+    @Value("${ai.inference.batch.chunk-size:8}")
+    private int defaultChunkSize;
 
-    public AIInferenceService(InferenceHistoryService inferenceHistoryService) {
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
-        this.inferenceHistoryService = inferenceHistoryService;
+    @Value("${ai.inference.batch.max-parallel-chunks:4}")
+    private int maxParallelChunks;
+
+    /**
+     * 推理服务器提供 /inference/upload、/batch_inference/upload 时开启，上传文件以multipart流式发送；
+     * 关闭时读取文件内容，以base64经 /inference、/batch_inference 发送
+     */
+    @Value("${ai.inference.upload.multipart-enabled:false}")
+    private boolean multipartUpload;
+
+    public AIInferenceService(InferenceHttpClient inferenceClient,
+                              InferenceEndpointRouter endpointRouter,
+                              InferenceRequestHedger requestHedger,
+                              InferenceLaneScheduler laneScheduler,
+                              InferenceMicroBatcher microBatcher,
+                              InferenceResultCache resultCache,
+                              InferenceSingleFlight singleFlight,
+                              InferenceModelRegistry modelRegistry,
+                              InferenceHealthMonitor healthMonitor,
+                              VisualizationImageStore visualizationStore,
+                              InferenceImagePreprocessor imagePreprocessor,
+                              InferenceLatencyStats latencyStats,
+                              InferenceHistoryWriter historyWriter,
+                              InferenceConcurrencyLimiter concurrencyLimiter) {
+        this.inferenceClient = inferenceClient;
+        this.endpointRouter = endpointRouter;
+        this.requestHedger = requestHedger;
+        this.laneScheduler = laneScheduler;
+        this.microBatcher = microBatcher;
+        this.resultCache = resultCache;
+        this.singleFlight = singleFlight;
+        this.modelRegistry = modelRegistry;
+        this.healthMonitor = healthMonitor;
+        this.visualizationStore = visualizationStore;
+        this.imagePreprocessor = imagePreprocessor;
+        this.latencyStats = latencyStats;
+        this.historyWriter = historyWriter;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     /**
      * 检查推理服务器健康状态
      */
     public boolean checkHealth() {
-        try {
-            String url = inferenceServerUrl + "/health";
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (Exception e) {
-            logger.error("推理服务器健康检查失败: {}", e.getMessage());
-            return false;
-        }
+        return healthMonitor.isHealthy();
     }
 
     /**
      * 获取健康状态详细信息
      */
     public Map<String, Object> getHealthStatus() {
-        try {
-            String url = inferenceServerUrl + "/health";
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return response.getBody();
-            } else {
-                Map<String, Object> errorStatus = new HashMap<>();
-                errorStatus.put("status", "unhealthy");
-                errorStatus.put("error", "服务器响应异常");
-                return errorStatus;
-            }
-        } catch (Exception e) {
-            logger.error("推理服务器健康检查失败: {}", e.getMessage());
-            Map<String, Object> errorStatus = new HashMap<>();
-            errorStatus.put("status", "unhealthy");
-            errorStatus.put("error", e.getMessage());
-            return errorStatus;
-        }
+        return healthMonitor.getHealthStatus();
     }
 
     /**
      * 单张图片推理
      */
     public AIInferenceDto.InferenceResponse inference(AIInferenceDto.InferenceRequest request) {
-        String taskId = "task_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 10000);
+        return inferenceAsync(request).join();
+    }
+
+    /**
+     * 单张图片推理（异步）
+     * 相同图片和参数的结果直接从缓存返回，相同图片和参数的请求正在进行时共享其结果；
+     * 参数相同的并发请求经微批聚合器合并为一次批量推理调用；
+     * 返回的Future总是正常完成，推理失败时携带错误响应
+     */
+    public CompletableFuture<AIInferenceDto.InferenceResponse> inferenceAsync(AIInferenceDto.InferenceRequest request) {
+        String taskId = newTaskId();
         long startTime = System.currentTimeMillis();
-        
-        try {
-            String url = inferenceServerUrl + "/inference";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<AIInferenceDto.InferenceRequest> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                AIInferenceDto.InferenceResponse inferenceResponse = 
-                    objectMapper.readValue(response.getBody(), AIInferenceDto.InferenceResponse.class);
-                
+
+        String cacheKey = resultCache.isEnabled() || singleFlight.isEnabled()
+            ? cacheKey(InferenceResultCache.sha256OfBase64(request.getImageData()), request) : null;
+        long cacheGeneration = resultCache.generation(request.getModelName());
+        Optional<AIInferenceDto.InferenceResponse> cached = resultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            recordInferenceHistory(taskId, "single", request, cached.get(),
+                null, null, startTime, "SUCCESS", null, CACHE_HIT_TAG, null);
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        CompletableFuture<InferenceEndpointRouter.Routed<AIInferenceDto.InferenceResponse>> call = singleFlight.execute(
+            singleFlightKey(cacheKey, cacheGeneration),
+            () -> microBatcher.submit(batchKey(request), request,
+                (List<AIInferenceDto.InferenceRequest> requests) ->
+                    dispatchInferenceBatch(InferenceLaneScheduler.Lane.INTERACTIVE, requests)));
+
+        return call.handleAsync((routed, error) -> {
+            if (error == null) {
+                AIInferenceDto.InferenceResponse inferenceResponse = routed.getValue();
+                resultCache.put(cacheKey, request.getModelName(), cacheGeneration, inferenceResponse);
+
                 // 记录推理历史
-                recordInferenceHistory(taskId, "single", request, inferenceResponse, 
-                    null, null, startTime, "SUCCESS", null);
-                
+                recordInferenceHistory(taskId, "single", request, inferenceResponse,
+                    null, null, startTime, "SUCCESS", null, null, routed.getEndpoint());
                 return inferenceResponse;
-            } else {
-                logger.error("推理请求失败，状态码: {}", response.getStatusCode());
-                AIInferenceDto.InferenceResponse errorResponse = 
-                    createErrorResponse("推理请求失败", request.getTask(), request.getModelName());
-                
-                // 记录失败的推理历史
-                recordInferenceHistory(taskId, "single", request, errorResponse, 
-                    null, null, startTime, "FAILED", "推理请求失败");
-                
-                return errorResponse;
             }
-        } catch (ResourceAccessException e) {
-            logger.error("连接推理服务器失败: {}", e.getMessage());
-            AIInferenceDto.InferenceResponse errorResponse = 
-                createErrorResponse("连接推理服务器失败", request.getTask(), request.getModelName());
-            
-            // 记录失败的推理历史
-            recordInferenceHistory(taskId, "single", request, errorResponse, 
-                null, null, startTime, "FAILED", "连接推理服务器失败");
-            
-            return errorResponse;
-        } catch (Exception e) {
-            logger.error("推理过程中发生错误: {}", e.getMessage(), e);
-            AIInferenceDto.InferenceResponse errorResponse = 
-                createErrorResponse("推理过程中发生错误: " + e.getMessage(), request.getTask(), request.getModelName());
-            
+
+            Throwable cause = unwrap(error);
+            concurrencyLimiter.onFailure(cause);
+            String errorMessage = describeInferenceError(cause);
+            AIInferenceDto.InferenceResponse errorResponse =
+                createErrorResponse(errorMessage, request.getTask(), request.getModelName());
+
             // 记录失败的推理历史
-            recordInferenceHistory(taskId, "single", request, errorResponse, 
-                null, null, startTime, "FAILED", "推理过程中发生错误: " + e.getMessage());
-            
+            recordInferenceHistory(taskId, "single", request, errorResponse,
+                null, null, startTime, "FAILED", errorMessage, null, null);
+
             return errorResponse;
+        }, callerContextExecutor());
+    }
+
+    /**
+     * 发送一组参数相同的推理请求
+     * 只有一条时走单张推理接口（可按配置对冲到其他节点），多条时合并为一次批量推理
+     */
+    private CompletableFuture<List<InferenceEndpointRouter.Routed<AIInferenceDto.InferenceResponse>>> dispatchInferenceBatch(
+            InferenceLaneScheduler.Lane lane, List<AIInferenceDto.InferenceRequest> requests) {
+        AIInferenceDto.InferenceRequest first = requests.get(0);
+        if (requests.size() == 1) {
+            InferenceImagePreprocessor.Prepared prepared =
+                imagePreprocessor.prepareBase64(first.getModelName(), first.getTask(), first.getImageData());
+            AIInferenceDto.InferenceRequest outgoing = prepared != null ? withImageData(first, prepared.toBase64()) : first;
+            return laneScheduler.submit(lane,
+                    () -> requestHedger.<AIInferenceDto.InferenceResponse>route(first.getModelName(),
+                        measured(first.getModelName(), first.getTask(), 1,
+                            url -> inferenceClient.postJson(url + "/inference", outgoing,
+                                inferenceClient.type(AIInferenceDto.InferenceResponse.class)))))
+                .thenApply(routed -> {
+                    imagePreprocessor.restore(routed.getValue(), prepared);
+                    visualizationStore.externalize(routed.getValue());
+                    return List.of(routed);
+                });
+        }
+
+        AIInferenceDto.BatchInferenceRequest batchRequest = new AIInferenceDto.BatchInferenceRequest();
+        batchRequest.setTask(first.getTask());
+        batchRequest.setModelName(first.getModelName());
+        batchRequest.setConfidenceThreshold(first.getConfidenceThreshold());
+        batchRequest.setNmsThreshold(first.getNmsThreshold());
+        batchRequest.setMaxDetections(first.getMaxDetections());
+        batchRequest.setReturnVisualization(first.getReturnVisualization());
+        batchRequest.setBatchSize(requests.size());
+        List<String> images = new ArrayList<>(requests.size());
+        for (AIInferenceDto.InferenceRequest request : requests) {
+            images.add(request.getImageData());
+        }
+        batchRequest.setImages(images);
+
+        return batchInferenceRouted(batchRequest, lane)
+            .thenApply(AIInferenceService::spread);
+    }
+
+    /**
+     * 复制推理请求并替换图片数据
+     */
+    private static AIInferenceDto.InferenceRequest withImageData(AIInferenceDto.InferenceRequest source, String imageData) {
+        AIInferenceDto.InferenceRequest copy = new AIInferenceDto.InferenceRequest();
+        copy.setTask(source.getTask());
+        copy.setModelName(source.getModelName());
+        copy.setImageData(imageData);
+        copy.setConfidenceThreshold(source.getConfidenceThreshold());
+        copy.setNmsThreshold(source.getNmsThreshold());
+        copy.setMaxDetections(source.getMaxDetections());
+        copy.setReturnVisualization(source.getReturnVisualization());
+        return copy;
+    }
+
+    /**
+     * 将一次批量调用的结果拆分为逐条结果，每条都带上处理该批次的节点
+     */
+    private static <T> List<InferenceEndpointRouter.Routed<T>> spread(InferenceEndpointRouter.Routed<List<T>> routed) {
+        if (routed.getValue() == null) {
+            return null;
+        }
+        List<InferenceEndpointRouter.Routed<T>> results = new ArrayList<>(routed.getValue().size());
+        for (T value : routed.getValue()) {
+            results.add(new InferenceEndpointRouter.Routed<>(value, routed.getEndpoint()));
+        }
+        return results;
+    }
+
+    /**
+     * 微批聚合键：只有模型、任务和阈值参数完全一致的请求才能合并
+     */
+    private String batchKey(AIInferenceDto.InferenceRequest request) {
+        return request.getModelName() + "|" + request.getTask() + "|" + request.getConfidenceThreshold() + "|"
+            + request.getNmsThreshold() + "|" + request.getMaxDetections() + "|" + request.getReturnVisualization();
+    }
+
+    /**
+     * 推理结果缓存键，图片哈希无法计算时不使用缓存
+     */
+    private String cacheKey(String imageHash, AIInferenceDto.InferenceRequest request) {
+        if (imageHash == null) {
+            return null;
+        }
+        return resultCache.key(imageHash, request.getModelName(), request.getTask(),
+            request.getConfidenceThreshold(), request.getNmsThreshold(), request.getMaxDetections(),
+            request.getReturnVisualization());
+    }
+
+    /**
+     * 进行中请求合并的键带上缓存代数，模型失效后发起的请求不会共享失效前的调用结果
+     */
+    private static String singleFlightKey(String cacheKey, long cacheGeneration) {
+        return cacheKey == null ? null : cacheKey + "#" + cacheGeneration;
+    }
+
+    /**
+     * 流式计算上传文件的内容哈希
+     */
+    private String hashFile(MultipartFile file) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return InferenceResultCache.sha256(inputStream);
+        } catch (IOException e) {
+            logger.warn("计算上传文件哈希失败: file={}, error={}", file.getOriginalFilename(), e.getMessage());
+            return null;
         }
     }
 
@@ -151,89 +292,80 @@ public class AIInferenceService {
      * 单张图片推理（带文件上传）
      */
     public AIInferenceDto.InferenceResponse inferSingle(MultipartFile file, AIInferenceDto.InferenceRequest request) {
-        String taskId = "task_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 10000);
+        return inferSingleAsync(file, request).join();
+    }
+
+    /**
+     * 单张图片推理（带文件上传，异步）
+     * 文件内容从multipart临时文件流式写入推理请求体；参数相同的并发上传同样经微批聚合
+     */
+    public CompletableFuture<AIInferenceDto.InferenceResponse> inferSingleAsync(MultipartFile file,
+                                                                               AIInferenceDto.InferenceRequest request) {
+        String taskId = newTaskId();
         long startTime = System.currentTimeMillis();
-        
-        try {
-            // 这里可以实现文件上传到推理服务器的逻辑
-            // 目前使用模拟推理
-            logger.info("执行单张图片推理，文件: {}, 任务: {}, 模型: {}", 
-                file.getOriginalFilename(), request.getTask(), request.getModelName());
-            
-            AIInferenceDto.InferenceResponse response = new AIInferenceDto.InferenceResponse();
-            response.setSuccess(true);
-            response.setTask(request.getTask());
-            response.setModelName(request.getModelName() != null ? request.getModelName() : "default_model");
-            response.setTimestamp(LocalDateTime.now());
-            response.setInferenceTime(150.0);
-            
-            // 模拟检测结果
-            if ("detect".equals(request.getTask())) {
-                response.setDetections(List.of(
-                    createMockDetectionResult("person", 0.95, 100, 50, 200, 300),
-                    createMockDetectionResult("car", 0.87, 300, 200, 150, 100)
-                ));
+
+        logger.info("执行单张图片推理，文件: {}, 任务: {}, 模型: {}",
+            file.getOriginalFilename(), request.getTask(), request.getModelName());
+
+        String cacheKey = resultCache.isEnabled() || singleFlight.isEnabled() ? cacheKey(hashFile(file), request) : null;
+        long cacheGeneration = resultCache.generation(request.getModelName());
+        Optional<AIInferenceDto.InferenceResponse> cached = resultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            recordInferenceHistory(taskId, "single_upload", request, cached.get(),
+                file.getOriginalFilename(), file.getSize(), startTime, "SUCCESS", null, CACHE_HIT_TAG, null);
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        CompletableFuture<InferenceEndpointRouter.Routed<AIInferenceDto.InferenceResponse>> call = singleFlight.execute(
+            singleFlightKey(cacheKey, cacheGeneration), () -> microBatcher.submit(
+            "upload|" + batchKey(request), file,
+            (List<MultipartFile> files) -> dispatchUploadBatch(InferenceLaneScheduler.Lane.INTERACTIVE, files, request)
+                .thenApply(AIInferenceService::spread)));
+
+        return call.handleAsync((routed, error) -> {
+            if (error == null) {
+                AIInferenceDto.InferenceResponse response = routed.getValue();
+                resultCache.put(cacheKey, request.getModelName(), cacheGeneration, response);
+
+                // 记录推理历史
+                recordInferenceHistory(taskId, "single_upload", request, response,
+                    file.getOriginalFilename(), file.getSize(), startTime, "SUCCESS", null, null,
+                    routed.getEndpoint());
+                return response;
             }
-            
-            // 记录推理历史
-            recordInferenceHistory(taskId, "single_upload", request, response, 
-                file.getOriginalFilename(), file.getSize(), startTime, "SUCCESS", null);
-            
-            return response;
-        } catch (Exception e) {
-            logger.error("单张图片推理过程中发生错误: {}", e.getMessage(), e);
-            AIInferenceDto.InferenceResponse errorResponse = 
-                createErrorResponse("推理过程中发生错误: " + e.getMessage(), request.getTask(), request.getModelName());
-            
+
+            Throwable cause = unwrap(error);
+            concurrencyLimiter.onFailure(cause);
+            String errorMessage = describeInferenceError(cause);
+            AIInferenceDto.InferenceResponse errorResponse =
+                createErrorResponse(errorMessage, request.getTask(), request.getModelName());
+
             // 记录失败的推理历史
-            recordInferenceHistory(taskId, "single_upload", request, errorResponse, 
-                file.getOriginalFilename(), file.getSize(), startTime, "FAILED", 
-                "推理过程中发生错误: " + e.getMessage());
-            
+            recordInferenceHistory(taskId, "single_upload", request, errorResponse,
+                file.getOriginalFilename(), file.getSize(), startTime, "FAILED", errorMessage, null, null);
+
             return errorResponse;
-        }
+        }, callerContextExecutor());
     }
 
     /**
      * 批量图片推理（带文件上传）
+     * 文件按批大小分块，各分块在并行度上限内同时发送，结果按原始文件顺序汇总
      */
     public Map<String, Object> inferBatch(List<MultipartFile> files, AIInferenceDto.BatchInferenceRequest request) {
-        String taskId = "task_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 10000);
+        String taskId = newTaskId();
         long startTime = System.currentTimeMillis();
         
         try {
             logger.info("执行批量图片推理，文件数量: {}, 任务: {}, 模型: {}", 
                 files.size(), request.getTask(), request.getModelName());
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total_files", files.size());
-            response.put("processed_files", files.size());
-            response.put("failed_files", 0);
-            response.put("processing_time", 500.0);
-            
-            // 模拟每个文件的推理结果
-            List<Map<String, Object>> results = new ArrayList<>();
-            for (MultipartFile file : files) {
-                Map<String, Object> fileResult = new HashMap<>();
-                fileResult.put("filename", file.getOriginalFilename());
-                fileResult.put("success", true);
-                fileResult.put("processing_time", 150.0);
-                
-                if ("detect".equals(request.getTask())) {
-                    fileResult.put("detections", List.of(
-                        createMockDetectionResult("person", 0.92, 120, 60, 180, 280),
-                        createMockDetectionResult("vehicle", 0.85, 320, 180, 160, 120)
-                    ));
-                }
-                
-                results.add(fileResult);
-                
-                // 为每个文件记录推理历史
-                recordBatchFileInferenceHistory(taskId, request, file, fileResult, startTime);
-            }
-            
-            response.put("results", results);
+
+            int chunkSize = request.getBatchSize() != null && request.getBatchSize() > 0
+                ? request.getBatchSize() : defaultChunkSize;
+            List<Map<String, Object>> results = await(
+                inferBatchChunksAsync(taskId, files, request, startTime, chunkSize, InferenceLaneScheduler.Lane.BATCH,
+                    null, () -> false));
+            Map<String, Object> response = summarizeBatch(files.size(), results, startTime);
             
             // 记录批量推理总体历史
             recordBatchInferenceHistory(taskId, request, response, files, startTime, "SUCCESS", null);
@@ -253,51 +385,496 @@ public class AIInferenceService {
         }
     }
 
+    /**
+     * 分块并行执行批量推理
+     * 同时进行的分块数不超过并行度上限，一个分块完成后立即发出下一个；
+     * 单个分块失败不影响其他分块，返回的结果与文件顺序一一对应
+     *
+     * @param lane        分块调用所在的调度通道
+     * @param onChunkDone 每个分块完成后回调（分块起始下标、分块结果），可为null
+     * @param cancelled   返回true时不再发出新的分块
+     */
+    public CompletableFuture<List<Map<String, Object>>> inferBatchChunksAsync(
+            String batchTaskId, List<MultipartFile> files, AIInferenceDto.BatchInferenceRequest request,
+            long startTime, int chunkSize, InferenceLaneScheduler.Lane lane,
+            BiConsumer<Integer, List<Map<String, Object>>> onChunkDone, BooleanSupplier cancelled) {
+        ChunkedBatch batch = new ChunkedBatch(batchTaskId, files, request, startTime, Math.max(1, chunkSize), lane,
+            onChunkDone, cancelled, callerContextExecutor());
+
+        int parallelism = Math.max(1, Math.min(maxParallelChunks, batch.chunkCount));
+        CompletableFuture<?>[] running = new CompletableFuture<?>[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            running[i] = runNextChunk(batch);
+        }
+        return CompletableFuture.allOf(running).thenApply(ignored -> batch.results());
+    }
+
+    private CompletableFuture<Void> runNextChunk(ChunkedBatch batch) {
+        int index = batch.nextChunk.getAndIncrement();
+        if (index >= batch.chunkCount || batch.cancelled.getAsBoolean()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int from = index * batch.chunkSize;
+        List<MultipartFile> chunk = batch.files.subList(from, Math.min(batch.files.size(), from + batch.chunkSize));
+
+        return inferChunkIsolated(batch, chunk).thenCompose(results -> {
+            batch.chunkResults[index] = results;
+            if (batch.onChunkDone != null) {
+                batch.onChunkDone.accept(from, results);
+            }
+            return runNextChunk(batch);
+        });
+    }
+
+    /**
+     * 执行一个分块，失败时隔离到单个文件：
+     * 推理服务器拒绝整个分块时逐个文件重试，连接失败或熔断时整块标记为失败
+     */
+    private CompletableFuture<List<Map<String, Object>>> inferChunkIsolated(ChunkedBatch batch,
+                                                                           List<MultipartFile> chunk) {
+        return inferBatchFilesAsync(batch.batchTaskId, chunk, batch.request, batch.startTime, batch.lane,
+                batch.historyExecutor)
+            .exceptionallyCompose(error -> {
+                Throwable cause = unwrap(error);
+                if (chunk.size() > 1 && cause instanceof InferenceHttpClient.RemoteCallException) {
+                    logger.warn("批量推理分块失败，逐个文件重试: taskId={}, files={}, error={}",
+                        batch.batchTaskId, chunk.size(), cause.getMessage());
+                    List<CompletableFuture<List<Map<String, Object>>>> singles = new ArrayList<>(chunk.size());
+                    for (MultipartFile file : chunk) {
+                        singles.add(inferChunkIsolated(batch, List.of(file)));
+                    }
+                    return CompletableFuture.allOf(singles.toArray(new CompletableFuture<?>[0]))
+                        .thenApply(ignored -> {
+                            List<Map<String, Object>> results = new ArrayList<>(chunk.size());
+                            singles.forEach(single -> results.addAll(single.join()));
+                            return results;
+                        });
+                }
+
+                concurrencyLimiter.onFailure(cause);
+                String errorMessage = describeInferenceError(cause);
+                List<Map<String, Object>> results = new ArrayList<>(chunk.size());
+                for (MultipartFile file : chunk) {
+                    Map<String, Object> failed = new HashMap<>();
+                    failed.put("filename", file.getOriginalFilename());
+                    failed.put("success", false);
+                    failed.put("error", errorMessage);
+                    results.add(failed);
+                }
+                recordBatchFileHistoriesAsync(batch.batchTaskId, batch.request, chunk, results,
+                    batch.startTime, batch.historyExecutor);
+                return CompletableFuture.completedFuture(results);
+            });
+    }
+
+    /**
+     * 对一组上传文件执行一次批量推理，每个文件的推理历史在后台写入
+     * 命中结果缓存的文件不再上传；返回的结果与文件顺序一一对应
+     */
+    private CompletableFuture<List<Map<String, Object>>> inferBatchFilesAsync(
+            String batchTaskId, List<MultipartFile> files, AIInferenceDto.BatchInferenceRequest request,
+            long startTime, InferenceLaneScheduler.Lane lane, Executor historyExecutor) {
+        AIInferenceDto.InferenceResponse[] responses = new AIInferenceDto.InferenceResponse[files.size()];
+        boolean[] fromCache = new boolean[files.size()];
+        String[] servedBy = new String[files.size()];
+        String[] cacheKeys = new String[files.size()];
+        List<MultipartFile> pendingFiles = new ArrayList<>();
+        List<Integer> pendingIndexes = new ArrayList<>();
+
+        long cacheGeneration = resultCache.generation(request.getModelName());
+        for (int i = 0; i < files.size(); i++) {
+            String imageHash = resultCache.isEnabled() ? hashFile(files.get(i)) : null;
+            // 图片哈希无法计算时不使用缓存，否则读取失败的文件会共用同一个缓存键
+            if (imageHash != null) {
+                cacheKeys[i] = resultCache.key(imageHash, request.getModelName(), request.getTask(),
+                    request.getConfidenceThreshold(), request.getNmsThreshold(), request.getMaxDetections(),
+                    request.getReturnVisualization());
+            }
+            Optional<AIInferenceDto.InferenceResponse> cached = resultCache.get(cacheKeys[i]);
+            if (cached.isPresent()) {
+                responses[i] = cached.get();
+                fromCache[i] = true;
+            } else {
+                pendingFiles.add(files.get(i));
+                pendingIndexes.add(i);
+            }
+        }
+
+        CompletableFuture<InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>>> call =
+            pendingFiles.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : dispatchUploadBatch(lane, pendingFiles, uploadParams(request));
+
+        return call.thenApply(routed -> {
+            if (routed != null) {
+                List<AIInferenceDto.InferenceResponse> fetched = routed.getValue();
+                if (fetched == null || fetched.size() != pendingFiles.size()) {
+                    throw new IllegalStateException("批量推理返回结果数量与文件数量不一致");
+                }
+                for (int j = 0; j < fetched.size(); j++) {
+                    int index = pendingIndexes.get(j);
+                    responses[index] = fetched.get(j);
+                    servedBy[index] = routed.getEndpoint();
+                    resultCache.put(cacheKeys[index], request.getModelName(), cacheGeneration, fetched.get(j));
+                }
+            }
+
+            List<Map<String, Object>> results = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                Map<String, Object> fileResult = toFileResult(files.get(i), responses[i]);
+                if (fromCache[i]) {
+                    fileResult.put("cached", true);
+                }
+                if (servedBy[i] != null) {
+                    fileResult.put("inference_server", servedBy[i]);
+                }
+                results.add(fileResult);
+            }
+
+            // 为每个文件记录推理历史
+            recordBatchFileHistoriesAsync(batchTaskId, request, files, results, startTime, historyExecutor);
+            return results;
+        });
+    }
+
+    /**
+     * 一次分块批量推理的共享状态
+     */
+    private static class ChunkedBatch {
+        private final String batchTaskId;
+        private final List<MultipartFile> files;
+        private final AIInferenceDto.BatchInferenceRequest request;
+        private final long startTime;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final InferenceLaneScheduler.Lane lane;
+        private final BiConsumer<Integer, List<Map<String, Object>>> onChunkDone;
+        private final BooleanSupplier cancelled;
+        private final Executor historyExecutor;
+        private final List<Map<String, Object>>[] chunkResults;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+
+        @SuppressWarnings("unchecked")
+        ChunkedBatch(String batchTaskId, List<MultipartFile> files, AIInferenceDto.BatchInferenceRequest request,
+                     long startTime, int chunkSize, InferenceLaneScheduler.Lane lane,
+                     BiConsumer<Integer, List<Map<String, Object>>> onChunkDone,
+                     BooleanSupplier cancelled, Executor historyExecutor) {
+            this.batchTaskId = batchTaskId;
+            this.files = files;
+            this.request = request;
+            this.startTime = startTime;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (files.size() + chunkSize - 1) / chunkSize;
+            this.lane = lane;
+            this.onChunkDone = onChunkDone;
+            this.cancelled = cancelled;
+            this.historyExecutor = historyExecutor;
+            this.chunkResults = new List[chunkCount];
+        }
+
+        /**
+         * 按原始顺序合并已完成分块的结果，取消后未发出的分块不包含在内
+         */
+        List<Map<String, Object>> results() {
+            List<Map<String, Object>> results = new ArrayList<>(files.size());
+            for (List<Map<String, Object>> chunk : chunkResults) {
+                if (chunk != null) {
+                    results.addAll(chunk);
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * 汇总批量推理结果
+     */
+    public Map<String, Object> summarizeBatch(int totalFiles, List<Map<String, Object>> results, long startTime) {
+        int failedFiles = 0;
+        for (Map<String, Object> result : results) {
+            if (!Boolean.TRUE.equals(result.get("success"))) {
+                failedFiles++;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("total_files", totalFiles);
+        response.put("processed_files", results.size() - failedFiles);
+        response.put("failed_files", failedFiles);
+        response.put("processing_time", (double) (System.currentTimeMillis() - startTime));
+        response.put("results", results);
+        return response;
+    }
+
+    /**
+     * 以multipart方式上传一组文件进行推理
+     * 只有一个文件时走单张上传接口，多个文件时合并为一次批量上传；
+     * 未开启multipart上传时改为经JSON推理接口发送
+     *
+     * @param params 推理参数，图片数据不使用
+     */
+    private CompletableFuture<InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>>> dispatchUploadBatch(
+            InferenceLaneScheduler.Lane lane, List<MultipartFile> files, AIInferenceDto.InferenceRequest params) {
+        if (!multipartUpload) {
+            return dispatchUploadAsJson(lane, files, params);
+        }
+        Map<String, String> fields = uploadFields(params);
+        String modelName = params.getModelName();
+        String task = params.getTask();
+        List<InferenceImagePreprocessor.Prepared> prepared = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            prepared.add(prepareUpload(file, modelName, task));
+        }
+
+        if (files.size() == 1) {
+            InferenceHttpClient.UploadPart part = toUploadPart("file", files.get(0), prepared.get(0));
+            return laneScheduler.submit(lane,
+                    () -> requestHedger.<AIInferenceDto.InferenceResponse>route(modelName,
+                        measured(modelName, task, 1,
+                            url -> inferenceClient.postMultipart(url + "/inference/upload", fields, List.of(part),
+                                inferenceClient.type(AIInferenceDto.InferenceResponse.class)))))
+                .thenApply(routed -> restoreAndExternalize(new InferenceEndpointRouter.Routed<>(
+                    List.of(routed.getValue()), routed.getEndpoint()), prepared));
+        }
+
+        List<InferenceHttpClient.UploadPart> parts = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            parts.add(toUploadPart("files", files.get(i), prepared.get(i)));
+        }
+        return laneScheduler.submit(lane,
+                () -> endpointRouter.<List<AIInferenceDto.InferenceResponse>>route(modelName, files.size(),
+                    measured(modelName, task, files.size(),
+                        url -> inferenceClient.postMultipart(url + "/batch_inference/upload", fields, parts,
+                            inferenceClient.listType(AIInferenceDto.InferenceResponse.class)))))
+            .thenApply(routed -> restoreAndExternalize(routed, prepared));
+    }
+
+    /**
+     * 在本地耗时统计中记录对推理节点的调用，返回原始Future以便对冲落败时取消
+     */
+    private <T> Function<String, CompletableFuture<T>> measured(String modelName, String task, int images,
+                                                             Function<String, CompletableFuture<T>> call) {
+        return url -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> future = call.apply(url);
+            future.whenComplete((value, error) -> {
+                if (!(error instanceof CancellationException)) {
+                    latencyStats.record(modelName, task, url, error == null, System.nanoTime() - start, images);
+                }
+            });
+            return future;
+        };
+    }
+
+    /**
+     * 预处理上传文件，不需要预处理或读取失败时返回null
+     */
+    private InferenceImagePreprocessor.Prepared prepareUpload(MultipartFile file, String modelName, String task) {
+        if (!imagePreprocessor.appliesTo(modelName, task)) {
+            return null;
+        }
+        try (InputStream inputStream = file.getInputStream()) {
+            return imagePreprocessor.prepare(modelName, task, inputStream, file.getSize());
+        } catch (IOException e) {
+            logger.debug("读取上传文件失败，跳过预处理: file={}, error={}", file.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 边界框映射回原图坐标，再转存可视化图片
+     */
+    private InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>> restoreAndExternalize(
+            InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>> routed,
+            List<InferenceImagePreprocessor.Prepared> prepared) {
+        imagePreprocessor.restore(routed.getValue(), prepared);
+        return externalizeVisualizations(routed);
+    }
+
+    /**
+     * 可视化图片转存到磁盘，响应中只保留图片ID和访问地址
+     */
+    private InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>> externalizeVisualizations(
+            InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>> routed) {
+        visualizationStore.externalize(routed.getValue());
+        return routed;
+    }
+
+    /**
+     * 上传文件经JSON推理接口发送：读取文件内容编码为base64，与JSON推理请求走相同的预处理、对冲和批量路径
+     */
+    private CompletableFuture<InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>>> dispatchUploadAsJson(
+            InferenceLaneScheduler.Lane lane, List<MultipartFile> files, AIInferenceDto.InferenceRequest params) {
+        List<AIInferenceDto.InferenceRequest> requests = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            try {
+                requests.add(withImageData(params, Base64.getEncoder().encodeToString(file.getBytes())));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return dispatchInferenceBatch(lane, requests).thenApply(routed -> new InferenceEndpointRouter.Routed<>(
+            routed.stream().map(InferenceEndpointRouter.Routed::getValue).toList(),
+            routed.isEmpty() ? null : routed.get(0).getEndpoint()));
+    }
+
+    /**
+     * 批量上传请求的推理参数
+     */
+    private static AIInferenceDto.InferenceRequest uploadParams(AIInferenceDto.BatchInferenceRequest request) {
+        AIInferenceDto.InferenceRequest params = new AIInferenceDto.InferenceRequest();
+        params.setTask(request.getTask());
+        params.setModelName(request.getModelName());
+        params.setConfidenceThreshold(request.getConfidenceThreshold());
+        params.setNmsThreshold(request.getNmsThreshold());
+        params.setMaxDetections(request.getMaxDetections());
+        params.setReturnVisualization(request.getReturnVisualization());
+        return params;
+    }
+
+    /**
+     * 上传推理的表单参数
+     */
+    private Map<String, String> uploadFields(AIInferenceDto.InferenceRequest params) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("task", params.getTask());
+        fields.put("model_name", params.getModelName());
+        fields.put("confidence_threshold", params.getConfidenceThreshold() != null
+            ? params.getConfidenceThreshold().toString() : null);
+        fields.put("nms_threshold", params.getNmsThreshold() != null ? params.getNmsThreshold().toString() : null);
+        fields.put("max_detections", params.getMaxDetections() != null ? params.getMaxDetections().toString() : null);
+        fields.put("return_visualization", params.getReturnVisualization() != null
+            ? params.getReturnVisualization().toString() : null);
+        return fields;
+    }
+
+    /**
+     * 上传文件作为multipart部分，发送时才打开临时文件的输入流；已预处理的文件改为发送预处理后的图片
+     */
+    private InferenceHttpClient.UploadPart toUploadPart(String name, MultipartFile file,
+                                                        InferenceImagePreprocessor.Prepared prepared) {
+        if (prepared != null) {
+            byte[] data = prepared.getData();
+            return new InferenceHttpClient.UploadPart(name, file.getOriginalFilename(), prepared.getContentType(),
+                data.length, () -> new ByteArrayInputStream(data));
+        }
+        return new InferenceHttpClient.UploadPart(name, file.getOriginalFilename(), file.getContentType(),
+            file.getSize(), () -> {
+                try {
+                    return file.getInputStream();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    /**
+     * 批量推理中单个文件的结果
+     */
+    private Map<String, Object> toFileResult(MultipartFile file, AIInferenceDto.InferenceResponse response) {
+        Map<String, Object> fileResult = new HashMap<>();
+        fileResult.put("filename", file.getOriginalFilename());
+        fileResult.put("success", response != null && Boolean.TRUE.equals(response.getSuccess()));
+        if (response == null) {
+            fileResult.put("error", "推理服务器未返回结果");
+            return fileResult;
+        }
+        fileResult.put("processing_time", response.getInferenceTime());
+        if (response.getDetections() != null) {
+            fileResult.put("detections", response.getDetections());
+        }
+        if (response.getSegmentations() != null) {
+            fileResult.put("segmentations", response.getSegmentations());
+        }
+        if (response.getImageSize() != null) {
+            fileResult.put("image_size", response.getImageSize());
+        }
+        if (response.getVisualizationImage() != null) {
+            fileResult.put("visualization_image", response.getVisualizationImage());
+        }
+        if (response.getVisualizationImageId() != null) {
+            fileResult.put("visualization_image_id", response.getVisualizationImageId());
+            fileResult.put("visualization_image_url", response.getVisualizationImageUrl());
+        }
+        if (response.getErrorMessage() != null) {
+            fileResult.put("error", response.getErrorMessage());
+        }
+        return fileResult;
+    }
+
     /**
      * 批量图片推理
      */
     public List<AIInferenceDto.InferenceResponse> batchInference(AIInferenceDto.BatchInferenceRequest request) {
         try {
-            String url = inferenceServerUrl + "/batch_inference";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<AIInferenceDto.BatchInferenceRequest> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                TypeReference<List<AIInferenceDto.InferenceResponse>> typeRef = 
-                    new TypeReference<List<AIInferenceDto.InferenceResponse>>() {};
-                return objectMapper.readValue(response.getBody(), typeRef);
-            } else {
-                logger.error("批量推理请求失败，状态码: {}", response.getStatusCode());
-                throw new RuntimeException("批量推理请求失败");
-            }
+            return await(batchInferenceAsync(request));
         } catch (Exception e) {
             logger.error("批量推理过程中发生错误: {}", e.getMessage(), e);
             throw new RuntimeException("批量推理过程中发生错误: " + e.getMessage());
         }
     }
 
+    /**
+     * 批量图片推理（异步）
+     */
+    public CompletableFuture<List<AIInferenceDto.InferenceResponse>> batchInferenceAsync(
+            AIInferenceDto.BatchInferenceRequest request) {
+        return batchInferenceRouted(request, InferenceLaneScheduler.Lane.BATCH)
+            .thenApply(InferenceEndpointRouter.Routed::getValue);
+    }
+
+    private CompletableFuture<InferenceEndpointRouter.Routed<List<AIInferenceDto.InferenceResponse>>> batchInferenceRouted(
+            AIInferenceDto.BatchInferenceRequest request, InferenceLaneScheduler.Lane lane) {
+        List<InferenceImagePreprocessor.Prepared> prepared = new ArrayList<>();
+        AIInferenceDto.BatchInferenceRequest outgoing = preprocessBatch(request, prepared);
+        int images = request.getImages() != null ? request.getImages().size() : 0;
+        return laneScheduler.submit(lane,
+                () -> endpointRouter.<List<AIInferenceDto.InferenceResponse>>route(request.getModelName(), images,
+                    measured(request.getModelName(), request.getTask(), images,
+                        url -> inferenceClient.postJson(url + "/batch_inference", outgoing,
+                            inferenceClient.listType(AIInferenceDto.InferenceResponse.class)))))
+            .thenApply(routed -> restoreAndExternalize(routed, prepared));
+    }
+
+    /**
+     * 预处理批量请求中的图片，逐张结果写入prepared；没有图片需要预处理时返回原请求
+     */
+    private AIInferenceDto.BatchInferenceRequest preprocessBatch(AIInferenceDto.BatchInferenceRequest request,
+                                                                 List<InferenceImagePreprocessor.Prepared> prepared) {
+        if (request.getImages() == null || !imagePreprocessor.appliesTo(request.getModelName(), request.getTask())) {
+            return request;
+        }
+        List<String> images = new ArrayList<>(request.getImages().size());
+        boolean changed = false;
+        for (String image : request.getImages()) {
+            InferenceImagePreprocessor.Prepared result =
+                imagePreprocessor.prepareBase64(request.getModelName(), request.getTask(), image);
+            prepared.add(result);
+            images.add(result != null ? result.toBase64() : image);
+            changed |= result != null;
+        }
+        if (!changed) {
+            return request;
+        }
+        AIInferenceDto.BatchInferenceRequest copy = new AIInferenceDto.BatchInferenceRequest();
+        copy.setTask(request.getTask());
+        copy.setModelName(request.getModelName());
+        copy.setConfidenceThreshold(request.getConfidenceThreshold());
+        copy.setNmsThreshold(request.getNmsThreshold());
+        copy.setMaxDetections(request.getMaxDetections());
+        copy.setReturnVisualization(request.getReturnVisualization());
+        copy.setBatchSize(request.getBatchSize());
+        copy.setImages(images);
+        return copy;
+    }
+
     /**
      * 获取可用模型列表
      */
     public List<AIInferenceDto.ModelInfo> getModels() {
         try {
-            String url = inferenceServerUrl + "/models";
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                TypeReference<List<AIInferenceDto.ModelInfo>> typeRef = 
-                    new TypeReference<List<AIInferenceDto.ModelInfo>>() {};
-                return objectMapper.readValue(response.getBody(), typeRef);
-            } else {
-                logger.error("获取模型列表失败，状态码: {}", response.getStatusCode());
-                throw new RuntimeException("获取模型列表失败");
-            }
+            return modelRegistry.getModels();
         } catch (Exception e) {
             logger.error("获取模型列表时发生错误: {}", e.getMessage(), e);
             throw new RuntimeException("获取模型列表时发生错误: " + e.getMessage());
@@ -309,16 +886,7 @@ public class AIInferenceService {
      */
     public AIInferenceDto.ModelInfo getModelInfo(String modelName) {
         try {
-            String url = inferenceServerUrl + "/models/" + modelName;
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return objectMapper.readValue(response.getBody(), AIInferenceDto.ModelInfo.class);
-            } else {
-                logger.error("获取模型信息失败，状态码: {}", response.getStatusCode());
-                throw new RuntimeException("获取模型信息失败");
-            }
+            return modelRegistry.getModel(modelName);
         } catch (Exception e) {
             logger.error("获取模型信息时发生错误: {}", e.getMessage(), e);
             throw new RuntimeException("获取模型信息时发生错误: " + e.getMessage());
@@ -327,22 +895,25 @@ public class AIInferenceService {
 
     /**
      * 加载模型
+     * 加载到尚未加载该模型且负载最低的节点
      */
     public boolean loadModel(String modelName) {
+        return loadModelOn(endpointRouter.chooseForLoad(modelName), modelName);
+    }
+
+    /**
+     * 在指定节点加载模型
+     */
+    public boolean loadModelOn(String endpoint, String modelName) {
         try {
-            String url = inferenceServerUrl + "/models/load";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
             AIInferenceDto.ModelLoadRequest request = new AIInferenceDto.ModelLoadRequest();
             request.setModelName(modelName);
-            
-            HttpEntity<AIInferenceDto.ModelLoadRequest> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-            
-            return response.getStatusCode() == HttpStatus.OK;
+
+            await(inferenceClient.postJson(endpoint + "/models/load", request, inferenceClient.mapType()));
+            logger.info("模型已加载: model={}, node={}", modelName, endpoint);
+            resultCache.invalidateModel(modelName);
+            modelRegistry.markLoaded(endpoint, modelName);
+            return true;
         } catch (Exception e) {
             logger.error("加载模型时发生错误: {}", e.getMessage(), e);
             return false;
@@ -351,25 +922,35 @@ public class AIInferenceService {
 
     /**
      * 卸载模型
+     * 从所有已加载该模型的节点卸载；模型分布未知时向全部节点发送
      */
     public boolean unloadModel(String modelName) {
+        List<String> endpoints = endpointRouter.endpointsWithModel(modelName);
+        if (endpoints.isEmpty()) {
+            endpoints = endpointRouter.getEndpointUrls();
+        }
+        boolean allSucceeded = true;
+        for (String endpoint : endpoints) {
+            allSucceeded &= unloadModelFrom(endpoint, modelName);
+        }
+        return allSucceeded;
+    }
+
+    /**
+     * 从指定节点卸载模型
+     */
+    public boolean unloadModelFrom(String endpoint, String modelName) {
+        AIInferenceDto.ModelUnloadRequest request = new AIInferenceDto.ModelUnloadRequest();
+        request.setModelName(modelName);
         try {
-            String url = inferenceServerUrl + "/models/unload";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            AIInferenceDto.ModelUnloadRequest request = new AIInferenceDto.ModelUnloadRequest();
-            request.setModelName(modelName);
-            
-            HttpEntity<AIInferenceDto.ModelUnloadRequest> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-            
-            return response.getStatusCode() == HttpStatus.OK;
+            await(inferenceClient.postJson(endpoint + "/models/unload", request, inferenceClient.mapType()));
+            modelRegistry.markUnloaded(endpoint, modelName);
+            return true;
         } catch (Exception e) {
-            logger.error("卸载模型时发生错误: {}", e.getMessage(), e);
+            logger.error("卸载模型时发生错误: node={}, error={}", endpoint, e.getMessage(), e);
             return false;
+        } finally {
+            resultCache.invalidateModel(modelName);
         }
     }
 
@@ -378,18 +959,7 @@ public class AIInferenceService {
      */
     public List<AIInferenceDto.ModelInfo> getLoadedModels() {
         try {
-            String url = inferenceServerUrl + "/models/loaded";
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                TypeReference<List<AIInferenceDto.ModelInfo>> typeRef = 
-                    new TypeReference<List<AIInferenceDto.ModelInfo>>() {};
-                return objectMapper.readValue(response.getBody(), typeRef);
-            } else {
-                logger.error("获取已加载模型失败，状态码: {}", response.getStatusCode());
-                throw new RuntimeException("获取已加载模型失败");
-            }
+            return modelRegistry.getLoadedModels();
         } catch (Exception e) {
             logger.error("获取已加载模型时发生错误: {}", e.getMessage(), e);
             throw new RuntimeException("获取已加载模型时发生错误: " + e.getMessage());
@@ -398,23 +968,10 @@ public class AIInferenceService {
 
     /**
      * 获取推理统计信息
+     * 取自后端本地记录的调用统计，汇总全部推理节点，不受推理服务器重启影响
      */
     public AIInferenceDto.InferenceStats getStats() {
-        try {
-            String url = inferenceServerUrl + "/stats";
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                return objectMapper.readValue(response.getBody(), AIInferenceDto.InferenceStats.class);
-            } else {
-                logger.error("获取统计信息失败，状态码: {}", response.getStatusCode());
-                throw new RuntimeException("获取统计信息失败");
-            }
-        } catch (Exception e) {
-            logger.error("获取统计信息时发生错误: {}", e.getMessage(), e);
-            throw new RuntimeException("获取统计信息时发生错误: " + e.getMessage());
-        }
+        return latencyStats.getStats();
     }
 
     /**
@@ -422,18 +979,7 @@ public class AIInferenceService {
      */
     public Map<String, Object> getConfig() {
         try {
-            String url = inferenceServerUrl + "/config";
-            
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            
-            if (response.getStatusCode() == HttpStatus.OK) {
-                TypeReference<Map<String, Object>> typeRef = 
-                    new TypeReference<Map<String, Object>>() {};
-                return objectMapper.readValue(response.getBody(), typeRef);
-            } else {
-                logger.error("获取配置信息失败，状态码: {}", response.getStatusCode());
-                throw new RuntimeException("获取配置信息失败");
-            }
+            return modelRegistry.getConfig();
         } catch (Exception e) {
             logger.error("获取配置信息时发生错误: {}", e.getMessage(), e);
             throw new RuntimeException("获取配置信息时发生错误: " + e.getMessage());
@@ -442,23 +988,61 @@ public class AIInferenceService {
 
     /**
      * 更新配置
+     * 配置下发到全部节点，全部成功才返回true
      */
     public boolean updateConfig(AIInferenceDto.ConfigUpdateRequest request) {
-        try {
-            String url = inferenceServerUrl + "/config";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<AIInferenceDto.ConfigUpdateRequest> entity = new HttpEntity<>(request, headers);
-            
-            ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.PUT, entity, Map.class);
-            
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (Exception e) {
-            logger.error("更新配置时发生错误: {}", e.getMessage(), e);
-            return false;
+        boolean anySucceeded = false;
+        boolean allSucceeded = true;
+        for (String endpoint : endpointRouter.getEndpointUrls()) {
+            try {
+                await(inferenceClient.putJson(endpoint + "/config", request, inferenceClient.mapType()));
+                anySucceeded = true;
+            } catch (Exception e) {
+                logger.error("更新配置时发生错误: node={}, error={}", endpoint, e.getMessage(), e);
+                allSucceeded = false;
+            }
         }
+        if (anySucceeded) {
+            modelRegistry.applyConfigUpdate(request);
+        }
+        return allSucceeded;
+    }
+
+    /**
+     * 获取推理节点路由状态
+     */
+    public List<Map<String, Object>> getEndpointStatus() {
+        return endpointRouter.getStatus();
+    }
+
+    /**
+     * 获取调度通道状态
+     */
+    public Map<String, Object> getLaneStatus() {
+        return laneScheduler.getStatus();
+    }
+
+    /**
+     * 获取请求对冲状态
+     */
+    public Map<String, Object> getHedgingStatus() {
+        return requestHedger.getStatus();
+    }
+
+    /**
+     * 获取模型目录状态
+     */
+    public Map<String, Object> getModelCatalogueStatus() {
+        return modelRegistry.getStatus();
+    }
+
+    /**
+     * 获取推理结果缓存统计信息
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = resultCache.getStats();
+        stats.put("single_flight", singleFlight.getStatus());
+        return stats;
     }
 
     /**
@@ -469,19 +1053,80 @@ public class AIInferenceService {
     }
 
     /**
-     * 重置推理统计信息
+     * 重置推理统计信息（本地统计及各推理节点的统计）
      */
     public boolean resetInferenceStats() {
+        latencyStats.reset();
+        boolean allSucceeded = true;
+        for (String endpoint : endpointRouter.getEndpointUrls()) {
+            try {
+                await(inferenceClient.postJson(endpoint + "/stats/reset", null, inferenceClient.mapType()));
+            } catch (Exception e) {
+                logger.error("重置统计信息时发生错误: node={}, error={}", endpoint, e.getMessage(), e);
+                allSucceeded = false;
+            }
+        }
+        return allSucceeded;
+    }
+
+    /**
+     * 等待远程调用完成，并还原原始异常
+     */
+    private <T> T await(CompletableFuture<T> future) {
         try {
-            String url = inferenceServerUrl + "/stats/reset";
-            
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, null, Map.class);
-            
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (Exception e) {
-            logger.error("重置统计信息时发生错误: {}", e.getMessage(), e);
-            return false;
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
         }
+        return error;
+    }
+
+    /**
+     * 将远程调用异常转换为推理错误信息
+     */
+    private String describeInferenceError(Throwable error) {
+        if (error instanceof IOException) {
+            logger.error("连接推理服务器失败: {}", error.getMessage());
+            return "连接推理服务器失败";
+        }
+        if (error instanceof TimeoutException) {
+            logger.error("推理服务器响应超时");
+            return "推理服务器响应超时";
+        }
+        if (error instanceof InferenceHttpClient.CircuitOpenException) {
+            logger.warn("推理服务器熔断中，请求被快速拒绝: {}", error.getMessage());
+            return "推理服务器暂不可用，请稍后重试";
+        }
+        if (error instanceof InferenceHttpClient.RemoteCallException) {
+            logger.error("推理请求失败: {}", error.getMessage());
+            return "推理请求失败";
+        }
+        logger.error("推理过程中发生错误: {}", error.getMessage(), error);
+        return "推理过程中发生错误: " + error.getMessage();
+    }
+
+    /**
+     * 在回调线程中恢复调用方的安全上下文，以便记录历史时获取当前用户
+     */
+    private Executor callerContextExecutor() {
+        return new DelegatingSecurityContextExecutor(Runnable::run, SecurityContextHolder.getContext());
+    }
+
+    /**
+     * 生成推理任务ID
+     */
+    public String newTaskId() {
+        return "task_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 10000);
     }
 
     /**
@@ -497,18 +1142,6 @@ public class AIInferenceService {
         return response;
     }
 
-    /**
-     * 创建模拟检测结果
-     */
-    private AIInferenceDto.DetectionResult createMockDetectionResult(String className, double confidence, 
-                                                                    int x, int y, int width, int height) {
-        AIInferenceDto.DetectionResult detection = new AIInferenceDto.DetectionResult();
-        detection.setClassName(className);
-        detection.setConfidence(confidence);
-        detection.setBbox(List.of((double)x, (double)y, (double)(x + width), (double)(y + height)));
-        return detection;
-    }
-
     /**
      * 记录推理历史
      */
@@ -516,7 +1149,8 @@ public class AIInferenceService {
                                       AIInferenceDto.InferenceRequest request,
                                       AIInferenceDto.InferenceResponse response,
                                       String originalFilename, Long fileSize,
-                                      long startTime, String status, String errorMessage) {
+                                      long startTime, String status, String errorMessage, String tags,
+                                      String inferenceServer) {
         try {
             long processingTime = System.currentTimeMillis() - startTime;
             
@@ -537,11 +1171,12 @@ public class AIInferenceService {
                     .userId(getCurrentUserId())
                     .username(getCurrentUsername())
                     .deviceInfo(getDeviceInfo())
-                    .inferenceServer(inferenceServerUrl)
+                    .inferenceServer(inferenceServer)
+                    .tags(tags)
                     .build();
             
-            inferenceHistoryService.createInferenceHistory(historyRequest);
-            logger.debug("推理历史记录已保存: taskId={}", taskId);
+            historyWriter.append(historyRequest);
+            logger.debug("推理历史记录已提交写入: taskId={}", taskId);
         } catch (Exception e) {
             logger.error("保存推理历史记录失败: taskId={}, error={}", taskId, e.getMessage(), e);
         }
@@ -550,23 +1185,14 @@ public class AIInferenceService {
     /**
      * 记录批量推理历史
      */
-    private void recordBatchInferenceHistory(String taskId, AIInferenceDto.BatchInferenceRequest request,
+    public void recordBatchInferenceHistory(String taskId, AIInferenceDto.BatchInferenceRequest request,
                                            Map<String, Object> response, List<MultipartFile> files,
                                            long startTime, String status, String errorMessage) {
         try {
             long processingTime = System.currentTimeMillis() - startTime;
             
             // 计算总的检测对象数量
-            int totalDetectedObjects = 0;
-            if (response.containsKey("results")) {
-                List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("results");
-                for (Map<String, Object> result : results) {
-                    if (result.containsKey("detections")) {
-                        List<?> detections = (List<?>) result.get("detections");
-                        totalDetectedObjects += detections.size();
-                    }
-                }
-            }
+            int totalDetectedObjects = countDetectedObjects(response);
             
             InferenceHistoryDto.CreateInferenceHistoryRequest historyRequest = 
                 InferenceHistoryDto.CreateInferenceHistoryRequest.builder()
@@ -585,17 +1211,92 @@ public class AIInferenceService {
                     .userId(getCurrentUserId())
                     .username(getCurrentUsername())
                     .deviceInfo(getDeviceInfo())
-                    .inferenceServer(inferenceServerUrl)
+                    .inferenceServer(inferenceServers(response))
                     .tags("batch_inference")
                     .build();
             
-            inferenceHistoryService.createInferenceHistory(historyRequest);
-            logger.debug("批量推理历史记录已保存: taskId={}", taskId);
+            historyWriter.append(historyRequest);
+            logger.debug("批量推理历史记录已提交写入: taskId={}", taskId);
         } catch (Exception e) {
             logger.error("保存批量推理历史记录失败: taskId={}, error={}", taskId, e.getMessage(), e);
         }
     }
 
+    /**
+     * 批量推理任务结束后更新其总体历史记录
+     */
+    public void completeBatchInferenceHistory(String taskId, Map<String, Object> response,
+                                              long startTime, String status, String errorMessage) {
+        try {
+            InferenceHistoryDto.UpdateInferenceHistoryRequest updateRequest =
+                InferenceHistoryDto.UpdateInferenceHistoryRequest.builder()
+                    .status(status)
+                    .errorMessage(errorMessage)
+                    .inferenceResult(response)
+                    .detectedObjectsCount(countDetectedObjects(response))
+                    .processingTime(System.currentTimeMillis() - startTime)
+                    .inferenceServer(inferenceServers(response))
+                    .build();
+
+            historyWriter.update(taskId, updateRequest);
+            logger.debug("批量推理历史记录已提交更新: taskId={}, status={}", taskId, status);
+        } catch (Exception e) {
+            logger.error("更新批量推理历史记录失败: taskId={}, error={}", taskId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 计算批量推理结果中的检测对象总数
+     */
+    @SuppressWarnings("unchecked")
+    private int countDetectedObjects(Map<String, Object> response) {
+        int totalDetectedObjects = 0;
+        if (response.containsKey("results")) {
+            List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("results");
+            for (Map<String, Object> result : results) {
+                if (result != null && result.containsKey("detections")) {
+                    List<?> detections = (List<?>) result.get("detections");
+                    totalDetectedObjects += detections.size();
+                }
+            }
+        }
+        return totalDetectedObjects;
+    }
+
+    /**
+     * 批量推理实际使用的节点，多个节点以逗号分隔
+     */
+    @SuppressWarnings("unchecked")
+    private String inferenceServers(Map<String, Object> response) {
+        if (!(response.get("results") instanceof List)) {
+            return null;
+        }
+        Set<String> servers = new LinkedHashSet<>();
+        for (Map<String, Object> result : (List<Map<String, Object>>) response.get("results")) {
+            if (result != null && result.get("inference_server") != null) {
+                servers.add((String) result.get("inference_server"));
+            }
+        }
+        if (servers.isEmpty()) {
+            return null;
+        }
+        String joined = String.join(",", servers);
+        return joined.length() > 255 ? joined.substring(0, 255) : joined;
+    }
+
+    /**
+     * 以调用方的身份提交一组文件的推理历史，由异步写入器落库
+     */
+    private void recordBatchFileHistoriesAsync(String batchTaskId, AIInferenceDto.BatchInferenceRequest request,
+                                               List<MultipartFile> files, List<Map<String, Object>> results,
+                                               long startTime, Executor historyExecutor) {
+        historyExecutor.execute(() -> {
+            for (int i = 0; i < files.size(); i++) {
+                recordBatchFileInferenceHistory(batchTaskId, request, files.get(i), results.get(i), startTime);
+            }
+        });
+    }
+
     /**
      * 记录批量推理中单个文件的历史
      */
@@ -632,12 +1333,13 @@ public class AIInferenceService {
                     .userId(getCurrentUserId())
                     .username(getCurrentUsername())
                     .deviceInfo(getDeviceInfo())
-                    .inferenceServer(inferenceServerUrl)
-                    .tags("batch_file,parent_task:" + batchTaskId)
+                    .inferenceServer((String) fileResult.get("inference_server"))
+                    .tags("batch_file,parent_task:" + batchTaskId
+                        + (Boolean.TRUE.equals(fileResult.get("cached")) ? "," + CACHE_HIT_TAG : ""))
                     .build();
             
-            inferenceHistoryService.createInferenceHistory(historyRequest);
-            logger.debug("批量文件推理历史记录已保存: fileTaskId={}", fileTaskId);
+            historyWriter.append(historyRequest);
+            logger.debug("批量文件推理历史记录已提交写入: fileTaskId={}", fileTaskId);
         } catch (Exception e) {
             logger.error("保存批量文件推理历史记录失败: file={}, error={}", 
                 file.getOriginalFilename(), e.getMessage(), e);
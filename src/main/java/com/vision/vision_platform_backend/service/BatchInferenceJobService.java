@@ -0,0 +1,390 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 异步批量推理任务服务
+ * 提交后立即返回任务ID，文件在有界工作线程池中分块处理，
+ * 处理进度和已完成部分的结果可随时查询。任务ID即推理历史中的taskId。
+ */
+@Service
+public class BatchInferenceJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchInferenceJobService.class);
+
+    @Value("${ai.inference.jobs.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${ai.inference.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${ai.inference.jobs.chunk-size:8}")
+    private int defaultChunkSize;
+
+    @Value("${ai.inference.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${ai.inference.jobs.work-dir:${java.io.tmpdir}/vss-inference-jobs}")
+    private String workDir;
+
+    private final AIInferenceService aiInferenceService;
+    private final Map<String, BatchInferenceJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    public BatchInferenceJobService(AIInferenceService aiInferenceService) {
+        this.aiInferenceService = aiInferenceService;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "ai-batch-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交异步批量推理任务
+     * 上传文件先转存到任务目录，请求结束后仍可读取
+     *
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public AIInferenceDto.BatchJobStatus submit(List<MultipartFile> files,
+                                                AIInferenceDto.BatchInferenceRequest request) throws IOException {
+        pruneFinishedJobs();
+
+        // 任务ID同时用作任务目录名和历史记录的task_id，须全局唯一
+        String jobId = "job_" + UUID.randomUUID();
+        long startTime = System.currentTimeMillis();
+        Path jobDir = Files.createDirectories(Paths.get(workDir, jobId));
+
+        List<MultipartFile> storedFiles = new ArrayList<>(files.size());
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                MultipartFile file = files.get(i);
+                Path target = jobDir.resolve(String.valueOf(i));
+                file.transferTo(target);
+                storedFiles.add(new StoredUploadFile(target, file.getOriginalFilename(), file.getContentType()));
+            }
+        } catch (IOException e) {
+            deleteDirectory(jobDir);
+            throw e;
+        }
+
+        BatchInferenceJob job = new BatchInferenceJob(jobId, storedFiles);
+        Map<String, Object> submitted = new HashMap<>();
+        submitted.put("job_id", jobId);
+        submitted.put("total_files", storedFiles.size());
+        aiInferenceService.recordBatchInferenceHistory(jobId, request, submitted,
+                storedFiles, startTime, "PROCESSING", null);
+
+        jobs.put(jobId, job);
+        try {
+            executor.execute(new DelegatingSecurityContextRunnable(
+                    () -> runJob(job, storedFiles, request, startTime, jobDir)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            deleteDirectory(jobDir);
+            aiInferenceService.completeBatchInferenceHistory(jobId, submitted, startTime, "FAILED",
+                    "批量推理任务队列已满");
+            throw e;
+        }
+
+        logger.info("异步批量推理任务已提交: jobId={}, 文件数量={}", jobId, storedFiles.size());
+        return job.snapshot(false);
+    }
+
+    /**
+     * 查询任务状态
+     */
+    public Optional<AIInferenceDto.BatchJobStatus> getJob(String jobId, boolean includeResults) {
+        return Optional.ofNullable(jobs.get(jobId)).map(job -> job.snapshot(includeResults));
+    }
+
+    /**
+     * 取消任务，尚未处理的文件不再发送
+     */
+    public Optional<AIInferenceDto.BatchJobStatus> cancelJob(String jobId) {
+        BatchInferenceJob job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.cancel();
+        return Optional.of(job.snapshot(false));
+    }
+
+    private void runJob(BatchInferenceJob job, List<MultipartFile> files,
+                        AIInferenceDto.BatchInferenceRequest request,
+                        long startTime, Path jobDir) {
+        try {
+            if (!job.start()) {
+                // 排队期间已被取消，提交时写入的PROCESSING历史记录也需要结束
+                aiInferenceService.completeBatchInferenceHistory(job.getJobId(),
+                        aiInferenceService.summarizeBatch(files.size(), List.of(), startTime), startTime,
+                        "CANCELLED", "任务已取消");
+                logger.info("异步批量推理任务在排队期间被取消: jobId={}", job.getJobId());
+                return;
+            }
+            int chunkSize = request.getBatchSize() != null && request.getBatchSize() > 0
+                    ? request.getBatchSize() : defaultChunkSize;
+
+            // 异步任务走后台通道，不挤占交互推理和同步批量推理
+            aiInferenceService.inferBatchChunksAsync(job.getJobId(), files, request, startTime, chunkSize,
+                    InferenceLaneScheduler.Lane.BACKGROUND, job::addResults, job::isCancelled).join();
+
+            Map<String, Object> summary = aiInferenceService.summarizeBatch(files.size(), job.completedResults(), startTime);
+            String status = job.finish();
+            aiInferenceService.completeBatchInferenceHistory(job.getJobId(), summary, startTime, status,
+                    "CANCELLED".equals(status) ? "任务已取消" : null);
+            logger.info("异步批量推理任务结束: jobId={}, status={}", job.getJobId(), status);
+        } catch (Exception e) {
+            logger.error("异步批量推理任务失败: jobId={}, error={}", job.getJobId(), e.getMessage(), e);
+            job.fail(e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            aiInferenceService.completeBatchInferenceHistory(job.getJobId(), errorResponse, startTime, "FAILED",
+                    "批量推理过程中发生错误: " + e.getMessage());
+        } finally {
+            deleteDirectory(jobDir);
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已结束任务
+     */
+    private void pruneFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinishedBefore(threshold));
+    }
+
+    private void deleteDirectory(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("删除批量推理任务目录失败: {}, error={}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量推理任务的运行状态
+     */
+    private static class BatchInferenceJob {
+        private final String jobId;
+        private final List<String> filenames;
+        private final Map<String, Object>[] results;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private String status = "QUEUED";
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private String errorMessage;
+        private volatile boolean cancelled;
+
+        @SuppressWarnings("unchecked")
+        BatchInferenceJob(String jobId, List<MultipartFile> files) {
+            this.jobId = jobId;
+            this.filenames = new ArrayList<>(files.size());
+            for (MultipartFile file : files) {
+                filenames.add(file.getOriginalFilename());
+            }
+            this.results = new Map[files.size()];
+        }
+
+        String getJobId() {
+            return jobId;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized boolean start() {
+            if (cancelled) {
+                status = "CANCELLED";
+                finishedAt = LocalDateTime.now();
+                return false;
+            }
+            status = "PROCESSING";
+            startedAt = LocalDateTime.now();
+            return true;
+        }
+
+        synchronized void addResults(int offset, List<Map<String, Object>> chunkResults) {
+            for (int i = 0; i < chunkResults.size(); i++) {
+                results[offset + i] = chunkResults.get(i);
+            }
+        }
+
+        synchronized List<Map<String, Object>> completedResults() {
+            List<Map<String, Object>> completed = new ArrayList<>();
+            for (Map<String, Object> result : results) {
+                if (result != null) {
+                    completed.add(result);
+                }
+            }
+            return completed;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if ("QUEUED".equals(status)) {
+                status = "CANCELLED";
+                finishedAt = LocalDateTime.now();
+            }
+        }
+
+        synchronized String finish() {
+            status = cancelled ? "CANCELLED" : "SUCCESS";
+            finishedAt = LocalDateTime.now();
+            return status;
+        }
+
+        synchronized void fail(String message) {
+            status = "FAILED";
+            errorMessage = message;
+            finishedAt = LocalDateTime.now();
+        }
+
+        synchronized boolean isFinishedBefore(LocalDateTime threshold) {
+            return finishedAt != null && finishedAt.isBefore(threshold);
+        }
+
+        synchronized AIInferenceDto.BatchJobStatus snapshot(boolean includeResults) {
+            int processed = 0;
+            int failed = 0;
+            List<AIInferenceDto.BatchJobFile> files = new ArrayList<>(results.length);
+            for (int i = 0; i < results.length; i++) {
+                String fileStatus;
+                if (results[i] == null) {
+                    fileStatus = cancelled ? "CANCELLED" : "PENDING";
+                } else if (Boolean.TRUE.equals(results[i].get("success"))) {
+                    fileStatus = "SUCCESS";
+                    processed++;
+                } else {
+                    fileStatus = "FAILED";
+                    processed++;
+                    failed++;
+                }
+                files.add(new AIInferenceDto.BatchJobFile(i, filenames.get(i), fileStatus));
+            }
+
+            AIInferenceDto.BatchJobStatus snapshot = new AIInferenceDto.BatchJobStatus();
+            snapshot.setJobId(jobId);
+            snapshot.setStatus(status);
+            snapshot.setTotalFiles(results.length);
+            snapshot.setProcessedFiles(processed);
+            snapshot.setFailedFiles(failed);
+            snapshot.setProgress(results.length > 0 ? processed * 100.0 / results.length : 100.0);
+            snapshot.setCreatedAt(createdAt);
+            snapshot.setStartedAt(startedAt);
+            snapshot.setFinishedAt(finishedAt);
+            snapshot.setErrorMessage(errorMessage);
+            snapshot.setFiles(files);
+            if (includeResults) {
+                snapshot.setResults(completedResults());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 转存到任务目录的上传文件
+     */
+    private static class StoredUploadFile implements MultipartFile {
+        private final Path path;
+        private final String originalFilename;
+        private final String contentType;
+
+        StoredUploadFile(Path path, String originalFilename, String contentType) {
+            this.path = path;
+            this.originalFilename = originalFilename;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public String getName() {
+            return "files";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return originalFilename;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
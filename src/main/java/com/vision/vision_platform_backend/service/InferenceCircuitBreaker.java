@@ -0,0 +1,171 @@
+package com.vision.vision_platform_backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 推理服务器熔断器
+ * 以滑动窗口记录最近若干次调用的失败和慢调用，比例超过阈值时打开熔断，
+ * 打开期间直接拒绝调用；冷却时间过后进入半开状态，只放行少量探测请求，
+ * 探测全部成功则关闭熔断，任一失败则重新打开。
+ */
+public class InferenceCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdMs;
+    private final double slowCallRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int position;
+    private int recorded;
+    private int failureCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long rejectedCalls;
+
+    public InferenceCircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                                   long slowCallThresholdMs, double slowCallRateThreshold,
+                                   long openDurationMs, int halfOpenProbes) {
+        this.name = name;
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdMs = slowCallThresholdMs;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.failures = new boolean[this.windowSize];
+        this.slowCalls = new boolean[this.windowSize];
+    }
+
+    /**
+     * 申请一次调用，熔断打开或半开探测名额已满时返回false
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && probesInFlight + probeSuccesses < halfOpenProbes) {
+            probesInFlight++;
+            return true;
+        }
+        rejectedCalls++;
+        return false;
+    }
+
+    /**
+     * 记录一次调用结果
+     *
+     * @param failed    是否失败（连接失败、超时、服务器5xx）
+     * @param latencyMs 调用耗时
+     */
+    public synchronized void record(boolean failed, long latencyMs) {
+        boolean slow = latencyMs >= slowCallThresholdMs;
+        switch (state) {
+            case HALF_OPEN -> {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (failed || slow) {
+                    open();
+                } else if (++probeSuccesses >= halfOpenProbes) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (recorded == windowSize) {
+                    failureCount -= failures[position] ? 1 : 0;
+                    slowCount -= slowCalls[position] ? 1 : 0;
+                } else {
+                    recorded++;
+                }
+                failures[position] = failed;
+                slowCalls[position] = slow;
+                failureCount += failed ? 1 : 0;
+                slowCount += slow ? 1 : 0;
+                position = (position + 1) % windowSize;
+
+                if (recorded >= minimumCalls
+                        && (failureCount >= failureRateThreshold * recorded
+                        || slowCount >= slowCallRateThreshold * recorded)) {
+                    open();
+                }
+            }
+            default -> {
+                // 熔断打开前已发出的调用，结果不再计入
+            }
+        }
+    }
+
+    /**
+     * 已获准的调用被调用方取消，没有结果可记录
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * 熔断打开时距离允许探测还剩的毫秒数
+     */
+    public synchronized long getRetryAfterMs() {
+        return state == State.OPEN ? Math.max(0, openDurationMs - (System.currentTimeMillis() - openedAt)) : 0;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0.0 : (double) failureCount / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0.0 : (double) slowCount / recorded;
+    }
+
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+
+    private void open() {
+        logger.warn("推理服务器熔断打开: {}, 状态: {}, 失败率: {}, 慢调用率: {}",
+                name, state, getFailureRate(), getSlowCallRate());
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probesInFlight = 0;
+        probeSuccesses = 0;
+    }
+
+    private void close() {
+        logger.info("推理服务器熔断关闭: {}", name);
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.vision.vision_platform_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 推理接口自适应并发限制
+ * 采用梯度算法：比较长期平均耗时与近期耗时，近期耗时上升（排队）时按比例收缩并发上限，
+ * 耗时平稳且上限确实被用满时缓慢放大。超过上限的请求直接拒绝，避免在推理服务器变慢时
+ * 请求在Tomcat线程上堆积拖垮整个后端。
+ * 推理服务器超时或返回429/503时没有可用的耗时样本，视为拥塞信号按比例收缩上限；
+ * 熔断打开、连接被拒绝等快速失败不反映排队情况，不参与调整。
+ */
+@Component
+public class InferenceConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceConcurrencyLimiter.class);
+
+    @Value("${ai.inference.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.inference.limiter.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${ai.inference.limiter.min-limit:4}")
+    private int minLimit;
+
+    @Value("${ai.inference.limiter.max-limit:200}")
+    private int maxLimit;
+
+    /**
+     * 近期耗时可超过长期平均耗时的倍数，超过后开始收缩
+     */
+    @Value("${ai.inference.limiter.rtt-tolerance:1.5}")
+    private double rttTolerance;
+
+    @Value("${ai.inference.limiter.smoothing:0.2}")
+    private double smoothing;
+
+    /**
+     * 长期平均耗时的样本窗口
+     */
+    @Value("${ai.inference.limiter.long-window:600}")
+    private int longWindow;
+
+    /**
+     * 遇到拥塞信号时上限乘以的系数
+     */
+    @Value("${ai.inference.limiter.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejectedCounter;
+
+    private volatile double limit;
+    private double shortRttMs;
+    private double longRttMs;
+    private long samples;
+    private long lastBackoffNanos;
+
+    public InferenceConcurrencyLimiter(MeterRegistry meterRegistry) {
+        Gauge.builder("ai.inference.limiter.limit", this, InferenceConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("ai.inference.limiter.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+        this.rejectedCounter = Counter.builder("ai.inference.limiter.rejected").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * 申请执行一次推理，超过并发上限时返回null
+     */
+    public Permit tryAcquire() {
+        if (!enabled) {
+            return new Permit(false);
+        }
+        int limitNow = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limitNow) {
+                rejectedCounter.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(true);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) Math.max(minLimit, Math.round(limit));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return (long) rejectedCounter.count();
+    }
+
+    /**
+     * 建议客户端等待的秒数，取近期平均耗时，至少1秒
+     */
+    public synchronized long getRetryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(shortRttMs / 1000.0));
+    }
+
+    /**
+     * 记录一次失败的推理调用，超时和上游限流（429/503/504）按比例收缩上限
+     * 同一批并发请求往往同时超时，每个近期耗时周期内最多收缩一次，避免上限瞬间跌到最小值
+     */
+    public void onFailure(Throwable error) {
+        if (!enabled || !isCongestion(error)) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            long intervalNanos = (long) (Math.max(100, shortRttMs) * 1_000_000);
+            if (lastBackoffNanos != 0 && now - lastBackoffNanos < intervalNanos) {
+                return;
+            }
+            lastBackoffNanos = now;
+            double current = getLimit();
+            double next = Math.max(minLimit, current * backoffRatio);
+            if ((int) next != (int) current) {
+                logger.debug("推理服务器拥塞，并发上限收缩: {} -> {}, 原因: {}",
+                        (int) current, (int) next, error.getClass().getSimpleName());
+            }
+            limit = next;
+        }
+    }
+
+    private static boolean isCongestion(Throwable error) {
+        if (error instanceof HttpTimeoutException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof InferenceHttpClient.RemoteCallException remote) {
+            int status = remote.getStatusCode();
+            return status == 429 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次成功推理的耗时并调整上限
+     */
+    private synchronized void onSample(double rttMs, int inFlightAtStart) {
+        if (samples++ == 0) {
+            shortRttMs = rttMs;
+            longRttMs = rttMs;
+        } else {
+            shortRttMs = shortRttMs + 0.5 * (rttMs - shortRttMs);
+            longRttMs = longRttMs + (rttMs - longRttMs) / Math.min(samples, longWindow);
+        }
+        // 长期耗时明显高于近期耗时时说明负载已经回落，让长期基线更快跟上
+        if (longRttMs / shortRttMs > 2) {
+            longRttMs *= 0.95;
+        }
+
+        double current = getLimit();
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttMs / shortRttMs));
+        // 并发没有用到上限一半时，耗时平稳不能说明上限可以更高，只收缩不放大
+        if (gradient >= 1.0 && inFlightAtStart < current / 2) {
+            return;
+        }
+
+        double queueSize = Math.sqrt(current);
+        double target = current * gradient + queueSize;
+        double next = current * (1 - smoothing) + target * smoothing;
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+
+        if ((int) next != (int) current) {
+            logger.debug("推理并发上限调整: {} -> {}, 近期耗时: {}ms, 长期耗时: {}ms",
+                    (int) current, (int) next, Math.round(shortRttMs), Math.round(longRttMs));
+        }
+        limit = next;
+    }
+
+    /**
+     * 一次已获准的推理，完成后必须调用 {@link #release(boolean, int)}
+     */
+    public class Permit {
+        private final boolean counted;
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(boolean counted) {
+            this.counted = counted;
+            this.inFlightAtStart = inFlight.get();
+        }
+
+        /**
+         * 释放并发名额
+         *
+         * @param success 推理是否成功，失败的耗时不作为样本（拥塞类失败由 {@link #onFailure(Throwable)} 处理）
+         * @param units   本次处理的图片数，批量推理按单张平均耗时计入
+         */
+        public void release(boolean success, int units) {
+            if (!counted || !released.compareAndSet(false, true)) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            if (success) {
+                double rttMs = (System.nanoTime() - startNanos) / 1_000_000.0 / Math.max(1, units);
+                onSample(rttMs, inFlightAtStart);
+            }
+        }
+    }
+}
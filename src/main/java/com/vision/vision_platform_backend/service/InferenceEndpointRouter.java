@@ -0,0 +1,400 @@
+package com.vision.vision_platform_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 推理服务器节点路由
+ * ai.inference.server.url 可配置多个以逗号分隔的节点。每次调用优先选择已加载目标模型的节点，
+ * 在其中选未完成请求数最少的一个；健康检查失败、熔断打开或被判定为慢节点的节点暂不参与路由。
+ * 慢节点判定：成功调用的平均耗时（指数加权）超过其余节点中位数的若干倍时，摘除一段时间后再放回。
+ * 耗时按单张图片计：批量调用除以图片数；超时的调用按请求超时时间计入，
+ * 否则只超时不返回的节点不会产生样本，平均耗时反而偏低。
+ */
+@Component
+public class InferenceEndpointRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceEndpointRouter.class);
+
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    @Value("${ai.inference.server.url:http://localhost:8000}")
+    private String serverUrls;
+
+    @Value("${ai.inference.timeout:30000}")
+    private int readTimeout;
+
+    @Value("${ai.inference.routing.slow-node-factor:3.0}")
+    private double slowNodeFactor;
+
+    @Value("${ai.inference.routing.min-samples:20}")
+    private int minSamples;
+
+    @Value("${ai.inference.routing.eject-seconds:30}")
+    private long ejectSeconds;
+
+    @Value("${ai.inference.routing.max-ejected-percent:50}")
+    private int maxEjectedPercent;
+
+    private final InferenceHttpClient inferenceClient;
+    private List<Endpoint> endpoints = List.of();
+
+    public InferenceEndpointRouter(InferenceHttpClient inferenceClient) {
+        this.inferenceClient = inferenceClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<Endpoint> parsed = new ArrayList<>();
+        for (String url : serverUrls.split(",")) {
+            String trimmed = url.trim();
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            if (!trimmed.isEmpty()) {
+                parsed.add(new Endpoint(trimmed));
+            }
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalStateException("未配置推理服务器地址: ai.inference.server.url");
+        }
+        endpoints = Collections.unmodifiableList(parsed);
+        logger.info("推理服务器节点: {}", getEndpointUrls());
+    }
+
+    /**
+     * 全部节点地址
+     */
+    public List<String> getEndpointUrls() {
+        List<String> urls = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            urls.add(endpoint.url);
+        }
+        return urls;
+    }
+
+    /**
+     * 任选一个可用节点，用于不区分节点的查询（模型目录、配置等）
+     */
+    public String primaryUrl() {
+        return choose(null, false).url;
+    }
+
+    /**
+     * 在选出的节点上执行一次调用，并记录该节点的未完成请求数和耗时
+     *
+     * @param modelName 目标模型，为空时不考虑模型分布
+     * @param call      以节点地址为参数发起调用
+     */
+    public <T> CompletableFuture<Routed<T>> route(String modelName, Function<String, CompletableFuture<T>> call) {
+        return route(modelName, 1, call);
+    }
+
+    /**
+     * 同 {@link #route(String, Function)}，用于一次处理多张图片的批量调用
+     *
+     * @param units 本次调用处理的图片数，耗时按单张平均计入
+     */
+    public <T> CompletableFuture<Routed<T>> route(String modelName, int units,
+                                                  Function<String, CompletableFuture<T>> call) {
+        Endpoint endpoint = choose(modelName, false);
+        return invoke(endpoint, units, call).thenApply(value -> new Routed<>(value, endpoint.url));
+    }
+
+    /**
+     * 在指定节点以外的可用节点上执行一次调用，用于对冲请求
+     * 除排除的节点外没有健康可用的节点时返回null，不发起调用
+     */
+    public <T> CompletableFuture<Routed<T>> routeAvoiding(String modelName, String excludedUrl,
+                                                          Function<String, CompletableFuture<T>> call) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.url.equals(excludedUrl) && isAvailable(endpoint, now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Endpoint endpoint = leastLoaded(preferModel(candidates, modelName, false));
+        return invoke(endpoint, 1, call).thenApply(value -> new Routed<>(value, endpoint.url));
+    }
+
+    /**
+     * 选择用于加载模型的节点：优先选择尚未加载该模型且负载最低的节点
+     */
+    public String chooseForLoad(String modelName) {
+        return choose(modelName, true).url;
+    }
+
+    /**
+     * 已加载指定模型的节点
+     */
+    public List<String> endpointsWithModel(String modelName) {
+        List<String> urls = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.hasModel(modelName)) {
+                urls.add(endpoint.url);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * 节点当前是否可用（健康、未被摘除、熔断未打开）
+     */
+    public boolean isAvailable(String url) {
+        Endpoint endpoint = find(url);
+        return endpoint != null && isAvailable(endpoint, System.currentTimeMillis());
+    }
+
+    /**
+     * 更新节点上已加载的模型
+     */
+    public void updatePlacement(String url, Set<String> loadedModels) {
+        Endpoint endpoint = find(url);
+        if (endpoint != null) {
+            Set<String> models = ConcurrentHashMap.newKeySet();
+            models.addAll(loadedModels);
+            endpoint.loadedModels = models;
+        }
+    }
+
+    /**
+     * 节点上已加载的模型
+     */
+    public Set<String> loadedModels(String url) {
+        Endpoint endpoint = find(url);
+        return endpoint != null && endpoint.loadedModels != null ? Set.copyOf(endpoint.loadedModels) : Set.of();
+    }
+
+    public void addModel(String url, String modelName) {
+        Endpoint endpoint = find(url);
+        if (endpoint != null) {
+            endpoint.loadedModels().add(modelName);
+        }
+    }
+
+    public void removeModel(String url, String modelName) {
+        Endpoint endpoint = find(url);
+        if (endpoint != null) {
+            endpoint.loadedModels().remove(modelName);
+        }
+    }
+
+    /**
+     * 更新节点健康检查结果
+     */
+    public void markHealth(String url, boolean healthy) {
+        Endpoint endpoint = find(url);
+        if (endpoint != null) {
+            endpoint.healthy = healthy;
+        }
+    }
+
+    /**
+     * 各节点路由状态
+     */
+    public List<Map<String, Object>> getStatus() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> status = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            Map<String, Object> node = new HashMap<>();
+            node.put("url", endpoint.url);
+            node.put("healthy", endpoint.healthy);
+            node.put("available", isAvailable(endpoint, now));
+            node.put("ejected", endpoint.ejectedUntil > now);
+            node.put("outstanding_requests", endpoint.outstanding.get());
+            node.put("avg_latency_ms", endpoint.latencyMs);
+            node.put("circuit_breaker", inferenceClient.circuitBreaker(endpoint.url).getState().name());
+            node.put("loaded_models", endpoint.loadedModels != null ? new ArrayList<>(endpoint.loadedModels) : null);
+            status.add(node);
+        }
+        return status;
+    }
+
+    private Endpoint choose(String modelName, boolean preferWithoutModel) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (isAvailable(endpoint, now)) {
+                candidates.add(endpoint);
+            }
+        }
+        // 没有可用节点时仍在全部节点中选择，由熔断器决定是否快速失败
+        if (candidates.isEmpty()) {
+            candidates = new ArrayList<>(endpoints);
+        }
+
+        return leastLoaded(preferModel(candidates, modelName, preferWithoutModel));
+    }
+
+    private List<Endpoint> preferModel(List<Endpoint> candidates, String modelName, boolean preferWithoutModel) {
+        if (modelName == null) {
+            return candidates;
+        }
+        List<Endpoint> matching = new ArrayList<>();
+        for (Endpoint endpoint : candidates) {
+            if (endpoint.hasModel(modelName) != preferWithoutModel) {
+                matching.add(endpoint);
+            }
+        }
+        return matching.isEmpty() ? candidates : matching;
+    }
+
+    private Endpoint leastLoaded(List<Endpoint> candidates) {
+        Endpoint best = null;
+        for (Endpoint endpoint : candidates) {
+            if (best == null
+                    || endpoint.outstanding.get() < best.outstanding.get()
+                    || (endpoint.outstanding.get() == best.outstanding.get() && endpoint.latencyMs < best.latencyMs)) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    private boolean isAvailable(Endpoint endpoint, long now) {
+        return endpoint.healthy
+                && endpoint.ejectedUntil <= now
+                && inferenceClient.circuitBreaker(endpoint.url).getState() != InferenceCircuitBreaker.State.OPEN;
+    }
+
+    private <T> CompletableFuture<T> invoke(Endpoint endpoint, int units, Function<String, CompletableFuture<T>> call) {
+        endpoint.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(endpoint.url);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, error) -> {
+            endpoint.outstanding.decrementAndGet();
+            if (error == null) {
+                recordLatency(endpoint, (System.nanoTime() - start) / 1_000_000.0 / Math.max(1, units));
+            } else if (isTimeout(error)) {
+                recordLatency(endpoint, readTimeout);
+            }
+        });
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof HttpTimeoutException || cause instanceof TimeoutException;
+    }
+
+    private void recordLatency(Endpoint endpoint, double latencyMs) {
+        synchronized (endpoint) {
+            endpoint.latencyMs = endpoint.samples == 0
+                    ? latencyMs
+                    : endpoint.latencyMs + LATENCY_SMOOTHING * (latencyMs - endpoint.latencyMs);
+            endpoint.samples++;
+        }
+        if (endpoints.size() > 1 && endpoint.samples >= minSamples) {
+            checkSlowNode(endpoint);
+        }
+    }
+
+    /**
+     * 节点平均耗时远高于其余节点的中位数时暂时摘除，同一时间被摘除的节点数不超过上限
+     */
+    private synchronized void checkSlowNode(Endpoint endpoint) {
+        long now = System.currentTimeMillis();
+        if (endpoint.ejectedUntil > now) {
+            return;
+        }
+        List<Double> others = new ArrayList<>();
+        int ejected = 0;
+        for (Endpoint other : endpoints) {
+            if (other.ejectedUntil > now) {
+                ejected++;
+            } else if (other != endpoint && other.samples >= minSamples) {
+                others.add(other.latencyMs);
+            }
+        }
+        if (others.isEmpty() || (ejected + 1) * 100 > endpoints.size() * maxEjectedPercent) {
+            return;
+        }
+        Collections.sort(others);
+        double median = others.get(others.size() / 2);
+        if (endpoint.latencyMs > median * slowNodeFactor) {
+            logger.warn("推理节点响应过慢，暂时摘除: {}, 平均耗时: {}ms, 其余节点中位数: {}ms, 摘除{}秒",
+                    endpoint.url, Math.round(endpoint.latencyMs), Math.round(median), ejectSeconds);
+            endpoint.ejectedUntil = now + ejectSeconds * 1000;
+            // 放回后重新积累样本再判断
+            synchronized (endpoint) {
+                endpoint.samples = 0;
+            }
+        }
+    }
+
+    private Endpoint find(String url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.url.equals(url)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 调用结果及实际处理该调用的节点
+     */
+    public static class Routed<T> {
+        private final T value;
+        private final String endpoint;
+
+        public Routed(T value, String endpoint) {
+            this.value = value;
+            this.endpoint = endpoint;
+        }
+
+        public T getValue() { return value; }
+        public String getEndpoint() { return endpoint; }
+    }
+
+    private static class Endpoint {
+        private final String url;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private volatile long ejectedUntil;
+        private volatile double latencyMs;
+        private volatile long samples;
+        private volatile Set<String> loadedModels;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+
+        boolean hasModel(String modelName) {
+            Set<String> models = loadedModels;
+            return models != null && models.contains(modelName);
+        }
+
+        synchronized Set<String> loadedModels() {
+            if (loadedModels == null) {
+                loadedModels = ConcurrentHashMap.newKeySet();
+            }
+            return loadedModels;
+        }
+    }
+}
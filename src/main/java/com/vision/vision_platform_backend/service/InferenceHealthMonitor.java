@@ -0,0 +1,201 @@
+package com.vision.vision_platform_backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 推理服务器健康状态
+ * 后台定时探测各节点的 /health 并保存最近一次结果，健康检查接口直接读取快照，不再逐次访问推理服务器；
+ * 探测结果同时同步给节点路由
+ */
+@Component
+public class InferenceHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHealthMonitor.class);
+
+    @Value("${ai.inference.health.interval-seconds:5}")
+    private long intervalSeconds;
+
+    @Value("${ai.inference.health.timeout-ms:2000}")
+    private long timeoutMs;
+
+    private final InferenceHttpClient inferenceClient;
+    private final InferenceEndpointRouter endpointRouter;
+
+    private final Map<String, HealthSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicReference<CompletableFuture<Void>> probing = new AtomicReference<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-inference-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InferenceHealthMonitor(InferenceHttpClient inferenceClient, InferenceEndpointRouter endpointRouter) {
+        this.inferenceClient = inferenceClient;
+        this.endpointRouter = endpointRouter;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::probe, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 推理服务器是否可用：至少一个节点最近一次探测成功且熔断器未打开
+     */
+    public boolean isHealthy() {
+        Map<String, HealthSnapshot> current = current();
+        for (String url : endpointRouter.getEndpointUrls()) {
+            HealthSnapshot snapshot = current.get(url);
+            if (snapshot != null && snapshot.healthy
+                    && inferenceClient.circuitBreaker(url).getState() != InferenceCircuitBreaker.State.OPEN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 健康状态详细信息
+     * 顶层字段取自第一个健康节点的 /health 响应，endpoints 中列出每个节点的状态
+     */
+    public Map<String, Object> getHealthStatus() {
+        Map<String, HealthSnapshot> current = current();
+        Map<String, Object> status = new HashMap<>();
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        String firstError = null;
+
+        for (String url : endpointRouter.getEndpointUrls()) {
+            HealthSnapshot snapshot = current.get(url);
+            InferenceCircuitBreaker breaker = inferenceClient.circuitBreaker(url);
+            boolean healthy = snapshot != null && snapshot.healthy;
+
+            Map<String, Object> node = new HashMap<>();
+            node.put("url", url);
+            node.put("status", healthy ? "healthy" : "unhealthy");
+            node.put("error", snapshot != null ? snapshot.error : "尚未完成健康检查");
+            node.put("checked_at", snapshot != null ? snapshot.checkedAt : null);
+            node.put("latency_ms", snapshot != null ? snapshot.latencyMs : null);
+
+            Map<String, Object> circuit = new HashMap<>();
+            circuit.put("state", breaker.getState().name());
+            circuit.put("failure_rate", breaker.getFailureRate());
+            circuit.put("slow_call_rate", breaker.getSlowCallRate());
+            circuit.put("retry_after_ms", breaker.getRetryAfterMs());
+            node.put("circuit_breaker", circuit);
+            nodes.add(node);
+
+            if (healthy && !status.containsKey("status")) {
+                if (snapshot.health != null) {
+                    status.putAll(snapshot.health);
+                }
+                status.put("status", "healthy");
+                status.put("checked_at", snapshot.checkedAt);
+            } else if (!healthy && firstError == null) {
+                firstError = (String) node.get("error");
+            }
+        }
+
+        if (!status.containsKey("status")) {
+            status.put("status", "unhealthy");
+            status.put("error", firstError);
+        }
+        status.put("endpoints", nodes);
+        return status;
+    }
+
+    /**
+     * 当前快照；启动后尚未完成首次探测时等待本次探测结果
+     */
+    private Map<String, HealthSnapshot> current() {
+        if (snapshots.isEmpty()) {
+            probe().join();
+        }
+        return snapshots;
+    }
+
+    private CompletableFuture<Void> probe() {
+        CompletableFuture<Void> promise = new CompletableFuture<>();
+        CompletableFuture<Void> existing = probing.compareAndExchange(null, promise);
+        if (existing != null) {
+            return existing;
+        }
+
+        List<String> urls = endpointRouter.getEndpointUrls();
+        CompletableFuture<?>[] probes = new CompletableFuture<?>[urls.size()];
+        for (int i = 0; i < urls.size(); i++) {
+            probes[i] = probe(urls.get(i));
+        }
+        CompletableFuture.allOf(probes).whenComplete((ignored, error) -> {
+            probing.set(null);
+            promise.complete(null);
+        });
+        return promise;
+    }
+
+    private CompletableFuture<HealthSnapshot> probe(String url) {
+        long start = System.currentTimeMillis();
+        return inferenceClient.<Map<String, Object>>probe(url + "/health", inferenceClient.mapType())
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .handle((health, error) -> {
+                    long latency = System.currentTimeMillis() - start;
+                    HealthSnapshot result;
+                    if (error == null) {
+                        result = new HealthSnapshot(true, health, null, latency);
+                    } else {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                        result = new HealthSnapshot(false, null, message, latency);
+                    }
+                    HealthSnapshot previous = snapshots.put(url, result);
+                    if (previous == null || previous.healthy != result.healthy) {
+                        if (result.healthy) {
+                            logger.info("推理服务器健康检查通过: {}", url);
+                        } else {
+                            logger.error("推理服务器健康检查失败: {}, {}", url, result.error);
+                        }
+                    }
+                    endpointRouter.markHealth(url, result.healthy);
+                    return result;
+                });
+    }
+
+    private static class HealthSnapshot {
+        private final boolean healthy;
+        private final Map<String, Object> health;
+        private final String error;
+        private final long latencyMs;
+        private final LocalDateTime checkedAt = LocalDateTime.now();
+
+        HealthSnapshot(boolean healthy, Map<String, Object> health, String error, long latencyMs) {
+            this.healthy = healthy;
+            this.health = health;
+            this.error = error;
+            this.latencyMs = latencyMs;
+        }
+    }
+}
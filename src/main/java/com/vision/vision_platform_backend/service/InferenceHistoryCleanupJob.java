@@ -0,0 +1,249 @@
+package com.vision.vision_platform_backend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推理历史后台清理任务
+ * 按创建时间分块选出待清理记录的ID，每块在独立的短事务中用 UPDATE/DELETE ... WHERE id IN (...) 处理，
+ * 同时扣除统计汇总、删除关键词索引，不加载实体；块之间暂停以限制对数据库的压力。
+ * 任务参数（含开始时确定的截止时间）和进度在每块完成后写入本地状态文件，
+ * 进程中途退出后下次启动继续执行；已处理的记录不再满足筛选条件，重复执行是安全的。
+ */
+@Component
+public class InferenceHistoryCleanupJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHistoryCleanupJob.class);
+
+    private static final String STATE_RUNNING = "running";
+
+    @Value("${ai.inference.history.cleanup.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 每块之间暂停的毫秒数
+     */
+    @Value("${ai.inference.history.cleanup.pause-ms:100}")
+    private long pauseMs;
+
+    @Value("${ai.inference.history.cleanup.state-file:./data/history-cleanup/cleanup-job.json}")
+    private String stateFile;
+
+    private final InferenceHistoryRepository repository;
+    private final InferenceHistoryTextIndex textIndex;
+    private final InferenceHistoryRollups rollups;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inference-history-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object lock = new Object();
+    private Map<String, Object> job = Map.of();
+    private volatile boolean cancelRequested;
+
+    public InferenceHistoryCleanupJob(InferenceHistoryRepository repository,
+                                      InferenceHistoryTextIndex textIndex,
+                                      InferenceHistoryRollups rollups,
+                                      PlatformTransactionManager transactionManager,
+                                      ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.textIndex = textIndex;
+        this.rollups = rollups;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        Path path = Paths.get(stateFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            Map<String, Object> saved = objectMapper.readValue(path.toFile(), new TypeReference<LinkedHashMap<String, Object>>() {});
+            synchronized (lock) {
+                job = saved;
+            }
+            if (STATE_RUNNING.equals(saved.get("state"))) {
+                logger.info("继续执行未完成的推理历史清理任务: jobId={}, rowsAffected={}",
+                        saved.get("job_id"), saved.get("rows_affected"));
+                executor.execute(this::run);
+            }
+        } catch (IOException e) {
+            logger.warn("读取推理历史清理任务状态失败: file={}, error={}", stateFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 中断后状态仍为 running，下次启动时继续
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交清理任务，已有任务在运行时返回 false
+     */
+    public boolean start(InferenceHistoryDto.CleanupInferenceHistoryRequest request) {
+        if (request.getDaysToKeep() == null || request.getDaysToKeep() < 0) {
+            throw new IllegalArgumentException("保留天数不能为空且不能小于0");
+        }
+        boolean onlyFailed = Boolean.TRUE.equals(request.getOnlyDeleteFailed());
+        boolean physical = Boolean.TRUE.equals(request.getPhysicalDelete());
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(request.getDaysToKeep());
+        synchronized (lock) {
+            if (STATE_RUNNING.equals(job.get("state"))) {
+                return false;
+            }
+            Map<String, Object> next = new LinkedHashMap<>();
+            next.put("job_id", UUID.randomUUID().toString());
+            next.put("state", STATE_RUNNING);
+            next.put("days_to_keep", request.getDaysToKeep());
+            next.put("only_delete_failed", onlyFailed);
+            next.put("physical_delete", physical);
+            next.put("cutoff", cutoff.toString());
+            next.put("total_estimate", repository.countCleanupCandidates(cutoff, onlyFailed ? "FAILED" : null, physical));
+            next.put("rows_affected", 0L);
+            next.put("chunks", 0L);
+            next.put("started_at", LocalDateTime.now().toString());
+            next.put("updated_at", LocalDateTime.now().toString());
+            job = next;
+            cancelRequested = false;
+            persist(next);
+        }
+        logger.info("推理历史清理任务已提交: daysToKeep={}, onlyDeleteFailed={}, physicalDelete={}",
+                request.getDaysToKeep(), onlyFailed, physical);
+        executor.execute(this::run);
+        return true;
+    }
+
+    /**
+     * 请求停止当前任务，已完成的块不会回滚
+     */
+    public boolean cancel() {
+        synchronized (lock) {
+            if (!STATE_RUNNING.equals(job.get("state"))) {
+                return false;
+            }
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    private void run() {
+        Map<String, Object> current;
+        synchronized (lock) {
+            current = job;
+        }
+        LocalDateTime cutoff = LocalDateTime.parse((String) current.get("cutoff"));
+        String status = Boolean.TRUE.equals(current.get("only_delete_failed")) ? "FAILED" : null;
+        // 物理删除同时清除早于截止时间的已软删除记录
+        boolean physical = Boolean.TRUE.equals(current.get("physical_delete"));
+        int limit = Math.max(1, chunkSize);
+        try {
+            while (!cancelRequested) {
+                int[] result = transactionTemplate.execute(tx -> {
+                    List<Long> ids = repository.findCleanupCandidateIds(cutoff, status, physical, PageRequest.of(0, limit));
+                    if (ids.isEmpty()) {
+                        return new int[]{0, 0};
+                    }
+                    rollups.removedAggregates(repository.aggregateByIds(ids));
+                    textIndex.remove(ids);
+                    int affected = physical ? repository.deleteByIds(ids) : repository.softDeleteByIds(ids);
+                    return new int[]{ids.size(), affected};
+                });
+                if (result == null || result[0] == 0) {
+                    finish("completed", null);
+                    return;
+                }
+                progress(result[1]);
+                if (pauseMs > 0) {
+                    TimeUnit.MILLISECONDS.sleep(pauseMs);
+                }
+            }
+            finish("cancelled", null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("推理历史清理任务被中断，下次启动时继续");
+        } catch (Exception e) {
+            logger.error("推理历史清理任务失败: {}", e.getMessage(), e);
+            finish("failed", e.getMessage());
+        }
+    }
+
+    private void progress(int affected) {
+        synchronized (lock) {
+            job.put("rows_affected", ((Number) job.get("rows_affected")).longValue() + affected);
+            job.put("chunks", ((Number) job.get("chunks")).longValue() + 1);
+            job.put("updated_at", LocalDateTime.now().toString());
+            persist(job);
+        }
+    }
+
+    private void finish(String state, String error) {
+        synchronized (lock) {
+            job.put("state", state);
+            job.put("finished_at", LocalDateTime.now().toString());
+            if (error != null) {
+                job.put("error", error);
+            }
+            persist(job);
+        }
+        logger.info("推理历史清理任务结束: state={}, rowsAffected={}", state, job.get("rows_affected"));
+    }
+
+    /**
+     * 先写临时文件再替换，避免中途退出留下不完整的状态
+     */
+    private void persist(Map<String, Object> state) {
+        try {
+            Path path = Paths.get(stateFile);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(state));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("保存推理历史清理任务状态失败: file={}, error={}", stateFile, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        synchronized (lock) {
+            status.putAll(job);
+        }
+        status.put("cancel_requested", cancelRequested && STATE_RUNNING.equals(status.get("state")));
+        status.put("chunk_size", chunkSize);
+        status.put("pause_ms", pauseMs);
+        return status;
+    }
+}
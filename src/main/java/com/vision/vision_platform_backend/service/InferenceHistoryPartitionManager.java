@@ -0,0 +1,340 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 推理历史分区与按时间保留
+ * PostgreSQL 上 inference_history 为按 created_at 范围分区的表时（转换脚本见 db/postgresql/inference_history_partitioning.sql），
+ * 定期预建当前及之后若干个周期的分区，并按保留天数整体删除（DROP）或分离（DETACH）过期分区；
+ * 按时间过滤的查询由数据库自动裁剪分区。
+ * 其他数据库（H2）或未分区的表使用等效的可移植策略：按 created_at 索引分块删除过期记录，不加载实体。
+ * 两种方式都会同步清理被删除记录的关键词索引和统计汇总（对应功能因表不存在等原因停用时跳过）；分区表上 task_id 的全局唯一性由转换脚本建立的
+ * inference_history_task 表保证，删除或分离分区时一并注销其中的任务ID。
+ */
+@Component
+public class InferenceHistoryPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHistoryPartitionManager.class);
+
+    private static final String TABLE = "inference_history";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern BOUND = Pattern.compile(
+            "FROM \\('(\\d{4}-\\d{2}-\\d{2})[^']*'\\) TO \\('(\\d{4}-\\d{2}-\\d{2})[^']*'\\)");
+    private static final int MAX_EVENTS = 50;
+
+    @Value("${ai.inference.history.partition.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 分区周期：month 或 week
+     */
+    @Value("${ai.inference.history.partition.granularity:month}")
+    private String granularity;
+
+    /**
+     * 预建当前周期之后的分区数
+     */
+    @Value("${ai.inference.history.partition.premake:3}")
+    private int premake;
+
+    /**
+     * 记录保留天数，0表示不按时间清理
+     */
+    @Value("${ai.inference.history.partition.retention-days:0}")
+    private int retentionDays;
+
+    /**
+     * 过期分区的处理方式：drop 删除，detach 分离为独立表（便于归档）
+     */
+    @Value("${ai.inference.history.partition.retention-action:drop}")
+    private String retentionAction;
+
+    @Value("${ai.inference.history.partition.check-interval-hours:6}")
+    private long checkIntervalHours;
+
+    /**
+     * 未分区时每次删除的记录数
+     */
+    @Value("${ai.inference.history.partition.delete-chunk-size:1000}")
+    private int deleteChunkSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InferenceHistoryRepository historyRepository;
+    private final InferenceHistoryRollupRepository rollupRepository;
+    private final InferenceHistoryTextIndex textIndex;
+    private final InferenceHistoryRollups rollups;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inference-history-partitions");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Deque<Map<String, Object>> events = new ConcurrentLinkedDeque<>();
+    private volatile boolean partitioned;
+    private volatile boolean taskGuard;
+    private volatile LocalDateTime lastRunAt;
+
+    public InferenceHistoryPartitionManager(JdbcTemplate jdbcTemplate,
+                                            InferenceHistoryRepository historyRepository,
+                                            InferenceHistoryRollupRepository rollupRepository,
+                                            InferenceHistoryTextIndex textIndex,
+                                            InferenceHistoryRollups rollups,
+                                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.historyRepository = historyRepository;
+        this.rollupRepository = rollupRepository;
+        this.textIndex = textIndex;
+        this.rollups = rollups;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        partitioned = detectPartitionedTable();
+        taskGuard = partitioned && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass('inference_history_task') IS NOT NULL", Boolean.class));
+        logger.info("推理历史保留策略: mode={}, granularity={}, retentionDays={}",
+                partitioned ? "partitioned" : "range-delete", granularity, retentionDays);
+        // 启动时立即预建分区，避免新周期开始后插入失败
+        scheduler.scheduleWithFixedDelay(this::maintainSafely, 0, Math.max(1, checkIntervalHours), TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            logger.error("推理历史分区维护失败: {}", e.getMessage(), e);
+            record("error", e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * 预建分区并清理过期数据
+     */
+    public synchronized void maintain() {
+        lastRunAt = LocalDateTime.now();
+        if (partitioned) {
+            createUpcomingPartitions(LocalDate.now());
+        }
+        if (retentionDays <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        if (partitioned) {
+            removeExpiredPartitions(cutoff);
+        } else {
+            deleteExpiredRows(cutoff.atStartOfDay());
+        }
+    }
+
+    private boolean detectPartitionedTable() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            if (product == null || !product.toLowerCase(Locale.ROOT).contains("postgres")) {
+                return false;
+            }
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                    "WHERE c.relname = ? AND pg_table_is_visible(c.oid)", Integer.class, TABLE);
+            return count != null && count > 0;
+        } catch (Exception e) {
+            logger.warn("无法判断推理历史表是否分区，按未分区处理: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void createUpcomingPartitions(LocalDate today) {
+        LocalDate start = periodStart(today);
+        for (int i = 0; i <= Math.max(0, premake); i++) {
+            LocalDate end = nextPeriod(start);
+            String name = PARTITION_PREFIX + start.format(PARTITION_SUFFIX);
+            if (!partitionBounds().containsKey(name) && !overlapsExisting(start, end)) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE +
+                        " FOR VALUES FROM ('" + start + "') TO ('" + end + "')");
+                logger.info("已创建推理历史分区: {} [{}, {})", name, start, end);
+                record("created", name, 0);
+            }
+            start = end;
+        }
+    }
+
+    private boolean overlapsExisting(LocalDate start, LocalDate end) {
+        for (LocalDate[] bounds : partitionBounds().values()) {
+            if (bounds[0].isBefore(end) && start.isBefore(bounds[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeExpiredPartitions(LocalDate cutoff) {
+        boolean detach = "detach".equalsIgnoreCase(retentionAction);
+        for (Map.Entry<String, LocalDate[]> partition : partitionBounds().entrySet()) {
+            String name = partition.getKey();
+            LocalDate from = partition.getValue()[0];
+            LocalDate to = partition.getValue()[1];
+            // 只处理本组件命名的、整体早于保留期限的分区
+            if (!name.startsWith(PARTITION_PREFIX) || to.isAfter(cutoff)) {
+                continue;
+            }
+            transactionTemplate.executeWithoutResult(tx -> {
+                if (textIndex.isEnabled()) {
+                    jdbcTemplate.update("DELETE FROM inference_history_token WHERE history_id IN (SELECT id FROM " + name + ")");
+                }
+                if (taskGuard) {
+                    // 删除/分离分区不触发行级触发器，手动注销其中的任务ID
+                    jdbcTemplate.update("DELETE FROM inference_history_task WHERE task_id IN (SELECT task_id FROM " + name + ")");
+                }
+                if (detach) {
+                    jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + name);
+                } else {
+                    jdbcTemplate.execute("DROP TABLE " + name);
+                }
+                if (rollups.isEnabled()) {
+                    rollupRepository.deleteByBucketRange(from.atStartOfDay(), to.atStartOfDay());
+                }
+            });
+            logger.info("已{}过期推理历史分区: {} [{}, {})", detach ? "分离" : "删除", name, from, to);
+            record(detach ? "detached" : "dropped", name, 0);
+        }
+    }
+
+    /**
+     * 未分区时的可移植策略：按创建时间分块删除过期记录
+     */
+    private void deleteExpiredRows(LocalDateTime cutoff) {
+        long deleted = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            Integer count = transactionTemplate.execute(tx -> {
+                List<Long> ids = historyRepository.findIdsCreatedBefore(cutoff, PageRequest.of(0, Math.max(1, deleteChunkSize)));
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                textIndex.remove(ids);
+                return historyRepository.deleteByIds(ids);
+            });
+            if (count == null || count == 0) {
+                break;
+            }
+            deleted += count;
+        }
+        if (deleted > 0) {
+            if (rollups.isEnabled()) {
+                transactionTemplate.executeWithoutResult(tx ->
+                        rollupRepository.deleteByBucketRange(LocalDateTime.of(1970, 1, 1, 0, 0), cutoff));
+            }
+            logger.info("已删除过期推理历史记录: cutoff={}, count={}", cutoff, deleted);
+            record("deleted", "created_at < " + cutoff, deleted);
+        }
+    }
+
+    /**
+     * 当前分区及其范围，按名称排序
+     */
+    private Map<String, LocalDate[]> partitionBounds() {
+        Map<String, LocalDate[]> bounds = new LinkedHashMap<>();
+        if (!partitioned) {
+            return bounds;
+        }
+        jdbcTemplate.query(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ? AND pg_table_is_visible(p.oid) ORDER BY c.relname",
+                rs -> {
+                    Matcher matcher = BOUND.matcher(rs.getString(2));
+                    if (matcher.find()) {
+                        bounds.put(rs.getString(1), new LocalDate[]{
+                                LocalDate.parse(matcher.group(1)), LocalDate.parse(matcher.group(2))});
+                    }
+                }, TABLE);
+        return bounds;
+    }
+
+    private LocalDate periodStart(LocalDate day) {
+        return isWeekly() ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : day.withDayOfMonth(1);
+    }
+
+    private LocalDate nextPeriod(LocalDate start) {
+        return isWeekly() ? start.plusWeeks(1) : start.plusMonths(1);
+    }
+
+    private boolean isWeekly() {
+        return "week".equalsIgnoreCase(granularity);
+    }
+
+    private void record(String action, String target, long rows) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("time", LocalDateTime.now().toString());
+        event.put("action", action);
+        event.put("target", target);
+        if (rows > 0) {
+            event.put("rows", rows);
+        }
+        events.addFirst(event);
+        while (events.size() > MAX_EVENTS) {
+            events.pollLast();
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("mode", partitioned ? "partitioned" : "range-delete");
+        status.put("granularity", isWeekly() ? "week" : "month");
+        if (partitioned) {
+            status.put("task_id_guard", taskGuard);
+        }
+        status.put("retention_days", retentionDays);
+        status.put("retention_action", partitioned ? retentionAction.toLowerCase(Locale.ROOT) : "delete");
+        status.put("last_run_at", lastRunAt != null ? lastRunAt.toString() : null);
+        if (partitioned) {
+            List<Map<String, Object>> partitions = new ArrayList<>();
+            partitionBounds().forEach((name, bounds) -> partitions.add(Map.of(
+                    "name", name, "from", bounds[0].toString(), "to", bounds[1].toString())));
+            status.put("partitions", partitions);
+        }
+        status.put("events", new ArrayList<>(events));
+        return status;
+    }
+}
@@ -0,0 +1,400 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.entity.InferenceHistory;
+import com.vision.vision_platform_backend.entity.InferenceHistoryRollup;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 推理历史统计汇总
+ * 记录写入、删除以及状态/耗时/检测数变化时，在同一事务中把增量累加到 inference_history_rollup 的小时汇总行，
+ * 统计接口只读取汇总行，不再扫描原始表。汇总按小时粒度，统计时间范围以整点对齐。
+ * 已有数据通过 backfill() 按天重新聚合；启动时汇总表为空而历史表有数据会自动回填。
+ * PostgreSQL 上汇总表由 db/postgresql/inference_history_rollup.sql 创建。
+ */
+@Component
+public class InferenceHistoryRollups {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHistoryRollups.class);
+
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    @Value("${ai.inference.history.rollup.enabled:true}")
+    private boolean enabled;
+
+    private final InferenceHistoryRollupRepository rollupRepository;
+    private final InferenceHistoryRepository historyRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inference-history-rollup-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+    private volatile Map<String, Object> lastBackfill = Map.of();
+
+    public InferenceHistoryRollups(InferenceHistoryRollupRepository rollupRepository,
+                                   InferenceHistoryRepository historyRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.historyRepository = historyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 汇总表不存在时停用汇总（统计回退为扫描原始表），避免应用无法启动、每次写入历史记录都因维护汇总失败而回滚
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        boolean empty;
+        try {
+            empty = rollupRepository.count() == 0;
+        } catch (DataAccessException e) {
+            enabled = false;
+            logger.error("推理历史汇总表不可用，已停用统计汇总（统计回退为扫描原始表）。" +
+                    "请执行 db/postgresql/inference_history_rollup.sql 后重启: {}", e.getMessage());
+            return;
+        }
+        if (empty && historyRepository.countTotalInferences() > 0) {
+            logger.info("推理历史汇总表为空，开始自动回填");
+            backfill();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 累加新写入的记录，须在写入记录的事务中调用
+     */
+    public void added(Collection<InferenceHistory> histories) {
+        apply(histories, 1);
+    }
+
+    /**
+     * 扣除被删除（软删除或物理删除）的记录，须在删除记录的事务中调用
+     */
+    public void removed(Collection<InferenceHistory> histories) {
+        apply(histories, -1);
+    }
+
+    /**
+     * 按 aggregateByIds 的聚合结果扣除被删除的记录，用于不加载实体的批量删除，须在删除记录的事务中调用
+     */
+    public void removedAggregates(List<Object[]> rows) {
+        if (!enabled || rows.isEmpty()) {
+            return;
+        }
+        Map<Snapshot, long[]> deltas = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            LocalDateTime bucketHour = LocalDateTime.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+                    ((Number) row[2]).intValue(), ((Number) row[3]).intValue(), 0);
+            Snapshot key = new Snapshot(bucketHour, (Long) row[4], (String) row[5], (String) row[6], (String) row[7],
+                    null, null);
+            long[] delta = deltas.computeIfAbsent(key, k -> new long[5]);
+            delta[0] -= ((Number) row[8]).longValue();
+            delta[1] -= row[9] != null ? ((Number) row[9]).longValue() : 0;
+            delta[2] -= ((Number) row[10]).longValue();
+            delta[3] -= row[11] != null ? ((Number) row[11]).longValue() : 0;
+            delta[4] -= ((Number) row[12]).longValue();
+        }
+        flush(deltas);
+    }
+
+    /**
+     * 记录当前对汇总的贡献，配合 changed() 处理更新
+     */
+    public Snapshot snapshot(InferenceHistory history) {
+        return new Snapshot(history);
+    }
+
+    /**
+     * 记录更新后若汇总相关字段有变化，扣除旧贡献并累加新贡献
+     */
+    public void changed(Snapshot before, InferenceHistory after) {
+        if (!enabled || Boolean.TRUE.equals(after.getIsDeleted())) {
+            return;
+        }
+        Snapshot current = new Snapshot(after);
+        if (current.equals(before)) {
+            return;
+        }
+        Map<Snapshot, long[]> deltas = new LinkedHashMap<>();
+        accumulate(deltas, before, -1);
+        accumulate(deltas, current, 1);
+        flush(deltas);
+    }
+
+    private void apply(Collection<InferenceHistory> histories, int sign) {
+        if (!enabled || histories.isEmpty()) {
+            return;
+        }
+        Map<Snapshot, long[]> deltas = new LinkedHashMap<>();
+        for (InferenceHistory history : histories) {
+            accumulate(deltas, new Snapshot(history), sign);
+        }
+        flush(deltas);
+    }
+
+    /**
+     * 按汇总维度合并增量：数量、耗时之和、耗时记录数、检测对象数之和、检测对象记录数
+     */
+    private void accumulate(Map<Snapshot, long[]> deltas, Snapshot snapshot, int sign) {
+        if (snapshot.bucketHour == null) {
+            return;
+        }
+        long[] delta = deltas.computeIfAbsent(snapshot.dimensions(), key -> new long[5]);
+        delta[0] += sign;
+        if (snapshot.processingTime != null) {
+            delta[1] += sign * snapshot.processingTime;
+            delta[2] += sign;
+        }
+        if (snapshot.detectedObjects != null) {
+            delta[3] += sign * snapshot.detectedObjects;
+            delta[4] += sign;
+        }
+    }
+
+    private void flush(Map<Snapshot, long[]> deltas) {
+        deltas.forEach((key, delta) -> {
+            if (delta[0] == 0 && delta[1] == 0 && delta[2] == 0 && delta[3] == 0 && delta[4] == 0) {
+                return;
+            }
+            int updated = rollupRepository.increment(key.bucketHour, key.userId, key.modelName, key.inferenceType,
+                    key.status, delta[0], delta[1], delta[2], delta[3], delta[4]);
+            if (updated == 0 && delta[0] > 0) {
+                rollupRepository.save(toRollup(key.bucketHour, key.userId, key.modelName, key.inferenceType,
+                        key.status, delta));
+            } else if (updated == 0) {
+                logger.debug("推理历史汇总行不存在，跳过扣除: bucket={}, model={}", key.bucketHour, key.modelName);
+            }
+        });
+    }
+
+    /**
+     * 按状态汇总：状态、数量、耗时之和、耗时记录数、检测对象数之和、检测对象记录数
+     */
+    public List<Object[]> sumByStatus(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        return rollupRepository.sumByStatus(userId, from(startTime), to(endTime));
+    }
+
+    public List<Object[]> sumByModel(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        return rollupRepository.sumByModel(userId, from(startTime), to(endTime));
+    }
+
+    public List<Object[]> sumByType(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        return rollupRepository.sumByType(userId, from(startTime), to(endTime));
+    }
+
+    /**
+     * 每日数量：[当天零点, 数量]，按日期升序
+     */
+    public List<Object[]> sumByDay(Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        Map<LocalDateTime, Long> days = new LinkedHashMap<>();
+        for (Object[] row : rollupRepository.sumByHour(userId, from(startTime), to(endTime))) {
+            long count = ((Number) row[1]).longValue();
+            days.merge(((LocalDateTime) row[0]).truncatedTo(ChronoUnit.DAYS), count, Long::sum);
+        }
+        List<Object[]> result = new ArrayList<>();
+        days.forEach((day, count) -> {
+            if (count > 0) {
+                result.add(new Object[]{day, count});
+            }
+        });
+        return result;
+    }
+
+    private static LocalDateTime from(LocalDateTime startTime) {
+        return startTime != null ? startTime.truncatedTo(ChronoUnit.HOURS) : MIN_TIME;
+    }
+
+    private static LocalDateTime to(LocalDateTime endTime) {
+        return endTime != null ? endTime : MAX_TIME;
+    }
+
+    /**
+     * 提交后台回填任务，按天从原始表重新聚合并替换汇总行
+     *
+     * @return 已有回填任务在运行时返回false
+     */
+    public boolean backfill() {
+        if (!backfilling.compareAndSet(false, true)) {
+            return false;
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("started_at", LocalDateTime.now().toString());
+        status.put("days", 0);
+        lastBackfill = status;
+        backfillExecutor.execute(() -> {
+            try {
+                runBackfill(status);
+            } finally {
+                backfilling.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void runBackfill(Map<String, Object> status) {
+        try {
+            LocalDateTime earliest = historyRepository.findEarliestCreatedAt();
+            LocalDate today = LocalDate.now();
+            LocalDate day = earliest != null ? earliest.toLocalDate() : today;
+            int days = 0;
+            // 今天之后的记录（时钟偏差）一并处理
+            for (; !day.isAfter(today.plusDays(1)) && !Thread.currentThread().isInterrupted(); day = day.plusDays(1)) {
+                LocalDateTime start = day.atStartOfDay();
+                LocalDateTime end = start.plusDays(1);
+                transactionTemplate.executeWithoutResult(tx -> backfillDay(start, end));
+                days++;
+                synchronized (status) {
+                    status.put("days", days);
+                    status.put("current_day", day.toString());
+                }
+            }
+            synchronized (status) {
+                status.put("finished_at", LocalDateTime.now().toString());
+            }
+            logger.info("推理历史汇总回填完成: 天数={}", days);
+        } catch (Exception e) {
+            synchronized (status) {
+                status.put("error", e.getMessage());
+            }
+            logger.error("推理历史汇总回填失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void backfillDay(LocalDateTime start, LocalDateTime end) {
+        rollupRepository.deleteByBucketRange(start, end);
+        List<InferenceHistoryRollup> rollups = new ArrayList<>();
+        for (Object[] row : historyRepository.aggregateByHour(start, end)) {
+            long[] sums = {
+                    ((Number) row[5]).longValue(),
+                    row[6] != null ? ((Number) row[6]).longValue() : 0,
+                    ((Number) row[7]).longValue(),
+                    row[8] != null ? ((Number) row[8]).longValue() : 0,
+                    ((Number) row[9]).longValue()
+            };
+            rollups.add(toRollup(start.plusHours(((Number) row[0]).longValue()), (Long) row[1],
+                    (String) row[2], (String) row[3], (String) row[4], sums));
+        }
+        rollupRepository.saveAll(rollups);
+    }
+
+    private static InferenceHistoryRollup toRollup(LocalDateTime bucketHour, Long userId, String modelName,
+                                                   String inferenceType, String status, long[] sums) {
+        return InferenceHistoryRollup.builder()
+                .bucketHour(bucketHour)
+                .userId(userId)
+                .modelName(modelName)
+                .inferenceType(inferenceType)
+                .status(status)
+                .inferenceCount(sums[0])
+                .processingTimeSum(sums[1])
+                .processingTimeCount(sums[2])
+                .detectedObjectsSum(sums[3])
+                .detectedObjectsCount(sums[4])
+                .build();
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("backfilling", backfilling.get());
+        Map<String, Object> backfill = lastBackfill;
+        synchronized (backfill) {
+            status.put("last_backfill", new LinkedHashMap<>(backfill));
+        }
+        return status;
+    }
+
+    /**
+     * 一条记录的汇总维度及指标
+     */
+    public static final class Snapshot {
+        private final LocalDateTime bucketHour;
+        private final Long userId;
+        private final String modelName;
+        private final String inferenceType;
+        private final String status;
+        private final Long processingTime;
+        private final Integer detectedObjects;
+
+        private Snapshot(InferenceHistory history) {
+            this(history.getCreatedAt() != null ? history.getCreatedAt().truncatedTo(ChronoUnit.HOURS) : null,
+                    history.getUserId(), history.getModelName(), history.getInferenceType(), history.getStatus(),
+                    history.getProcessingTime(), history.getDetectedObjectsCount());
+        }
+
+        private Snapshot(LocalDateTime bucketHour, Long userId, String modelName, String inferenceType,
+                         String status, Long processingTime, Integer detectedObjects) {
+            this.bucketHour = bucketHour;
+            this.userId = userId;
+            this.modelName = modelName;
+            this.inferenceType = inferenceType;
+            this.status = status;
+            this.processingTime = processingTime;
+            this.detectedObjects = detectedObjects;
+        }
+
+        /**
+         * 只保留维度部分，用作合并增量的键
+         */
+        private Snapshot dimensions() {
+            return new Snapshot(bucketHour, userId, modelName, inferenceType, status, null, null);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot that = (Snapshot) other;
+            return Objects.equals(bucketHour, that.bucketHour) && Objects.equals(userId, that.userId)
+                    && Objects.equals(modelName, that.modelName) && Objects.equals(inferenceType, that.inferenceType)
+                    && Objects.equals(status, that.status) && Objects.equals(processingTime, that.processingTime)
+                    && Objects.equals(detectedObjects, that.detectedObjects);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucketHour, userId, modelName, inferenceType, status, processingTime, detectedObjects);
+        }
+    }
+}
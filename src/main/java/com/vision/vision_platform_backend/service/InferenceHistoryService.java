@@ -3,6 +3,8 @@ package com.vision.vision_platform_backend.service;
 import com.vision.vision_platform_backend.entity.InferenceHistory;
 import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
 import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,10 +12,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -26,10 +33,17 @@ import java.util.stream.Collectors;
 public class InferenceHistoryService {
 
     private static final Logger log = LoggerFactory.getLogger(InferenceHistoryService.class);
+    private static final int MAX_CURSOR_PAGE_SIZE = 500;
     private final InferenceHistoryRepository inferenceHistoryRepository;
+    private final InferenceHistoryTextIndex textIndex;
+    private final InferenceHistoryRollups rollups;
 
-    public InferenceHistoryService(InferenceHistoryRepository inferenceHistoryRepository) {
+    public InferenceHistoryService(InferenceHistoryRepository inferenceHistoryRepository,
+                                   InferenceHistoryTextIndex textIndex,
+                                   InferenceHistoryRollups rollups) {
         this.inferenceHistoryRepository = inferenceHistoryRepository;
+        this.textIndex = textIndex;
+        this.rollups = rollups;
     }
 
     /**
@@ -39,32 +53,11 @@ public class InferenceHistoryService {
     public InferenceHistoryDto.InferenceHistoryResponse createInferenceHistory(
             InferenceHistoryDto.CreateInferenceHistoryRequest request) {
         try {
-            InferenceHistory history = InferenceHistory.builder()
-                    .taskId(request.getTaskId())
-                    .inferenceType(request.getInferenceType())
-                    .modelName(request.getModelName())
-                    .confidenceThreshold(request.getConfidenceThreshold())
-                    .originalFilename(request.getOriginalFilename())
-                    .fileSize(request.getFileSize())
-                    .imagePath(request.getImagePath())
-                    .inferenceResult(request.getInferenceResult() != null ? request.getInferenceResult().toString() : null)
-                    .detectedObjectsCount(request.getDetectedObjectsCount())
-                    .processingTime(request.getProcessingTime())
-                    .status(request.getStatus())
-                    .errorMessage(request.getErrorMessage())
-                    .userId(request.getUserId())
-                    .username(request.getUsername())
-                    .deviceInfo(request.getDeviceInfo())
-                    .inferenceServer(request.getInferenceServer())
-                    .tags(request.getTags())
-                    .notes(request.getNotes())
-                    .createdAt(LocalDateTime.now())
-                    .updatedAt(LocalDateTime.now())
-                    .isDeleted(false)
-                    .isFavorite(false)
-                    .build();
+            InferenceHistory history = toEntity(request);
 
             InferenceHistory savedHistory = inferenceHistoryRepository.save(history);
+            textIndex.add(List.of(savedHistory));
+            rollups.added(List.of(savedHistory));
             log.info("创建推理历史记录成功: taskId={}", savedHistory.getTaskId());
             
             return convertToResponse(savedHistory);
@@ -74,6 +67,36 @@ public class InferenceHistoryService {
         }
     }
 
+    /**
+     * 由创建请求构造推理历史实体（未保存）
+     */
+    public InferenceHistory toEntity(InferenceHistoryDto.CreateInferenceHistoryRequest request) {
+        return InferenceHistory.builder()
+                .taskId(request.getTaskId())
+                .inferenceType(request.getInferenceType())
+                .modelName(request.getModelName())
+                .confidenceThreshold(request.getConfidenceThreshold())
+                .originalFilename(request.getOriginalFilename())
+                .fileSize(request.getFileSize())
+                .imagePath(request.getImagePath())
+                .inferenceResult(request.getInferenceResult() != null ? request.getInferenceResult().toString() : null)
+                .detectedObjectsCount(request.getDetectedObjectsCount())
+                .processingTime(request.getProcessingTime())
+                .status(request.getStatus())
+                .errorMessage(request.getErrorMessage())
+                .userId(request.getUserId())
+                .username(request.getUsername())
+                .deviceInfo(request.getDeviceInfo())
+                .inferenceServer(request.getInferenceServer())
+                .tags(request.getTags())
+                .notes(request.getNotes())
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .isDeleted(false)
+                .isFavorite(false)
+                .build();
+    }
+
     /**
      * 根据ID获取推理历史记录
      */
@@ -95,6 +118,9 @@ public class InferenceHistoryService {
      */
     public InferenceHistoryDto.InferenceHistoryPageResponse searchInferenceHistory(
             InferenceHistoryDto.SearchInferenceHistoryRequest request) {
+        if (request.getCursor() != null) {
+            return searchInferenceHistoryByCursor(request);
+        }
         try {
             // 构建分页和排序
             Sort sort = Sort.by(
@@ -108,7 +134,10 @@ public class InferenceHistoryService {
             Page<InferenceHistory> page;
 
             // 根据搜索条件选择查询方法
-            if (hasComplexSearchCriteria(request)) {
+            if (request.getKeyword() != null && textIndex.isEnabled()) {
+                // 关键词通过索引匹配
+                page = inferenceHistoryRepository.findAll(searchSpecification(request), pageable);
+            } else if (hasComplexSearchCriteria(request)) {
                 page = inferenceHistoryRepository.searchWithComplexCriteria(
                         request.getKeyword(),
                         request.getInferenceType(),
@@ -150,45 +179,169 @@ public class InferenceHistoryService {
     }
 
     /**
-     * 更新推理历史记录
+     * 游标分页搜索推理历史记录
+     * 按 (createdAt, id) 排序并从游标位置向后取 size+1 条判断是否还有下一页，不执行COUNT查询，
+     * 翻页耗时与页码无关
      */
-    @Transactional
-    public InferenceHistoryDto.InferenceHistoryResponse updateInferenceHistory(
-            Long id, InferenceHistoryDto.UpdateInferenceHistoryRequest request) {
-        try {
-            InferenceHistory history = inferenceHistoryRepository.findByIdAndIsDeletedFalse(id)
-                    .orElseThrow(() -> new RuntimeException("推理历史记录不存在: " + id));
+    private InferenceHistoryDto.InferenceHistoryPageResponse searchInferenceHistoryByCursor(
+            InferenceHistoryDto.SearchInferenceHistoryRequest request) {
+        if (request.getSortBy() != null && !"createdAt".equals(request.getSortBy())) {
+            throw new IllegalArgumentException("游标分页仅支持按createdAt排序");
+        }
+        boolean descending = !"asc".equalsIgnoreCase(request.getSortDirection());
+        int size = request.getSize() != null && request.getSize() > 0 ? Math.min(request.getSize(), MAX_CURSOR_PAGE_SIZE) : 20;
+        Cursor cursor = request.getCursor().isBlank() ? null : Cursor.decode(request.getCursor(), descending);
+
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, "createdAt").and(Sort.by(direction, "id"));
+        Specification<InferenceHistory> specification = searchSpecification(request)
+                .and(afterCursor(cursor, descending));
+        List<InferenceHistory> rows = inferenceHistoryRepository.findBy(specification,
+                query -> query.sortBy(sort).limit(size + 1).all());
+
+        boolean hasMore = rows.size() > size;
+        List<InferenceHistory> pageRows = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            InferenceHistory last = pageRows.get(pageRows.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getId()).encode(descending);
+        }
 
-            // 更新字段
-            if (request.getStatus() != null) {
-                history.setStatus(request.getStatus());
+        return InferenceHistoryDto.InferenceHistoryPageResponse.builder()
+                .content(pageRows.stream().map(this::convertToResponse).collect(Collectors.toList()))
+                .size(size)
+                .first(cursor == null)
+                .last(!hasMore)
+                .empty(pageRows.isEmpty())
+                .nextCursor(nextCursor)
+                .estimatedTotal(Boolean.TRUE.equals(request.getEstimateTotal()) && !hasComplexSearchCriteria(request)
+                        ? estimateTotal() : null)
+                .build();
+    }
+
+    /**
+     * 搜索条件，只为给出的条件生成谓词，便于数据库选择合适的索引
+     */
+    private Specification<InferenceHistory> searchSpecification(InferenceHistoryDto.SearchInferenceHistoryRequest request) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.isFalse(root.get("isDeleted")));
+            if (request.getKeyword() != null && textIndex.isEnabled()) {
+                predicates.add(textIndex.matches(root, query, cb, request.getKeyword()));
+            } else if (request.getKeyword() != null) {
+                String pattern = "%" + request.getKeyword() + "%";
+                predicates.add(cb.or(
+                        cb.like(root.get("originalFilename"), pattern),
+                        cb.like(root.get("modelName"), pattern),
+                        cb.like(root.get("username"), pattern),
+                        cb.like(root.get("tags"), pattern),
+                        cb.like(root.get("notes"), pattern)));
             }
-            if (request.getErrorMessage() != null) {
-                history.setErrorMessage(request.getErrorMessage());
+            if (request.getInferenceType() != null) {
+                predicates.add(cb.equal(root.get("inferenceType"), request.getInferenceType()));
             }
-            if (request.getInferenceResult() != null) {
-                history.setInferenceResult(request.getInferenceResult().toString());
+            if (request.getModelName() != null) {
+                predicates.add(cb.equal(root.get("modelName"), request.getModelName()));
             }
-            if (request.getDetectedObjectsCount() != null) {
-                history.setDetectedObjectsCount(request.getDetectedObjectsCount());
+            if (request.getStatus() != null) {
+                predicates.add(cb.equal(root.get("status"), request.getStatus()));
             }
-            if (request.getProcessingTime() != null) {
-                history.setProcessingTime(request.getProcessingTime());
+            if (request.getUserId() != null) {
+                predicates.add(cb.equal(root.get("userId"), request.getUserId()));
             }
-            if (request.getTags() != null) {
-                history.setTags(request.getTags());
+            if (request.getUsername() != null) {
+                predicates.add(cb.equal(root.get("username"), request.getUsername()));
             }
-            if (request.getNotes() != null) {
-                history.setNotes(request.getNotes());
+            if (request.getStartTime() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), request.getStartTime()));
             }
-            if (request.getResultRating() != null) {
-                history.setResultRating(request.getResultRating());
+            if (request.getEndTime() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), request.getEndTime()));
             }
             if (request.getIsFavorite() != null) {
-                history.setIsFavorite(request.getIsFavorite());
+                predicates.add(cb.equal(root.get("isFavorite"), request.getIsFavorite()));
+            }
+            if (request.getMinRating() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("resultRating"), request.getMinRating()));
             }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
 
-            history.setUpdatedAt(LocalDateTime.now());
+    /**
+     * 游标之后的记录：createdAt 越过游标，或 createdAt 相同且 id 越过游标
+     */
+    private Specification<InferenceHistory> afterCursor(Cursor cursor, boolean descending) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return null;
+            }
+            Path<LocalDateTime> createdAt = root.get("createdAt");
+            Path<Long> id = root.get("id");
+            return descending
+                    ? cb.or(cb.lessThan(createdAt, cursor.createdAt),
+                            cb.and(cb.equal(createdAt, cursor.createdAt), cb.lessThan(id, cursor.id)))
+                    : cb.or(cb.greaterThan(createdAt, cursor.createdAt),
+                            cb.and(cb.equal(createdAt, cursor.createdAt), cb.greaterThan(id, cursor.id)));
+        };
+    }
+
+    /**
+     * 估算未删除的记录总数：PostgreSQL取统计信息中的行数估计，其他数据库或未分析过的表精确统计
+     */
+    private Long estimateTotal() {
+        try {
+            Long estimate = inferenceHistoryRepository.estimateRowCount();
+            if (estimate != null && estimate >= 0) {
+                return estimate;
+            }
+        } catch (Exception e) {
+            log.debug("无法读取表行数估计，改为精确统计: {}", e.getMessage());
+        }
+        return inferenceHistoryRepository.countTotalInferences();
+    }
+
+    /**
+     * 分页游标：最后一条记录的 (createdAt, id) 及排序方向，编码为URL安全的base64
+     */
+    private static final class Cursor {
+        private final LocalDateTime createdAt;
+        private final Long id;
+
+        Cursor(LocalDateTime createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        String encode(boolean descending) {
+            String raw = (descending ? "d" : "a") + "|" + createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value, boolean descending) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3 || !parts[0].equals(descending ? "d" : "a")) {
+                    throw new IllegalArgumentException("分页游标与排序方向不匹配");
+                }
+                return new Cursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("无效的分页游标: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 更新推理历史记录
+     */
+    @Transactional
+    public InferenceHistoryDto.InferenceHistoryResponse updateInferenceHistory(
+            Long id, InferenceHistoryDto.UpdateInferenceHistoryRequest request) {
+        try {
+            InferenceHistory history = inferenceHistoryRepository.findByIdAndIsDeletedFalse(id)
+                    .orElseThrow(() -> new RuntimeException("推理历史记录不存在: " + id));
+
+            applyUpdate(history, request);
             InferenceHistory updatedHistory = inferenceHistoryRepository.save(history);
             
             log.info("更新推理历史记录成功: id={}", id);
@@ -200,6 +353,47 @@ public class InferenceHistoryService {
         }
     }
 
+    /**
+     * 将更新请求中非空的字段写入实体，并同步关键词索引和统计汇总，须在事务中调用
+     */
+    public void applyUpdate(InferenceHistory history, InferenceHistoryDto.UpdateInferenceHistoryRequest request) {
+        InferenceHistoryRollups.Snapshot before = rollups.snapshot(history);
+        if (request.getStatus() != null) {
+            history.setStatus(request.getStatus());
+        }
+        if (request.getErrorMessage() != null) {
+            history.setErrorMessage(request.getErrorMessage());
+        }
+        if (request.getInferenceResult() != null) {
+            history.setInferenceResult(request.getInferenceResult().toString());
+        }
+        if (request.getDetectedObjectsCount() != null) {
+            history.setDetectedObjectsCount(request.getDetectedObjectsCount());
+        }
+        if (request.getProcessingTime() != null) {
+            history.setProcessingTime(request.getProcessingTime());
+        }
+        if (request.getTags() != null) {
+            history.setTags(request.getTags());
+        }
+        if (request.getNotes() != null) {
+            history.setNotes(request.getNotes());
+        }
+        if (request.getResultRating() != null) {
+            history.setResultRating(request.getResultRating());
+        }
+        if (request.getIsFavorite() != null) {
+            history.setIsFavorite(request.getIsFavorite());
+        }
+        if (request.getInferenceServer() != null) {
+            history.setInferenceServer(request.getInferenceServer());
+        }
+
+        history.setUpdatedAt(LocalDateTime.now());
+        textIndex.updated(history, request);
+        rollups.changed(before, history);
+    }
+
     /**
      * 软删除推理历史记录
      */
@@ -212,6 +406,8 @@ public class InferenceHistoryService {
             history.setIsDeleted(true);
             history.setUpdatedAt(LocalDateTime.now());
             inferenceHistoryRepository.save(history);
+            textIndex.remove(List.of(id));
+            rollups.removed(List.of(history));
             
             log.info("删除推理历史记录成功: id={}", id);
 
@@ -235,6 +431,8 @@ public class InferenceHistoryService {
             });
             
             inferenceHistoryRepository.saveAll(histories);
+            textIndex.remove(histories.stream().map(InferenceHistory::getId).collect(Collectors.toList()));
+            rollups.removed(histories);
             log.info("批量删除推理历史记录成功: count={}", histories.size());
 
         } catch (Exception e) {
@@ -248,6 +446,9 @@ public class InferenceHistoryService {
      */
     public InferenceHistoryDto.InferenceHistoryStats getInferenceHistoryStats(
             Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (rollups.isEnabled()) {
+            return getInferenceHistoryStatsFromRollups(userId, startTime, endTime);
+        }
         try {
             // 基础统计
             Long totalInferences = inferenceHistoryRepository.countTotalInferences(userId, startTime, endTime);
@@ -327,55 +528,82 @@ public class InferenceHistoryService {
     }
 
     /**
-     * 清理推理历史记录
+     * 由小时汇总计算统计信息，不扫描原始表；时间范围按整点对齐
      */
-    @Transactional
-    public void cleanupInferenceHistory(InferenceHistoryDto.CleanupInferenceHistoryRequest request) {
+    private InferenceHistoryDto.InferenceHistoryStats getInferenceHistoryStatsFromRollups(
+            Long userId, LocalDateTime startTime, LocalDateTime endTime) {
         try {
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(request.getDaysToKeep());
-            
-            if (request.getPhysicalDelete()) {
-                // 物理删除
-                if (request.getOnlyDeleteFailed()) {
-                    // 只删除失败的记录
-                    List<InferenceHistory> failedRecords = inferenceHistoryRepository
-                        .findByStatusAndCreatedAtBeforeAndIsDeletedFalse("FAILED", cutoffDate);
-                    inferenceHistoryRepository.deleteAll(failedRecords);
-                } else {
-                    // 删除所有记录
-                    List<InferenceHistory> recordsToDelete = inferenceHistoryRepository
-                        .findByCreatedAtBeforeAndIsDeletedFalse(cutoffDate);
-                    inferenceHistoryRepository.deleteAll(recordsToDelete);
-                }
-            } else {
-                // 软删除
-                if (request.getOnlyDeleteFailed()) {
-                    // 只软删除失败的记录
-                    List<InferenceHistory> failedRecords = inferenceHistoryRepository
-                        .findByStatusAndCreatedAtBeforeAndIsDeletedFalse("FAILED", cutoffDate);
-                    failedRecords.forEach(record -> {
-                        record.setIsDeleted(true);
-                        record.setUpdatedAt(LocalDateTime.now());
-                    });
-                    inferenceHistoryRepository.saveAll(failedRecords);
-                } else {
-                    // 软删除所有记录
-                    List<InferenceHistory> recordsToDelete = inferenceHistoryRepository
-                        .findByCreatedAtBeforeAndIsDeletedFalse(cutoffDate);
-                    recordsToDelete.forEach(record -> {
-                        record.setIsDeleted(true);
-                        record.setUpdatedAt(LocalDateTime.now());
-                    });
-                    inferenceHistoryRepository.saveAll(recordsToDelete);
+            long totalInferences = 0;
+            long successfulInferences = 0;
+            long failedInferences = 0;
+            Double averageProcessingTime = null;
+            Double averageDetectedObjects = null;
+            for (Object[] row : rollups.sumByStatus(userId, startTime, endTime)) {
+                long count = ((Number) row[1]).longValue();
+                totalInferences += count;
+                if ("SUCCESS".equals(row[0])) {
+                    successfulInferences = count;
+                    long processingTimeCount = ((Number) row[3]).longValue();
+                    long detectedObjectsCount = ((Number) row[5]).longValue();
+                    averageProcessingTime = processingTimeCount > 0
+                            ? ((Number) row[2]).doubleValue() / processingTimeCount : null;
+                    averageDetectedObjects = detectedObjectsCount > 0
+                            ? ((Number) row[4]).doubleValue() / detectedObjectsCount : null;
+                } else if ("FAILED".equals(row[0])) {
+                    failedInferences = count;
                 }
             }
-            
-            log.info("清理推理历史记录完成: daysToKeep={}, onlyDeleteFailed={}, physicalDelete={}", 
-                    request.getDaysToKeep(), request.getOnlyDeleteFailed(), request.getPhysicalDelete());
+            long total = totalInferences;
+
+            List<InferenceHistoryDto.ModelUsageStats> modelUsageStats = rollups.sumByModel(userId, startTime, endTime)
+                    .stream()
+                    .map(stat -> InferenceHistoryDto.ModelUsageStats.builder()
+                            .modelName((String) stat[0])
+                            .usageCount(((Number) stat[1]).longValue())
+                            .usagePercentage(total > 0 ? ((Number) stat[1]).longValue() * 100.0 / total : 0.0)
+                            .build())
+                    .collect(Collectors.toList());
+
+            List<InferenceHistoryDto.TypeUsageStats> typeUsageStats = rollups.sumByType(userId, startTime, endTime)
+                    .stream()
+                    .map(stat -> InferenceHistoryDto.TypeUsageStats.builder()
+                            .inferenceType((String) stat[0])
+                            .usageCount(((Number) stat[1]).longValue())
+                            .usagePercentage(total > 0 ? ((Number) stat[1]).longValue() * 100.0 / total : 0.0)
+                            .build())
+                    .collect(Collectors.toList());
+
+            List<InferenceHistoryDto.DailyStats> dailyStats = rollups.sumByDay(userId, startTime, endTime)
+                    .stream()
+                    .map(stat -> InferenceHistoryDto.DailyStats.builder()
+                            .date((LocalDateTime) stat[0])
+                            .inferenceCount((Long) stat[1])
+                            .build())
+                    .collect(Collectors.toList());
+
+            // 最近推理记录走 (created_at, id) 索引，只取10条
+            List<InferenceHistoryDto.InferenceHistoryResponse> recentInferences = inferenceHistoryRepository
+                    .findRecentInferences(PageRequest.of(0, 10))
+                    .stream()
+                    .map(this::convertToResponse)
+                    .collect(Collectors.toList());
+
+            return InferenceHistoryDto.InferenceHistoryStats.builder()
+                    .totalInferences(totalInferences)
+                    .successfulInferences(successfulInferences)
+                    .failedInferences(failedInferences)
+                    .successRate(totalInferences > 0 ? (double) successfulInferences / totalInferences * 100 : 0.0)
+                    .averageProcessingTime(averageProcessingTime)
+                    .averageDetectedObjects(averageDetectedObjects)
+                    .modelUsageStats(modelUsageStats)
+                    .typeUsageStats(typeUsageStats)
+                    .dailyStats(dailyStats)
+                    .recentInferences(recentInferences)
+                    .build();
 
         } catch (Exception e) {
-            log.error("清理推理历史记录失败: {}", e.getMessage(), e);
-            throw new RuntimeException("清理推理历史记录失败: " + e.getMessage());
+            log.error("获取推理历史统计失败: {}", e.getMessage(), e);
+            throw new RuntimeException("获取推理历史统计失败: " + e.getMessage());
         }
     }
 
@@ -0,0 +1,353 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
+import com.vision.vision_platform_backend.entity.InferenceHistory;
+import com.vision.vision_platform_backend.entity.InferenceHistoryToken;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
+import com.vision.vision_platform_backend.repository.InferenceHistoryTokenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 推理历史关键词索引
+ * 在 inference_history_token 表中维护倒排索引，关键词搜索通过索引定位候选记录，不再对全表做 LIKE '%kw%' 扫描：
+ * 文件名、模型名、用户名、标签、备注按字母数字切词，每个词记录长度 2~16 的前缀（"w:"）；
+ * 文件名和备注另外记录字符三元组（"g:"），用于匹配文件名中间的片段。
+ * 关键词按空白切分为多个词项，全部命中才算匹配（不区分大小写）；每个词项满足以下任一条件即命中：
+ * 词项中的每个词都是某个字段中单词的前缀，或词项是文件名/备注的子串（至少3个字符，三元组定位后再用 LIKE 校验）。
+ * 插入、更新标签/备注、软删除时同步维护；已有数据通过 rebuild() 按ID分块重建。
+ * PostgreSQL 上索引表由 db/postgresql/inference_history_token.sql 创建，建表后须调用一次重建接口。
+ */
+@Component
+public class InferenceHistoryTextIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHistoryTextIndex.class);
+
+    static final String WORD_PREFIX = "w:";
+    static final String GRAM_PREFIX = "g:";
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_LENGTH = 16;
+    private static final int GRAM_LENGTH = 3;
+
+    @Value("${ai.inference.history.text-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.inference.history.text-index.rebuild-chunk-size:500}")
+    private int rebuildChunkSize;
+
+    private final InferenceHistoryRepository historyRepository;
+    private final InferenceHistoryTokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inference-history-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile Map<String, Object> lastRebuild = Map.of();
+
+    public InferenceHistoryTextIndex(InferenceHistoryRepository historyRepository,
+                                     InferenceHistoryTokenRepository tokenRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.historyRepository = historyRepository;
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 索引表不存在时停用索引，避免每次写入历史记录都因维护索引失败而回滚
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            tokenRepository.existsById(new InferenceHistoryToken.Key("", 0L));
+        } catch (DataAccessException e) {
+            enabled = false;
+            logger.error("推理历史关键词索引表不可用，已停用关键词索引（关键词搜索回退为LIKE扫描）。" +
+                    "请执行 db/postgresql/inference_history_token.sql 后重启，并调用 POST /api/inference-history/text-index/rebuild: {}",
+                    e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 为新写入的记录建立索引，须在写入记录的事务中调用
+     */
+    public void add(Collection<InferenceHistory> histories) {
+        if (!enabled) {
+            return;
+        }
+        List<InferenceHistoryToken> tokens = new ArrayList<>();
+        for (InferenceHistory history : histories) {
+            if (history.getId() != null && !Boolean.TRUE.equals(history.getIsDeleted())) {
+                for (String token : tokenize(history)) {
+                    tokens.add(new InferenceHistoryToken(token, history.getId()));
+                }
+            }
+        }
+        if (!tokens.isEmpty()) {
+            tokenRepository.saveAll(tokens);
+        }
+    }
+
+    /**
+     * 更新请求修改了标签或备注时重建该记录的索引，须在更新记录的事务中调用
+     */
+    public void updated(InferenceHistory history, InferenceHistoryDto.UpdateInferenceHistoryRequest request) {
+        if (!enabled || (request.getTags() == null && request.getNotes() == null)) {
+            return;
+        }
+        tokenRepository.deleteByHistoryIds(List.of(history.getId()));
+        add(List.of(history));
+    }
+
+    /**
+     * 删除记录（软删除或物理删除）后移除其索引，须在删除记录的事务中调用
+     */
+    public void remove(Collection<Long> historyIds) {
+        if (!enabled || historyIds.isEmpty()) {
+            return;
+        }
+        tokenRepository.deleteByHistoryIds(historyIds);
+    }
+
+    /**
+     * 关键词匹配条件
+     */
+    public Predicate matches(Root<InferenceHistory> root, CriteriaQuery<?> query, CriteriaBuilder cb, String keyword) {
+        List<Predicate> terms = new ArrayList<>();
+        for (String term : normalize(keyword).split("\\s+")) {
+            if (!term.isEmpty()) {
+                terms.add(termMatches(root, query, cb, term));
+            }
+        }
+        return terms.isEmpty() ? cb.conjunction() : cb.and(terms.toArray(new Predicate[0]));
+    }
+
+    private Predicate termMatches(Root<InferenceHistory> root, CriteriaQuery<?> query, CriteriaBuilder cb, String term) {
+        List<Predicate> alternatives = new ArrayList<>();
+
+        List<String> words = words(term);
+        if (!words.isEmpty() && words.stream().allMatch(word -> word.length() >= MIN_PREFIX_LENGTH)) {
+            List<Predicate> wordMatches = new ArrayList<>();
+            for (String word : words) {
+                wordMatches.add(root.get("id").in(postings(query, cb, Set.of(WORD_PREFIX + truncate(word)))));
+            }
+            alternatives.add(cb.and(wordMatches.toArray(new Predicate[0])));
+        }
+
+        String pattern = "%" + escapeLike(term) + "%";
+        Set<String> grams = grams(term);
+        if (!grams.isEmpty()) {
+            alternatives.add(cb.and(
+                    root.get("id").in(postings(query, cb, grams)),
+                    cb.or(cb.like(cb.lower(root.get("originalFilename")), pattern, '\\'),
+                          cb.like(cb.lower(root.get("notes")), pattern, '\\'))));
+        }
+
+        if (alternatives.isEmpty()) {
+            // 词项过短，无法使用索引
+            List<Predicate> likes = new ArrayList<>();
+            for (String field : List.of("originalFilename", "modelName", "username", "tags", "notes")) {
+                likes.add(cb.like(cb.lower(root.get(field)), pattern, '\\'));
+            }
+            return cb.or(likes.toArray(new Predicate[0]));
+        }
+        return cb.or(alternatives.toArray(new Predicate[0]));
+    }
+
+    /**
+     * 包含全部给定词元的记录ID
+     */
+    private Subquery<Long> postings(CriteriaQuery<?> query, CriteriaBuilder cb, Set<String> tokens) {
+        Subquery<Long> subquery = query.subquery(Long.class);
+        Root<InferenceHistoryToken> token = subquery.from(InferenceHistoryToken.class);
+        Expression<Long> historyId = token.get("historyId");
+        subquery.select(historyId);
+        if (tokens.size() == 1) {
+            subquery.where(cb.equal(token.get("token"), tokens.iterator().next()));
+        } else {
+            subquery.where(token.get("token").in(tokens))
+                    .groupBy(historyId)
+                    .having(cb.equal(cb.count(token), (long) tokens.size()));
+        }
+        return subquery;
+    }
+
+    /**
+     * 提交后台重建任务
+     *
+     * @return 已有重建任务在运行时返回false
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("started_at", LocalDateTime.now().toString());
+        status.put("processed", 0L);
+        lastRebuild = status;
+        rebuildExecutor.execute(() -> {
+            try {
+                runRebuild(status);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 只处理重建开始时已存在的记录（ID不超过当时的最大ID），之后写入的记录由写入路径建立索引。
+     * 每块只删除并重建实际读到的记录的词元；主键按块预分配，并发写入的记录可能落在已读过的ID区间内，
+     * 按ID区间删除会误删它们的词元，因此区间内只清理对应记录已不存在的残留词元。
+     */
+    private void runRebuild(Map<String, Object> status) {
+        long lastId = 0;
+        long processed = 0;
+        try {
+            Long maxIdAtStart = historyRepository.findMaxId();
+            final long maxId = maxIdAtStart != null ? maxIdAtStart : 0;
+            synchronized (status) {
+                status.put("max_id", maxId);
+            }
+            logger.info("开始重建推理历史关键词索引: maxId={}", maxId);
+            while (!Thread.currentThread().isInterrupted()) {
+                final long fromId = lastId;
+                // 返回 [本块最后一条记录ID, 本块记录数]，没有更多记录时返回null
+                long[] chunkResult = transactionTemplate.execute(tx -> {
+                    List<InferenceHistory> chunk = fromId >= maxId ? List.of() : historyRepository
+                            .findByIdGreaterThanOrderByIdAsc(fromId, PageRequest.of(0, Math.max(1, rebuildChunkSize)))
+                            .stream().filter(history -> history.getId() <= maxId).toList();
+                    if (chunk.isEmpty()) {
+                        tokenRepository.deleteOrphansInRange(fromId, maxId);
+                        return null;
+                    }
+                    Long toId = chunk.get(chunk.size() - 1).getId();
+                    tokenRepository.deleteByHistoryIds(chunk.stream().map(InferenceHistory::getId).toList());
+                    tokenRepository.deleteOrphansInRange(fromId, toId);
+                    add(chunk);
+                    return new long[]{toId, chunk.size()};
+                });
+                if (chunkResult == null) {
+                    break;
+                }
+                lastId = chunkResult[0];
+                processed += chunkResult[1];
+                synchronized (status) {
+                    status.put("processed", processed);
+                    status.put("last_id", lastId);
+                }
+            }
+            synchronized (status) {
+                status.put("finished_at", LocalDateTime.now().toString());
+            }
+            logger.info("推理历史关键词索引重建完成: lastId={}", lastId);
+        } catch (Exception e) {
+            synchronized (status) {
+                status.put("error", e.getMessage());
+            }
+            logger.error("推理历史关键词索引重建失败: lastId={}, error={}", lastId, e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("rebuilding", rebuilding.get());
+        Map<String, Object> rebuild = lastRebuild;
+        synchronized (rebuild) {
+            status.put("last_rebuild", new LinkedHashMap<>(rebuild));
+        }
+        return status;
+    }
+
+    /**
+     * 记录的全部词元
+     */
+    static Set<String> tokenize(InferenceHistory history) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : new String[]{history.getOriginalFilename(), history.getModelName(),
+                history.getUsername(), history.getTags(), history.getNotes()}) {
+            for (String word : words(normalize(field))) {
+                for (int length = Math.min(MIN_PREFIX_LENGTH, word.length());
+                     length <= Math.min(MAX_PREFIX_LENGTH, word.length()); length++) {
+                    tokens.add(WORD_PREFIX + word.substring(0, length));
+                }
+            }
+        }
+        tokens.addAll(grams(normalize(history.getOriginalFilename())));
+        tokens.addAll(grams(normalize(history.getNotes())));
+        return tokens;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(String value) {
+        List<String> words = new ArrayList<>();
+        for (String word : value.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = value.codePoints().toArray();
+        for (int i = 0; i + GRAM_LENGTH <= codePoints.length; i++) {
+            grams.add(GRAM_PREFIX + new String(codePoints, i, GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static String truncate(String word) {
+        return word.length() > MAX_PREFIX_LENGTH ? word.substring(0, MAX_PREFIX_LENGTH) : word;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,654 @@
+package com.vision.vision_platform_backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vision.vision_platform_backend.dto.InferenceHistoryDto;
+import com.vision.vision_platform_backend.entity.InferenceHistory;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推理历史异步批量写入
+ * 推理请求只把历史记录放入有界队列即返回，由后台线程攒批后在一个事务中批量插入，推理耗时不再包含数据库提交。
+ * 持久性模式：
+ * sync    - 调用线程直接写入数据库（与原先行为一致）
+ * memory  - 只放入内存队列，进程异常退出时队列中的记录丢失
+ * journal - 入队前先追加到本地日志文件，进程崩溃后启动时重放；日志每个刷写周期落盘一次
+ * fsync   - 同 journal，但每条记录追加后立即落盘
+ * 队列满时插入和更新都最多等待 offer-timeout-ms，仍无法入队则由调用线程直接写入（反压）；
+ * 更新直接写入前先取出队列中同一任务尚未写入的记录，按原顺序一起写入，保证更新排在对应的插入之后。
+ */
+@Component
+public class InferenceHistoryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHistoryWriter.class);
+
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+
+    enum Durability { SYNC, MEMORY, JOURNAL, FSYNC }
+
+    @Value("${ai.inference.history.writer.durability:journal}")
+    private String durabilityConfig;
+
+    @Value("${ai.inference.history.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ai.inference.history.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${ai.inference.history.writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    /**
+     * 队列满时插入和更新等待入队的最长毫秒数，超时后由调用线程直接写入，数据库不可用时不会无限阻塞调用线程
+     */
+    @Value("${ai.inference.history.writer.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${ai.inference.history.writer.journal-dir:./data/history-journal}")
+    private String journalDir;
+
+    @Value("${ai.inference.history.writer.journal-segment-bytes:8388608}")
+    private long segmentBytes;
+
+    @Value("${ai.inference.history.writer.shutdown-timeout-seconds:10}")
+    private long shutdownTimeoutSeconds;
+
+    private final InferenceHistoryService historyService;
+    private final InferenceHistoryRepository repository;
+    private final InferenceHistoryTextIndex textIndex;
+    private final InferenceHistoryRollups rollups;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private Durability durability = Durability.JOURNAL;
+    private BlockingQueue<Op> queue;
+    private Journal journal;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private Counter writtenCounter;
+    private Counter droppedCounter;
+    private Counter overflowCounter;
+    private Counter replayedCounter;
+    private Timer flushTimer;
+
+    public InferenceHistoryWriter(InferenceHistoryService historyService,
+                                  InferenceHistoryRepository repository,
+                                  InferenceHistoryTextIndex textIndex,
+                                  InferenceHistoryRollups rollups,
+                                  PlatformTransactionManager transactionManager,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.historyService = historyService;
+        this.repository = repository;
+        this.textIndex = textIndex;
+        this.rollups = rollups;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            durability = Durability.valueOf(durabilityConfig.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("未知的推理历史持久性模式 {}，使用 journal", durabilityConfig);
+            durability = Durability.JOURNAL;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        batchSize = Math.max(1, batchSize);
+
+        writtenCounter = Counter.builder("ai.inference.history.records").tag("result", "written").register(meterRegistry);
+        droppedCounter = Counter.builder("ai.inference.history.records").tag("result", "dropped").register(meterRegistry);
+        overflowCounter = Counter.builder("ai.inference.history.records").tag("result", "overflow").register(meterRegistry);
+        replayedCounter = Counter.builder("ai.inference.history.records").tag("result", "replayed").register(meterRegistry);
+        flushTimer = Timer.builder("ai.inference.history.flush").register(meterRegistry);
+        Gauge.builder("ai.inference.history.queue", queue, BlockingQueue::size).register(meterRegistry);
+
+        if (durability == Durability.SYNC) {
+            return;
+        }
+        if (durability == Durability.JOURNAL || durability == Durability.FSYNC) {
+            try {
+                journal = new Journal(Paths.get(journalDir), segmentBytes, durability == Durability.FSYNC);
+                List<Path> leftovers = journal.existingSegments();
+                journal.rotate();
+                replay(leftovers);
+            } catch (IOException e) {
+                logger.error("推理历史日志目录不可用，降级为内存队列: dir={}, error={}", journalDir, e.getMessage());
+                journal = null;
+            }
+        }
+
+        running = true;
+        writerThread = new Thread(this::drainLoop, "inference-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("推理历史异步写入已启动: durability={}, queueCapacity={}, batchSize={}",
+                durability.name().toLowerCase(Locale.ROOT), queueCapacity, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (writerThread.isAlive()) {
+                writerThread.interrupt();
+                logger.warn("推理历史写入线程未能在{}秒内完成，剩余{}条记录{}", shutdownTimeoutSeconds, queue.size(),
+                        journal != null ? "保留在本地日志中，下次启动时重放" : "丢失");
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * 追加一条推理历史
+     */
+    public void append(InferenceHistoryDto.CreateInferenceHistoryRequest request) {
+        Entry entry = new Entry();
+        entry.setType(Entry.INSERT);
+        entry.setHistory(historyService.toEntity(request));
+        submit(new Op(entry));
+    }
+
+    /**
+     * 按任务ID更新推理历史，排在此前追加的同一记录之后执行
+     */
+    public void update(String taskId, InferenceHistoryDto.UpdateInferenceHistoryRequest request) {
+        if (request.getInferenceResult() != null && !(request.getInferenceResult() instanceof String)) {
+            // 与同步更新的存储格式一致，同时保证日志重放前后内容相同
+            request.setInferenceResult(request.getInferenceResult().toString());
+        }
+        Entry entry = new Entry();
+        entry.setType(Entry.UPDATE);
+        entry.setTaskId(taskId);
+        entry.setUpdate(request);
+        submit(new Op(entry));
+    }
+
+    private void submit(Op op) {
+        if (!running) {
+            writeNow(op);
+            return;
+        }
+        if (journal != null) {
+            try {
+                op.segment = journal.append(objectMapper.writeValueAsBytes(op.entry));
+            } catch (IOException e) {
+                logger.warn("推理历史写入本地日志失败，仅保留在内存队列: {}", e.getMessage());
+            }
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(op, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            overflowCounter.increment();
+            writeNow(op.entry.isUpdate() ? withQueuedPredecessors(op) : List.of(op));
+        }
+    }
+
+    /**
+     * 更新直接写入前，先从队列取出同一记录尚未写入的插入和更新，按原顺序一起写入，
+     * 避免更新先于插入执行而丢失
+     */
+    private List<Op> withQueuedPredecessors(Op update) {
+        List<Op> ops = new ArrayList<>();
+        String taskId = update.entry.getTaskId();
+        for (Op queued : queue) {
+            if (taskId != null && taskId.equals(queued.entry.taskId()) && queue.remove(queued)) {
+                ops.add(queued);
+            }
+        }
+        ops.add(update);
+        return ops;
+    }
+
+    private void writeNow(Op op) {
+        writeNow(List.of(op));
+    }
+
+    /**
+     * 在调用线程中直接写入；失败时记录保留在本地日志中（如有），下次启动时重放
+     */
+    private void writeNow(List<Op> ops) {
+        List<Op> remaining = flush(ops, false);
+        for (Op op : remaining) {
+            logger.error("推理历史写入失败: type={}, taskId={}", op.entry.getType(), op.entry.taskId());
+        }
+    }
+
+    private void drainLoop() {
+        List<Op> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Op first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (journal != null) {
+                    journal.sync();
+                }
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flushWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("推理历史写入线程异常: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写入一批记录，数据库不可用时退避重试，直到写入成功或应用关闭
+     */
+    private void flushWithRetry(List<Op> batch) throws InterruptedException {
+        List<Op> pending = batch;
+        long backoffMs = 500;
+        while (true) {
+            pending = flush(pending, false);
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (!running) {
+                logger.warn("应用关闭中，{}条推理历史未写入{}", pending.size(),
+                        journal != null ? "，保留在本地日志中" : "");
+                return;
+            }
+            logger.warn("推理历史写入失败，{}毫秒后重试，待写入{}条", backoffMs, pending.size());
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * 在一个事务中写入一批记录；整批失败时逐条写入以隔离问题记录
+     *
+     * @return 因数据库暂时不可用而未写入的记录
+     */
+    private List<Op> flush(List<Op> ops, boolean skipExisting) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(ops, skipExisting));
+            committed(ops);
+            return List.of();
+        } catch (Exception batchError) {
+            if (ops.size() == 1 && !(batchError instanceof DataIntegrityViolationException)) {
+                logger.debug("推理历史写入失败: {}", batchError.getMessage());
+                return ops;
+            }
+            for (int i = 0; i < ops.size(); i++) {
+                Op op = ops.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(List.of(op), skipExisting));
+                    committed(List.of(op));
+                } catch (DataIntegrityViolationException e) {
+                    // 记录本身不合法（如字段超长），重试也不会成功，丢弃
+                    logger.error("推理历史记录无法写入，已丢弃: taskId={}, error={}", op.entry.taskId(), e.getMessage());
+                    droppedCounter.increment();
+                    release(op);
+                } catch (Exception e) {
+                    logger.debug("推理历史写入失败: {}", e.getMessage());
+                    return new ArrayList<>(ops.subList(i, ops.size()));
+                }
+            }
+            return List.of();
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void apply(List<Op> ops, boolean skipExisting) {
+        Set<String> existing = skipExisting ? existingTaskIds(ops) : Set.of();
+        List<InferenceHistory> inserts = new ArrayList<>();
+        for (Op op : ops) {
+            Entry entry = op.entry;
+            if (!entry.isUpdate()) {
+                if (!existing.contains(entry.taskId())) {
+                    // 失败回滚后重试时重新分配主键
+                    entry.getHistory().setId(null);
+                    inserts.add(entry.getHistory());
+                }
+                continue;
+            }
+            if (!inserts.isEmpty()) {
+                saveInserts(inserts);
+                repository.flush();
+                inserts.clear();
+            }
+            repository.findByTaskIdAndIsDeletedFalse(entry.getTaskId()).ifPresentOrElse(
+                    history -> historyService.applyUpdate(history, entry.getUpdate()),
+                    () -> logger.warn("待更新的推理历史不存在: taskId={}", entry.getTaskId()));
+        }
+        if (!inserts.isEmpty()) {
+            saveInserts(inserts);
+        }
+    }
+
+    private void saveInserts(List<InferenceHistory> inserts) {
+        repository.saveAll(inserts);
+        textIndex.add(inserts);
+        rollups.added(inserts);
+    }
+
+    private Set<String> existingTaskIds(List<Op> ops) {
+        Set<String> taskIds = new HashSet<>();
+        for (Op op : ops) {
+            if (!op.entry.isUpdate() && op.entry.taskId() != null) {
+                taskIds.add(op.entry.taskId());
+            }
+        }
+        return taskIds.isEmpty() ? Set.of() : new HashSet<>(repository.findExistingTaskIds(taskIds));
+    }
+
+    private void committed(List<Op> ops) {
+        for (Op op : ops) {
+            if (!op.entry.isUpdate()) {
+                writtenCounter.increment();
+            }
+            release(op);
+        }
+    }
+
+    private void release(Op op) {
+        if (op.segment != null) {
+            journal.release(op.segment);
+            op.segment = null;
+        }
+    }
+
+    /**
+     * 重放上次运行未写入的日志段，已存在的记录跳过；数据库不可用时保留日志段等待下次启动
+     */
+    private void replay(List<Path> segments) {
+        for (Path segment : segments) {
+            List<Op> ops = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        ops.add(new Op(objectMapper.readValue(line, Entry.class)));
+                    } catch (IOException e) {
+                        // 崩溃时最后一行可能只写了一半
+                        logger.warn("跳过无法解析的推理历史日志行: file={}", segment.getFileName());
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("读取推理历史日志失败: file={}, error={}", segment, e.getMessage());
+                continue;
+            }
+
+            boolean complete = true;
+            for (int from = 0; from < ops.size() && complete; from += batchSize) {
+                List<Op> batch = ops.subList(from, Math.min(from + batchSize, ops.size()));
+                complete = flush(batch, true).isEmpty();
+            }
+            if (!complete) {
+                logger.warn("推理历史日志重放未完成，保留到下次启动: file={}", segment.getFileName());
+                return;
+            }
+            replayedCounter.increment(ops.size());
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                logger.warn("删除已重放的推理历史日志失败: file={}, error={}", segment, e.getMessage());
+            }
+            logger.info("已重放推理历史日志: file={}, 记录数={}", segment.getFileName(), ops.size());
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("durability", durability.name().toLowerCase(Locale.ROOT));
+        status.put("running", running);
+        status.put("queue_size", queue != null ? queue.size() : 0);
+        status.put("queue_capacity", queueCapacity);
+        status.put("batch_size", batchSize);
+        status.put("written", (long) writtenCounter.count());
+        status.put("dropped", (long) droppedCounter.count());
+        status.put("overflow", (long) overflowCounter.count());
+        status.put("replayed", (long) replayedCounter.count());
+        status.put("flush_mean_ms", flushTimer.mean(TimeUnit.MILLISECONDS));
+        if (journal != null) {
+            status.put("journal", journal.getStatus());
+        }
+        return status;
+    }
+
+    /**
+     * 队列中的一条写入操作及其所在的日志段
+     */
+    private static final class Op {
+        private final Entry entry;
+        private Segment segment;
+
+        Op(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * 日志中的一行：插入携带完整实体，更新携带任务ID和更新请求
+     */
+    static class Entry {
+        static final String INSERT = "insert";
+        static final String UPDATE = "update";
+
+        private String type;
+        private InferenceHistory history;
+        private String taskId;
+        private InferenceHistoryDto.UpdateInferenceHistoryRequest update;
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+        public InferenceHistory getHistory() { return history; }
+        public void setHistory(InferenceHistory history) { this.history = history; }
+        public String getTaskId() { return taskId; }
+        public void setTaskId(String taskId) { this.taskId = taskId; }
+        public InferenceHistoryDto.UpdateInferenceHistoryRequest getUpdate() { return update; }
+        public void setUpdate(InferenceHistoryDto.UpdateInferenceHistoryRequest update) { this.update = update; }
+
+        boolean isUpdate() {
+            return UPDATE.equals(type);
+        }
+
+        String taskId() {
+            return isUpdate() ? taskId : history != null ? history.getTaskId() : null;
+        }
+    }
+
+    /**
+     * 日志段：记录全部写入数据库且不再追加后删除
+     */
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+        private int outstanding;
+        private boolean sealed;
+
+        Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * 本地追加日志，按大小切分为多个段
+     */
+    private static final class Journal {
+        private final Path dir;
+        private final long segmentBytes;
+        private final boolean fsyncEachRecord;
+        private final List<Segment> open = new ArrayList<>();
+        private Segment current;
+        private long sequence;
+        private boolean dirty;
+
+        Journal(Path dir, long segmentBytes, boolean fsyncEachRecord) throws IOException {
+            this.dir = dir;
+            this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+            this.fsyncEachRecord = fsyncEachRecord;
+            Files.createDirectories(dir);
+        }
+
+        List<Path> existingSegments() throws IOException {
+            List<Path> segments = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path path : stream) {
+                    segments.add(path);
+                }
+            }
+            segments.sort(null);
+            return segments;
+        }
+
+        synchronized Segment append(byte[] record) throws IOException {
+            if (current == null || current.size >= segmentBytes) {
+                rotate();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n').flip();
+            while (buffer.hasRemaining()) {
+                current.channel.write(buffer);
+            }
+            current.size += record.length + 1;
+            current.outstanding++;
+            if (fsyncEachRecord) {
+                current.channel.force(false);
+            } else {
+                dirty = true;
+            }
+            return current;
+        }
+
+        synchronized void rotate() throws IOException {
+            if (current != null) {
+                if (dirty) {
+                    current.channel.force(false);
+                    dirty = false;
+                }
+                current.sealed = true;
+                deleteIfDone(current);
+            }
+            // 文件名带时间戳和序号，重启后按名称排序即为写入顺序
+            String name = String.format("%s%013d-%06d%s", SEGMENT_PREFIX, System.currentTimeMillis(),
+                    sequence++ % 1_000_000, SEGMENT_SUFFIX);
+            Path path = dir.resolve(name);
+            current = new Segment(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            open.add(current);
+        }
+
+        synchronized void sync() {
+            if (!dirty || current == null) {
+                return;
+            }
+            try {
+                current.channel.force(false);
+                dirty = false;
+            } catch (IOException e) {
+                logger.warn("推理历史日志落盘失败: {}", e.getMessage());
+            }
+        }
+
+        synchronized void release(Segment segment) {
+            segment.outstanding--;
+            deleteIfDone(segment);
+        }
+
+        synchronized void close() {
+            sync();
+            if (current != null) {
+                current.sealed = true;
+                deleteIfDone(current);
+                closeChannel(current);
+            }
+        }
+
+        private void deleteIfDone(Segment segment) {
+            if (!segment.sealed || segment.outstanding > 0 || !open.remove(segment)) {
+                return;
+            }
+            closeChannel(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.warn("删除推理历史日志失败: file={}, error={}", segment.path, e.getMessage());
+            }
+        }
+
+        private void closeChannel(Segment segment) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.debug("关闭推理历史日志失败: {}", e.getMessage());
+            }
+        }
+
+        synchronized Map<String, Object> getStatus() {
+            int outstanding = 0;
+            for (Segment segment : open) {
+                outstanding += segment.outstanding;
+            }
+            return Map.of(
+                    "dir", dir.toAbsolutePath().normalize().toString(),
+                    "fsync_each_record", fsyncEachRecord,
+                    "segments", open.size(),
+                    "pending_records", outstanding
+            );
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.vision.vision_platform_backend.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vision.vision_platform_backend.dto.SpooledText;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 推理服务器HTTP客户端
+ * 所有对MindSpore推理服务器的远程调用都经由此类发出：
+ * 复用连接池中的keep-alive连接，以异步方式返回结果，并限制每个主机的并发连接数；
+ * 每个主机有独立的熔断器，主机持续失败或变慢时快速失败，不再等待连接和读取超时。
+ * ai.inference.timeout 限制从发出请求到读完响应体的整个过程：超时或调用方取消时关闭响应流、
+ * 中断阻塞读取的解析线程，读取真正结束后才归还主机连接许可
+ */
+@Component
+public class InferenceHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceHttpClient.class);
+
+    @Value("${ai.inference.timeout:30000}")
+    private int readTimeout;
+
+    @Value("${ai.inference.pool.max-connections-per-host:64}")
+    private int maxConnectionsPerHost;
+
+    @Value("${ai.inference.pool.io-threads:64}")
+    private int ioThreads;
+
+    @Value("${ai.inference.circuit-breaker.enabled:true}")
+    private boolean circuitBreakerEnabled;
+
+    @Value("${ai.inference.circuit-breaker.window-size:50}")
+    private int breakerWindowSize;
+
+    @Value("${ai.inference.circuit-breaker.minimum-calls:10}")
+    private int breakerMinimumCalls;
+
+    @Value("${ai.inference.circuit-breaker.failure-rate-threshold:0.5}")
+    private double breakerFailureRate;
+
+    @Value("${ai.inference.circuit-breaker.slow-call-threshold-ms:10000}")
+    private long breakerSlowCallMs;
+
+    @Value("${ai.inference.circuit-breaker.slow-call-rate-threshold:0.8}")
+    private double breakerSlowCallRate;
+
+    @Value("${ai.inference.circuit-breaker.open-duration-ms:10000}")
+    private long breakerOpenDurationMs;
+
+    @Value("${ai.inference.circuit-breaker.half-open-probes:3}")
+    private int breakerHalfOpenProbes;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, InferenceCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor bodyReader;
+
+    public InferenceHttpClient(HttpClient inferenceServerHttpClient, ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry) {
+        this.httpClient = inferenceServerHttpClient;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        int threads = Math.max(1, ioThreads);
+        bodyReader = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ai-inference-io-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bodyReader.shutdownNow();
+    }
+
+    /**
+     * 发送GET请求并解析JSON响应
+     */
+    public <T> CompletableFuture<T> get(String url, JavaType responseType) {
+        HttpRequest request = newRequest(url)
+                .GET()
+                .build();
+        return send(request, responseType);
+    }
+
+    /**
+     * 发送GET请求，不经过熔断器，供健康检查探测使用
+     */
+    public <T> CompletableFuture<T> probe(String url, JavaType responseType) {
+        HttpRequest request = newRequest(url)
+                .GET()
+                .build();
+        return permitsFor(request.uri()).submit(() -> exchange(request, responseType, null));
+    }
+
+    /**
+     * 指定主机的熔断器
+     */
+    public InferenceCircuitBreaker circuitBreaker(String url) {
+        String host = hostKey(URI.create(url));
+        return circuitBreakers.computeIfAbsent(host, this::newCircuitBreaker);
+    }
+
+    /**
+     * 发送带JSON请求体的POST请求并解析JSON响应
+     */
+    public <T> CompletableFuture<T> postJson(String url, Object body, JavaType responseType) {
+        return sendJson("POST", url, body, responseType);
+    }
+
+    /**
+     * 发送带JSON请求体的PUT请求并解析JSON响应
+     */
+    public <T> CompletableFuture<T> putJson(String url, Object body, JavaType responseType) {
+        return sendJson("PUT", url, body, responseType);
+    }
+
+    /**
+     * 发送multipart/form-data请求并解析JSON响应
+     * 文件内容在发送时才从输入流读取并直接写入请求体，不做base64编码，也不在堆上保留完整副本
+     */
+    public <T> CompletableFuture<T> postMultipart(String url, Map<String, String> fields,
+                                                  List<UploadPart> parts, JavaType responseType) {
+        String boundary = "----VssInferenceBoundary" + UUID.randomUUID().toString().replace("-", "");
+        List<HttpRequest.BodyPublisher> publishers = new ArrayList<>();
+
+        StringBuilder fieldSection = new StringBuilder();
+        fields.forEach((name, value) -> {
+            if (value != null) {
+                fieldSection.append("--").append(boundary).append("\r\n")
+                        .append("Content-Disposition: form-data; name=\"").append(name).append("\"\r\n\r\n")
+                        .append(value).append("\r\n");
+            }
+        });
+        publishers.add(HttpRequest.BodyPublishers.ofString(fieldSection.toString(), StandardCharsets.UTF_8));
+
+        for (UploadPart part : parts) {
+            String partHeader = "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"" + part.getName() + "\"; filename=\""
+                    + escapeQuotes(part.getFilename()) + "\"\r\n"
+                    + "Content-Type: " + part.getContentType() + "\r\n\r\n";
+            publishers.add(HttpRequest.BodyPublishers.ofString(partHeader, StandardCharsets.UTF_8));
+            publishers.add(HttpRequest.BodyPublishers.fromPublisher(
+                    HttpRequest.BodyPublishers.ofInputStream(part.getContent()), part.getSize()));
+            publishers.add(HttpRequest.BodyPublishers.ofString("\r\n", StandardCharsets.UTF_8));
+        }
+        publishers.add(HttpRequest.BodyPublishers.ofString("--" + boundary + "--\r\n", StandardCharsets.UTF_8));
+
+        HttpRequest request = newRequest(url)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(publishers.toArray(new HttpRequest.BodyPublisher[0])))
+                .build();
+        return send(request, responseType);
+    }
+
+    /**
+     * 构造响应类型
+     */
+    public JavaType type(Class<?> type) {
+        return objectMapper.getTypeFactory().constructType(type);
+    }
+
+    /**
+     * 构造列表响应类型
+     */
+    public JavaType listType(Class<?> elementType) {
+        return objectMapper.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    /**
+     * 构造Map响应类型
+     */
+    public JavaType mapType() {
+        return objectMapper.getTypeFactory().constructMapType(Map.class, String.class, Object.class);
+    }
+
+    private <T> CompletableFuture<T> sendJson(String method, String url, Object body, JavaType responseType) {
+        byte[] payload;
+        try {
+            payload = body != null ? objectMapper.writeValueAsBytes(body) : new byte[0];
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = newRequest(url)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        return send(request, responseType);
+    }
+
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(readTimeout))
+                .header("Accept", "application/json");
+    }
+
+    private <T> CompletableFuture<T> send(HttpRequest request, JavaType responseType) {
+        if (!circuitBreakerEnabled) {
+            return permitsFor(request.uri()).submit(() -> exchange(request, responseType, null));
+        }
+
+        String host = hostKey(request.uri());
+        InferenceCircuitBreaker breaker = circuitBreakers.computeIfAbsent(host, this::newCircuitBreaker);
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(host, breaker.getRetryAfterMs()));
+        }
+        AtomicBoolean settled = new AtomicBoolean();
+        long[] start = new long[1];
+        CompletableFuture<T> call = permitsFor(request.uri()).submit(() -> {
+            start[0] = System.nanoTime();
+            return exchange(request, responseType, (response, error) -> {
+                if (!(error instanceof CancellationException) && settled.compareAndSet(false, true)) {
+                    breaker.record(error != null || response.statusCode() >= 500,
+                            (System.nanoTime() - start[0]) / 1_000_000);
+                }
+            });
+        });
+        call.whenComplete((value, error) -> {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            if (error instanceof TimeoutException) {
+                // 响应头都未在时限内返回
+                breaker.record(true, (System.nanoTime() - start[0]) / 1_000_000);
+            } else {
+                // 调用方主动取消（如对冲请求落败）不计入熔断统计，只归还占用的探测名额
+                breaker.release();
+            }
+        });
+        return call;
+    }
+
+    /**
+     * 发出请求并在解析线程池中读取响应体
+     *
+     * @param onHeaders 收到响应头或请求失败时回调，可为null
+     */
+    private <T> Exchange<T> exchange(HttpRequest request, JavaType responseType,
+                                     BiConsumer<HttpResponse<InputStream>, Throwable> onHeaders) {
+        Exchange<T> exchange = new Exchange<>();
+        CompletableFuture<HttpResponse<InputStream>> sent =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        sent.whenComplete((response, error) -> {
+            if (onHeaders != null) {
+                onHeaders.accept(response, error);
+            }
+            if (error != null) {
+                exchange.result.completeExceptionally(error);
+                exchange.finished.complete(null);
+                return;
+            }
+            try {
+                bodyReader.execute(() -> exchange.read(response, body -> parse(request, response, body, responseType)));
+            } catch (RejectedExecutionException e) {
+                exchange.result.completeExceptionally(e);
+                exchange.discard(response);
+            }
+        });
+        exchange.result.orTimeout(readTimeout, TimeUnit.MILLISECONDS);
+        exchange.result.whenComplete((value, error) -> {
+            if (error != null) {
+                sent.cancel(true);
+                exchange.abort();
+            }
+        });
+        return exchange;
+    }
+
+    private HostPermits permitsFor(URI uri) {
+        return hostPermits.computeIfAbsent(hostKey(uri), key -> new HostPermits(maxConnectionsPerHost));
+    }
+
+    private InferenceCircuitBreaker newCircuitBreaker(String host) {
+        InferenceCircuitBreaker breaker = new InferenceCircuitBreaker(host, breakerWindowSize, breakerMinimumCalls,
+                breakerFailureRate, breakerSlowCallMs, breakerSlowCallRate, breakerOpenDurationMs, breakerHalfOpenProbes);
+        Gauge.builder("ai.inference.circuit.state", breaker, b -> b.getState().ordinal())
+                .description("0=closed, 1=open, 2=half_open")
+                .tag("host", host)
+                .register(meterRegistry);
+        FunctionCounter.builder("ai.inference.circuit.rejected", breaker, InferenceCircuitBreaker::getRejectedCalls)
+                .tag("host", host)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    /**
+     * 直接从响应流解析JSON，不先把整个响应体读成字符串；大文本字段由 {@link SpooledText} 转存临时文件
+     */
+    private <T> T parse(HttpRequest request, HttpResponse<InputStream> response, InputStream responseBody,
+                        JavaType responseType) {
+        try (InputStream body = responseBody) {
+            if (response.statusCode() != 200) {
+                logger.error("推理服务器返回异常状态: {} {}, 状态码: {}",
+                        request.method(), request.uri(), response.statusCode());
+                throw new RemoteCallException(response.statusCode(),
+                        "推理服务器返回异常状态码: " + response.statusCode());
+            }
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                if (parser.nextToken() == null) {
+                    return null;
+                }
+                return objectMapper.readValue(parser, responseType);
+            }
+        } catch (RemoteCallException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RemoteCallException(response.statusCode(), "解析推理服务器响应失败: " + e.getMessage());
+        }
+    }
+
+    private static String escapeQuotes(String value) {
+        return value == null ? "file" : value.replace("\"", "%22");
+    }
+
+    private static String hostKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * 推理服务器返回非200状态或响应无法解析
+     */
+    public static class RemoteCallException extends RuntimeException {
+        private final int statusCode;
+
+        public RemoteCallException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    /**
+     * 熔断打开，调用未发出即被拒绝
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        private final long retryAfterMs;
+
+        public CircuitOpenException(String host, long retryAfterMs) {
+            super("推理服务器熔断中，暂停调用: " + host);
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    /**
+     * multipart请求中的文件部分
+     * 内容以输入流提供者的形式给出，请求发送时才打开
+     */
+    public static class UploadPart {
+        private final String name;
+        private final String filename;
+        private final String contentType;
+        private final long size;
+        private final Supplier<InputStream> content;
+
+        public UploadPart(String name, String filename, String contentType, long size, Supplier<InputStream> content) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType != null ? contentType : "application/octet-stream";
+            this.size = size;
+            this.content = content;
+        }
+
+        public String getName() { return name; }
+        public String getFilename() { return filename; }
+        public String getContentType() { return contentType; }
+        public long getSize() { return size; }
+        public Supplier<InputStream> getContent() { return content; }
+    }
+
+    /**
+     * 一次请求：result 是交给调用方的结果，finished 在连接不再被占用（响应体读完或已关闭）时完成
+     */
+    private static class Exchange<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+        private InputStream body;
+        private Thread reader;
+        private boolean aborted;
+
+        void read(HttpResponse<InputStream> response, Function<InputStream, T> parser) {
+            synchronized (this) {
+                if (aborted) {
+                    discard(response);
+                    return;
+                }
+                body = response.body();
+                reader = Thread.currentThread();
+            }
+            try {
+                result.complete(parser.apply(body));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    reader = null;
+                }
+                // 清除abort可能留下的中断标记，线程归还线程池后继续使用
+                Thread.interrupted();
+                finished.complete(null);
+            }
+        }
+
+        /**
+         * 超时或调用方取消：关闭响应流并中断阻塞在读取上的解析线程
+         */
+        synchronized void abort() {
+            aborted = true;
+            if (reader != null) {
+                closeQuietly(body);
+                reader.interrupt();
+            }
+        }
+
+        void discard(HttpResponse<InputStream> response) {
+            closeQuietly(response.body());
+            finished.complete(null);
+        }
+
+        private static void closeQuietly(InputStream stream) {
+            try {
+                stream.close();
+            } catch (Exception ignored) {
+                // 连接随之关闭，无需处理
+            }
+        }
+    }
+
+    /**
+     * 每个主机的连接许可
+     * 许可不足时请求进入队列等待，不占用调用线程；返回的Future被取消时，
+     * 排队中的请求不再发出，已发出的请求中止读取；许可在连接真正释放后才归还
+     */
+    private static class HostPermits {
+        private final Semaphore permits;
+        private final Queue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+
+        HostPermits(int maxConnections) {
+            this.permits = new Semaphore(Math.max(1, maxConnections));
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<Exchange<T>> call) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            waiters.add(() -> {
+                if (result.isCancelled()) {
+                    release();
+                    return;
+                }
+                Exchange<T> exchange;
+                try {
+                    exchange = call.get();
+                } catch (Throwable e) {
+                    release();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                // 调用方取消或自行设置的超时先到时中止请求；请求本身完成时此处不起作用
+                result.whenComplete((value, error) -> {
+                    if (error != null) {
+                        exchange.result.cancel(true);
+                    }
+                });
+                exchange.finished.whenComplete((value, error) -> release());
+                exchange.result.whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            });
+            drain();
+            return result;
+        }
+
+        private void release() {
+            permits.release();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiters.isEmpty() && permits.tryAcquire()) {
+                Runnable next = waiters.poll();
+                if (next == null) {
+                    permits.release();
+                } else {
+                    next.run();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 推理图片预处理
+ * 按模型的输入尺寸（ModelInfo.inputSize）在本地缩放并填充（letterbox）图片，重新编码为JPEG后再发往推理服务器，
+ * 高分辨率相机图片不再以原始大小上传。推理结果中的边界框按缩放比例和填充偏移映射回原图坐标，
+ * image_size恢复为原图尺寸。图片尺寸不超过模型输入尺寸时原样发送；无法解码的图片也原样发送。
+ * 分割掩码和可视化图片仍是缩放后图片上的结果，因此默认只对检测任务启用。
+ */
+@Component
+public class InferenceImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceImagePreprocessor.class);
+
+    private static final String OUTPUT_CONTENT_TYPE = "image/jpeg";
+
+    @Value("${ai.inference.preprocess.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 启用预处理的任务类型，逗号分隔
+     */
+    @Value("${ai.inference.preprocess.tasks:detect}")
+    private String tasksConfig;
+
+    @Value("${ai.inference.preprocess.jpeg-quality:0.9}")
+    private float jpegQuality;
+
+    /**
+     * 填充区域的灰度值
+     */
+    @Value("${ai.inference.preprocess.pad-value:114}")
+    private int padValue;
+
+    private final InferenceModelRegistry modelRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private Set<String> tasks = Set.of();
+    private Counter originalBytes;
+    private Counter sentBytes;
+    private Counter passedThrough;
+
+    public InferenceImagePreprocessor(InferenceModelRegistry modelRegistry, MeterRegistry meterRegistry) {
+        this.modelRegistry = modelRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Set<String> parsed = new HashSet<>();
+        for (String task : tasksConfig.split(",")) {
+            if (!task.isBlank()) {
+                parsed.add(task.trim());
+            }
+        }
+        tasks = parsed;
+        originalBytes = Counter.builder("ai.inference.preprocess.bytes").tag("stage", "original")
+                .baseUnit("bytes").register(meterRegistry);
+        sentBytes = Counter.builder("ai.inference.preprocess.bytes").tag("stage", "sent")
+                .baseUnit("bytes").register(meterRegistry);
+        passedThrough = Counter.builder("ai.inference.preprocess.passthrough").register(meterRegistry);
+    }
+
+    /**
+     * 指定模型和任务是否需要预处理
+     */
+    public boolean appliesTo(String modelName, String task) {
+        return targetSize(modelName, task) != null;
+    }
+
+    /**
+     * 预处理上传的图片文件
+     *
+     * @return 预处理后的图片；不需要或无法预处理时返回null，调用方原样发送
+     */
+    public Prepared prepare(String modelName, String task, InputStream image, long size) {
+        int[] target = targetSize(modelName, task);
+        if (target == null) {
+            return null;
+        }
+        try {
+            return prepare(image, size, target);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("图片预处理失败，原样发送: model={}, error={}", modelName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 预处理base64编码的图片
+     *
+     * @return 预处理后的图片；不需要或无法预处理时返回null，调用方原样发送
+     */
+    public Prepared prepareBase64(String modelName, String task, String imageData) {
+        int[] target = targetSize(modelName, task);
+        if (target == null || imageData == null) {
+            return null;
+        }
+        try {
+            int comma = imageData.startsWith("data:") ? imageData.indexOf(',') : -1;
+            byte[] bytes = Base64.getMimeDecoder().decode(comma >= 0 ? imageData.substring(comma + 1) : imageData);
+            return prepare(new ByteArrayInputStream(bytes), bytes.length, target);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("图片预处理失败，原样发送: model={}, error={}", modelName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 将推理结果中的坐标映射回原图
+     */
+    public void restore(AIInferenceDto.InferenceResponse response, Prepared prepared) {
+        if (response == null || prepared == null) {
+            return;
+        }
+        if (response.getDetections() != null) {
+            for (AIInferenceDto.DetectionResult detection : response.getDetections()) {
+                detection.setBbox(prepared.toOriginal(detection.getBbox()));
+            }
+        }
+        if (response.getSegmentations() != null) {
+            for (AIInferenceDto.SegmentationResult segmentation : response.getSegmentations()) {
+                segmentation.setBbox(prepared.toOriginal(segmentation.getBbox()));
+            }
+        }
+        response.setImageSize(List.of(prepared.originalWidth, prepared.originalHeight));
+    }
+
+    public void restore(List<AIInferenceDto.InferenceResponse> responses, List<Prepared> prepared) {
+        if (responses == null || prepared == null) {
+            return;
+        }
+        for (int i = 0; i < Math.min(responses.size(), prepared.size()); i++) {
+            restore(responses.get(i), prepared.get(i));
+        }
+    }
+
+    /**
+     * 模型输入尺寸 [width, height]；未启用、任务不适用或目录中没有输入尺寸时返回null
+     */
+    private int[] targetSize(String modelName, String task) {
+        if (!enabled || task == null || !tasks.contains(task)) {
+            return null;
+        }
+        List<Integer> inputSize = modelRegistry.findInputSize(modelName);
+        if (inputSize == null || inputSize.isEmpty() || inputSize.get(0) == null || inputSize.get(0) <= 0) {
+            return null;
+        }
+        int width = inputSize.get(0);
+        int height = inputSize.size() > 1 && inputSize.get(1) != null && inputSize.get(1) > 0 ? inputSize.get(1) : width;
+        return new int[]{width, height};
+    }
+
+    private Prepared prepare(InputStream image, long size, int[] target) throws IOException {
+        originalBytes.increment(size);
+        try (ImageInputStream input = new MemoryCacheImageInputStream(image)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return passThrough(size);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // 快速路径：只读取文件头，图片不大于模型输入尺寸时不解码
+                if (width <= target[0] && height <= target[1]) {
+                    return passThrough(size);
+                }
+
+                double scale = Math.min((double) target[0] / width, (double) target[1] / height);
+                // 缩小倍数较大时解码阶段先隔行采样，解码结果保持在目标尺寸的两倍以上再做双线性缩放
+                int subsampling = Math.max(1, (int) (1 / scale / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+                int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+                int padX = (target[0] - scaledWidth) / 2;
+                int padY = (target[1] - scaledHeight) / 2;
+
+                BufferedImage canvas = new BufferedImage(target[0], target[1], BufferedImage.TYPE_3BYTE_BGR);
+                Graphics2D graphics = canvas.createGraphics();
+                try {
+                    graphics.setColor(new Color(padValue, padValue, padValue));
+                    graphics.fillRect(0, 0, target[0], target[1]);
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.drawImage(decoded, padX, padY, scaledWidth, scaledHeight, null);
+                } finally {
+                    graphics.dispose();
+                }
+
+                byte[] encoded = encodeJpeg(canvas);
+                sentBytes.increment(encoded.length);
+                return new Prepared(encoded, width, height, scale, padX, padY);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Prepared passThrough(long size) {
+        sentBytes.increment(size);
+        passedThrough.increment();
+        return null;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 预处理后的图片及其到原图的坐标变换
+     */
+    public static class Prepared {
+        private final byte[] data;
+        private final int originalWidth;
+        private final int originalHeight;
+        private final double scale;
+        private final int padX;
+        private final int padY;
+
+        Prepared(byte[] data, int originalWidth, int originalHeight, double scale, int padX, int padY) {
+            this.data = data;
+            this.originalWidth = originalWidth;
+            this.originalHeight = originalHeight;
+            this.scale = scale;
+            this.padX = padX;
+            this.padY = padY;
+        }
+
+        public byte[] getData() { return data; }
+        public String getContentType() { return OUTPUT_CONTENT_TYPE; }
+
+        public String toBase64() {
+            return Base64.getEncoder().encodeToString(data);
+        }
+
+        /**
+         * [x1, y1, x2, y2] 从缩放填充后的坐标映射回原图坐标，并限制在原图范围内
+         */
+        List<Double> toOriginal(List<Double> bbox) {
+            if (bbox == null || bbox.size() < 4) {
+                return bbox;
+            }
+            List<Double> mapped = new ArrayList<>(bbox.size());
+            for (int i = 0; i < bbox.size(); i++) {
+                if (bbox.get(i) == null) {
+                    return bbox;
+                }
+                boolean isX = i % 2 == 0;
+                double value = (bbox.get(i) - (isX ? padX : padY)) / scale;
+                mapped.add(Math.min(Math.max(value, 0.0), isX ? originalWidth : originalHeight));
+            }
+            return mapped;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.vision.vision_platform_backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 推理调用优先级调度
+ * 发往推理服务器的调用按来源分为交互、批量、后台三条通道，共享一个并发调用上限。
+ * 有空闲名额时按权重公平选择下一条通道（步长调度：每发出一次调用，通道的进度增加 1/权重，
+ * 进度最小的非空通道优先）；每条通道可预留名额，其他通道不能占用，保证交互请求在大批量任务运行时
+ * 仍能立即发出。
+ */
+@Component
+public class InferenceLaneScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceLaneScheduler.class);
+
+    /**
+     * 调度通道
+     */
+    public enum Lane {
+        /**
+         * 操作员发起的单张推理
+         */
+        INTERACTIVE,
+        /**
+         * 同步批量推理
+         */
+        BATCH,
+        /**
+         * 异步批量任务等后台处理
+         */
+        BACKGROUND
+    }
+
+    @Value("${ai.inference.lanes.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.inference.lanes.max-concurrent:32}")
+    private int maxConcurrent;
+
+    @Value("${ai.inference.lanes.interactive.weight:8}")
+    private int interactiveWeight;
+
+    @Value("${ai.inference.lanes.interactive.reserved:8}")
+    private int interactiveReserved;
+
+    @Value("${ai.inference.lanes.batch.weight:3}")
+    private int batchWeight;
+
+    @Value("${ai.inference.lanes.batch.reserved:2}")
+    private int batchReserved;
+
+    @Value("${ai.inference.lanes.background.weight:1}")
+    private int backgroundWeight;
+
+    @Value("${ai.inference.lanes.background.reserved:0}")
+    private int backgroundReserved;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private int inFlight;
+
+    public InferenceLaneScheduler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        lanes.put(Lane.INTERACTIVE, new LaneState(Lane.INTERACTIVE, interactiveWeight, interactiveReserved));
+        lanes.put(Lane.BATCH, new LaneState(Lane.BATCH, batchWeight, batchReserved));
+        lanes.put(Lane.BACKGROUND, new LaneState(Lane.BACKGROUND, backgroundWeight, backgroundReserved));
+
+        int reserved = interactiveReserved + batchReserved + backgroundReserved;
+        if (reserved >= maxConcurrent) {
+            logger.warn("推理通道预留名额合计({})不小于并发上限({})，未预留名额的通道可能无法调度", reserved, maxConcurrent);
+        }
+    }
+
+    /**
+     * 在指定通道排队执行一次推理调用
+     * 返回的Future被取消时，尚未发出的调用不再发出
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        LaneState state = lanes.get(lane);
+        Task task = new Task(state, () -> {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            return future.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }, result);
+        synchronized (this) {
+            if (state.queue.isEmpty()) {
+                // 通道从空闲恢复时不能带着积攒的额度插队
+                state.pass = Math.max(state.pass, minActivePass());
+            }
+            state.queue.add(task);
+        }
+        drain();
+        return result;
+    }
+
+    /**
+     * 各通道状态
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("max_concurrent", maxConcurrent);
+        status.put("in_flight", inFlight);
+        List<Map<String, Object>> laneStatus = new ArrayList<>();
+        for (LaneState state : lanes.values()) {
+            Map<String, Object> lane = new HashMap<>();
+            lane.put("lane", state.lane.name().toLowerCase());
+            lane.put("weight", state.weight);
+            lane.put("reserved", state.reserved);
+            lane.put("queued", state.queue.size());
+            lane.put("in_flight", state.inFlight);
+            lane.put("dispatched", state.dispatched);
+            lane.put("queue_time_mean_ms", state.queueTime.mean(TimeUnit.MILLISECONDS));
+            lane.put("queue_time_max_ms", state.queueTime.max(TimeUnit.MILLISECONDS));
+            laneStatus.add(lane);
+        }
+        status.put("lanes", laneStatus);
+        return status;
+    }
+
+    /**
+     * 在名额允许的范围内依次发出各通道排队的调用
+     * 同一时间只有一个线程执行发出循环，调用同步完成时不会递归进入
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            Task next;
+            synchronized (this) {
+                next = pollNext();
+                if (next != null) {
+                    inFlight++;
+                    next.lane.inFlight++;
+                    next.lane.dispatched++;
+                    next.lane.pass += 1.0 / next.lane.weight;
+                }
+            }
+            if (next == null) {
+                missed = drainRequests.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+                continue;
+            }
+            next.lane.queueTime.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+            next.start().whenComplete((value, error) -> {
+                synchronized (this) {
+                    inFlight--;
+                    next.lane.inFlight--;
+                }
+                drain();
+            });
+        }
+    }
+
+    /**
+     * 选出下一个可以发出的调用：跳过已取消的调用，在有资格占用名额的通道中取进度最小的一个
+     */
+    private Task pollNext() {
+        if (inFlight >= maxConcurrent) {
+            return null;
+        }
+        LaneState chosen = null;
+        for (LaneState state : lanes.values()) {
+            while (!state.queue.isEmpty() && state.queue.peek().result.isDone()) {
+                state.queue.poll();
+            }
+            if (state.queue.isEmpty() || !mayDispatch(state)) {
+                continue;
+            }
+            if (chosen == null || state.pass < chosen.pass) {
+                chosen = state;
+            }
+        }
+        return chosen != null ? chosen.queue.poll() : null;
+    }
+
+    /**
+     * 通道未用满自己的预留名额时总可以发出；否则空闲名额须多于其他通道尚未用到的预留名额
+     */
+    private boolean mayDispatch(LaneState state) {
+        if (state.inFlight < state.reserved) {
+            return true;
+        }
+        int unusedReservations = 0;
+        for (LaneState other : lanes.values()) {
+            if (other != state) {
+                unusedReservations += Math.max(0, other.reserved - other.inFlight);
+            }
+        }
+        return maxConcurrent - inFlight > unusedReservations;
+    }
+
+    private double minActivePass() {
+        double min = Double.MAX_VALUE;
+        for (LaneState state : lanes.values()) {
+            if (!state.queue.isEmpty()) {
+                min = Math.min(min, state.pass);
+            }
+        }
+        return min == Double.MAX_VALUE ? 0.0 : min;
+    }
+
+    private class LaneState {
+        private final Lane lane;
+        private final int weight;
+        private final int reserved;
+        private final Queue<Task> queue = new ArrayDeque<>();
+        private final Timer queueTime;
+        private int inFlight;
+        private long dispatched;
+        private double pass;
+
+        LaneState(Lane lane, int weight, int reserved) {
+            this.lane = lane;
+            this.weight = Math.max(1, weight);
+            this.reserved = Math.max(0, reserved);
+            String tag = lane.name().toLowerCase();
+            this.queueTime = Timer.builder("ai.inference.lane.queue_time")
+                    .tag("lane", tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            Gauge.builder("ai.inference.lane.queued", this, s -> {
+                synchronized (InferenceLaneScheduler.this) {
+                    return s.queue.size();
+                }
+            }).tag("lane", tag).register(meterRegistry);
+            Gauge.builder("ai.inference.lane.inflight", this, s -> {
+                synchronized (InferenceLaneScheduler.this) {
+                    return s.inFlight;
+                }
+            }).tag("lane", tag).register(meterRegistry);
+        }
+    }
+
+    private static class Task {
+        private final LaneState lane;
+        private final Supplier<CompletableFuture<?>> starter;
+        private final CompletableFuture<?> result;
+        private final long enqueuedAt = System.nanoTime();
+
+        Task(LaneState lane, Supplier<CompletableFuture<?>> starter, CompletableFuture<?> result) {
+            this.lane = lane;
+            this.starter = starter;
+            this.result = result;
+        }
+
+        CompletableFuture<?> start() {
+            return starter.get();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地推理耗时统计
+ * 每次对推理服务器的调用按 模型/任务/节点 记录耗时直方图和成功失败次数：写入端使用HdrHistogram的Recorder，
+ * 无锁记录；读取时把区间直方图累加到累计直方图。统计保存在后端进程内，不随推理服务器重启丢失，
+ * 多节点的结果可以直接相加。耗时以微秒记录，对外以毫秒输出。
+ */
+@Component
+public class InferenceLatencyStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Micrometer读取分位数时复用的快照有效期
+     */
+    private static final long SNAPSHOT_TTL_MS = 1000;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MeterRegistry meterRegistry;
+    private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    private volatile long startTime = System.currentTimeMillis();
+    private volatile long lastRequestTime;
+
+    public InferenceLatencyStats(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录一次推理调用
+     *
+     * @param latencyNanos 调用耗时，批量调用记录整次调用的耗时
+     * @param images       本次调用处理的图片数，计入成功/失败次数
+     */
+    public void record(String modelName, String task, String endpoint, boolean success, long latencyNanos, int images) {
+        SeriesKey key = new SeriesKey(label(modelName), label(task), label(endpoint));
+        Series target = series.computeIfAbsent(key, this::newSeries);
+        if (success) {
+            long micros = Math.max(1, latencyNanos / 1000);
+            target.recorder.recordValue(micros);
+            target.totalMicros.add(micros);
+            target.calls.increment();
+            target.successes.add(images);
+        } else {
+            target.failures.add(images);
+        }
+        lastRequestTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 汇总统计，附带按模型、任务、节点分组的明细
+     */
+    public AIInferenceDto.InferenceStats getStats() {
+        Aggregate total = new Aggregate();
+        Map<String, Aggregate> byModel = new TreeMap<>();
+        Map<String, Aggregate> byTask = new TreeMap<>();
+        Map<String, Aggregate> byEndpoint = new TreeMap<>();
+        series.forEach((key, value) -> {
+            Histogram snapshot = value.snapshot();
+            total.add(value, snapshot);
+            byModel.computeIfAbsent(key.model, k -> new Aggregate()).add(value, snapshot);
+            byTask.computeIfAbsent(key.task, k -> new Aggregate()).add(value, snapshot);
+            byEndpoint.computeIfAbsent(key.endpoint, k -> new Aggregate()).add(value, snapshot);
+        });
+
+        AIInferenceDto.InferenceStats stats = new AIInferenceDto.InferenceStats();
+        stats.setTotalRequests(total.successes + total.failures);
+        stats.setSuccessfulRequests(total.successes);
+        stats.setFailedRequests(total.failures);
+        stats.setAverageInferenceTime(total.averageMs());
+        stats.setTotalInferenceTime(total.totalMicros / 1000.0);
+        stats.setP50InferenceTime(total.percentileMs(50));
+        stats.setP90InferenceTime(total.percentileMs(90));
+        stats.setP99InferenceTime(total.percentileMs(99));
+        stats.setP999InferenceTime(total.percentileMs(99.9));
+        stats.setStartTime(toDateTime(startTime));
+        stats.setLastRequestTime(lastRequestTime > 0 ? toDateTime(lastRequestTime) : null);
+        double minutes = Math.max(1.0 / 60, (System.currentTimeMillis() - startTime) / 60000.0);
+        stats.setRequestsPerMinute((total.successes + total.failures) / minutes);
+        stats.setByModel(summarize(byModel));
+        stats.setByTask(summarize(byTask));
+        stats.setByEndpoint(summarize(byEndpoint));
+        return stats;
+    }
+
+    /**
+     * 各模型累计的请求图片数（成功加失败）
+     */
+    public Map<String, Long> requestCountsByModel() {
+        Map<String, Long> counts = new HashMap<>();
+        series.forEach((key, value) -> counts.merge(key.model,
+                value.successes.sum() + value.failures.sum(), Long::sum));
+        return counts;
+    }
+
+    /**
+     * 清空统计，已注册的Micrometer指标保留并从零开始
+     */
+    public void reset() {
+        series.values().forEach(Series::reset);
+        startTime = System.currentTimeMillis();
+        lastRequestTime = 0;
+    }
+
+    private Series newSeries(SeriesKey key) {
+        Series created = new Series();
+        for (String outcome : new String[]{"success", "failure"}) {
+            LongAdder counter = outcome.equals("success") ? created.successes : created.failures;
+            FunctionCounter.builder("ai.inference.requests", counter, LongAdder::sum)
+                    .tag("model", key.model).tag("task", key.task).tag("endpoint", key.endpoint)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+        for (double quantile : QUANTILES) {
+            Gauge.builder("ai.inference.latency", created, s -> s.cachedPercentileMs(quantile * 100))
+                    .description("推理调用耗时分位数（毫秒）")
+                    .baseUnit("milliseconds")
+                    .tag("model", key.model).tag("task", key.task).tag("endpoint", key.endpoint)
+                    .tag("quantile", String.valueOf(quantile))
+                    .register(meterRegistry);
+        }
+        return created;
+    }
+
+    private static Map<String, AIInferenceDto.LatencySummary> summarize(Map<String, Aggregate> groups) {
+        Map<String, AIInferenceDto.LatencySummary> result = new TreeMap<>();
+        groups.forEach((name, aggregate) -> result.put(name, aggregate.toSummary()));
+        return result;
+    }
+
+    private static String label(String value) {
+        return value != null ? value : "unknown";
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private record SeriesKey(String model, String task, String endpoint) {
+    }
+
+    /**
+     * 单个 模型/任务/节点 组合的统计
+     */
+    private static class Series {
+        private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        private final Histogram accumulated = new Histogram(SIGNIFICANT_DIGITS);
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private Histogram interval;
+        private Histogram cached;
+        private long cachedAt;
+
+        /**
+         * 把Recorder中新记录的值并入累计直方图，返回累计直方图的副本
+         */
+        synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            accumulated.add(interval);
+            cached = accumulated.copy();
+            cachedAt = System.currentTimeMillis();
+            return cached;
+        }
+
+        synchronized double cachedPercentileMs(double percentile) {
+            Histogram histogram = cached != null && System.currentTimeMillis() - cachedAt < SNAPSHOT_TTL_MS
+                    ? cached : snapshot();
+            return histogram.getTotalCount() == 0 ? 0.0 : histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        synchronized void reset() {
+            recorder.reset();
+            accumulated.reset();
+            cached = null;
+            successes.reset();
+            failures.reset();
+            calls.reset();
+            totalMicros.reset();
+        }
+    }
+
+    /**
+     * 多个组合相加后的统计
+     */
+    private static class Aggregate {
+        private final Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+        private long successes;
+        private long failures;
+        private long calls;
+        private long totalMicros;
+
+        void add(Series series, Histogram snapshot) {
+            histogram.add(snapshot);
+            successes += series.successes.sum();
+            failures += series.failures.sum();
+            calls += series.calls.sum();
+            totalMicros += series.totalMicros.sum();
+        }
+
+        double averageMs() {
+            return calls == 0 ? 0.0 : totalMicros / 1000.0 / calls;
+        }
+
+        double percentileMs(double percentile) {
+            return histogram.getTotalCount() == 0 ? 0.0 : histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        AIInferenceDto.LatencySummary toSummary() {
+            AIInferenceDto.LatencySummary summary = new AIInferenceDto.LatencySummary();
+            summary.setTotalRequests(successes + failures);
+            summary.setSuccessfulRequests(successes);
+            summary.setFailedRequests(failures);
+            summary.setAverageInferenceTime(averageMs());
+            summary.setP50InferenceTime(percentileMs(50));
+            summary.setP90InferenceTime(percentileMs(90));
+            summary.setP99InferenceTime(percentileMs(99));
+            summary.setP999InferenceTime(percentileMs(99.9));
+            summary.setMaxInferenceTime(histogram.getTotalCount() == 0 ? 0.0 : histogram.getMaxValue() / 1000.0);
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.vision.vision_platform_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 推理请求微批聚合器
+ * 将参数相同（模型、任务、阈值）的并发推理请求合并为一次批量推理调用，
+ * 再把每条结果路由回对应调用方的Future。
+ *
+ * 聚合窗口随负载自适应：同组没有批次在途时请求立即发出，不会被单独扣留；
+ * 只有在途批次未返回期间到达的请求才会积攒，直到在途批次返回、
+ * 达到最大批量或等待超过窗口时间后一并发出。
+ * 聚合键包含调用方参数，分组在批次全部返回且没有待发送请求时移除，避免长期积累。
+ */
+@Component
+public class InferenceMicroBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceMicroBatcher.class);
+
+    @Value("${ai.inference.batching.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.inference.batching.window-ms:20}")
+    private long windowMs;
+
+    @Value("${ai.inference.batching.max-batch-size:16}")
+    private int maxBatchSize;
+
+    private final Map<String, BatchGroup> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-inference-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 提交一条请求
+     *
+     * @param key        聚合键，键相同的请求才会合并
+     * @param item       请求内容
+     * @param dispatcher 批量发送函数，返回的结果列表须与输入顺序一一对应
+     */
+    @SuppressWarnings("unchecked")
+    public <I, O> CompletableFuture<O> submit(String key, I item,
+                                              Function<List<I>, CompletableFuture<List<O>>> dispatcher) {
+        if (!enabled || maxBatchSize <= 1) {
+            return dispatcher.apply(List.of(item)).thenApply(results -> results.get(0));
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        // 取到的分组可能恰好已被移除，此时重新创建
+        while (true) {
+            BatchGroup group = groups.computeIfAbsent(key, k -> new BatchGroup(k,
+                    items -> (CompletableFuture<List<Object>>) (CompletableFuture<?>) dispatcher.apply((List<I>) items)));
+            if (group.add(item, future)) {
+                return (CompletableFuture<O>) future;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 同一聚合键下的待发送请求
+     */
+    private class BatchGroup {
+        private final String key;
+        private final Function<List<Object>, CompletableFuture<List<Object>>> dispatcher;
+        private final List<Object> pendingItems = new ArrayList<>();
+        private final List<CompletableFuture<Object>> pendingFutures = new ArrayList<>();
+        private int inFlight;
+        private ScheduledFuture<?> scheduledFlush;
+        private boolean retired;
+
+        BatchGroup(String key, Function<List<Object>, CompletableFuture<List<Object>>> dispatcher) {
+            this.key = key;
+            this.dispatcher = dispatcher;
+        }
+
+        /**
+         * @return 分组已移除时返回false，调用方需重新获取分组
+         */
+        boolean add(Object item, CompletableFuture<Object> future) {
+            boolean flushNow;
+            synchronized (this) {
+                if (retired) {
+                    return false;
+                }
+                pendingItems.add(item);
+                pendingFutures.add(future);
+                flushNow = inFlight == 0 || pendingItems.size() >= maxBatchSize;
+                if (!flushNow && scheduledFlush == null) {
+                    scheduledFlush = scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (flushNow) {
+                flush();
+            }
+            return true;
+        }
+
+        void flush() {
+            List<Object> items;
+            List<CompletableFuture<Object>> futures;
+            synchronized (this) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                if (pendingItems.isEmpty()) {
+                    return;
+                }
+                int size = Math.min(pendingItems.size(), maxBatchSize);
+                items = new ArrayList<>(pendingItems.subList(0, size));
+                futures = new ArrayList<>(pendingFutures.subList(0, size));
+                pendingItems.subList(0, size).clear();
+                pendingFutures.subList(0, size).clear();
+                if (!pendingItems.isEmpty()) {
+                    scheduledFlush = scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                }
+                inFlight++;
+            }
+
+            logger.debug("发送聚合推理批次: key={}, size={}", key, items.size());
+            CompletableFuture<List<Object>> call;
+            try {
+                call = dispatcher.apply(items);
+            } catch (Exception e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((results, error) -> {
+                for (int i = 0; i < futures.size(); i++) {
+                    if (error != null) {
+                        futures.get(i).completeExceptionally(error);
+                    } else if (results == null || results.size() <= i) {
+                        futures.get(i).completeExceptionally(
+                                new IllegalStateException("批量推理返回结果数量与请求数量不一致"));
+                    } else {
+                        futures.get(i).complete(results.get(i));
+                    }
+                }
+                onBatchCompleted();
+            });
+        }
+
+        private void onBatchCompleted() {
+            boolean hasPending;
+            synchronized (this) {
+                inFlight--;
+                hasPending = !pendingItems.isEmpty();
+                if (inFlight == 0 && !hasPending) {
+                    retired = true;
+                    groups.remove(key, this);
+                }
+            }
+            // 在途批次返回后立即发出期间积攒的请求
+            if (hasPending) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 推理服务器模型目录
+ * 在内存中保存模型列表、已加载模型（各节点的并集）和服务器配置，由后台定时刷新，
+ * 各节点的模型分布同步给节点路由；
+ * 加载/卸载模型和更新配置成功后直接更新本地目录。
+ * 本地修改会递增修改版本；开始拉取之后发生过本地修改的刷新结果已经过时，丢弃后重新拉取，
+ * 避免覆盖刚标记的加载/卸载状态和节点模型分布。
+ * 读取时总是先返回内存中的数据，数据过期则在后台重新拉取（stale-while-revalidate），
+ * 推理服务器变慢或不可用时继续使用最近一次成功拉取的目录。
+ */
+@Component
+public class InferenceModelRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceModelRegistry.class);
+
+    @Value("${ai.inference.models.refresh-interval-seconds:30}")
+    private long refreshIntervalSeconds;
+
+    @Value("${ai.inference.models.stale-after-seconds:15}")
+    private long staleAfterSeconds;
+
+    private final InferenceHttpClient inferenceClient;
+    private final InferenceEndpointRouter endpointRouter;
+
+    private volatile Catalogue catalogue;
+    private final AtomicReference<CompletableFuture<Catalogue>> refreshing = new AtomicReference<>();
+    private volatile boolean lastRefreshFailed;
+    private long mutationVersion;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-model-registry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InferenceModelRegistry(InferenceHttpClient inferenceClient, InferenceEndpointRouter endpointRouter) {
+        this.inferenceClient = inferenceClient;
+        this.endpointRouter = endpointRouter;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refreshAsync, 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 全部模型
+     */
+    public List<AIInferenceDto.ModelInfo> getModels() {
+        return current().models();
+    }
+
+    /**
+     * 指定模型，目录中没有时向推理服务器查询一次
+     */
+    public AIInferenceDto.ModelInfo getModel(String modelName) {
+        AIInferenceDto.ModelInfo model = current().byName.get(modelName);
+        if (model != null) {
+            return copyOf(model);
+        }
+        AIInferenceDto.ModelInfo fetched = join(inferenceClient.get(endpointRouter.primaryUrl() + "/models/" + modelName,
+                inferenceClient.type(AIInferenceDto.ModelInfo.class)));
+        if (fetched != null) {
+            update(snapshot -> snapshot.byName.putIfAbsent(modelName, copyOf(fetched)));
+        }
+        return fetched;
+    }
+
+    /**
+     * 目录中模型的输入尺寸 [width, height]，不向推理服务器查询；尚无目录或目录中没有该模型时返回null
+     */
+    public List<Integer> findInputSize(String modelName) {
+        Catalogue snapshot = catalogue;
+        if (snapshot == null) {
+            refreshAsync();
+            return null;
+        }
+        AIInferenceDto.ModelInfo model = modelName != null ? snapshot.byName.get(modelName) : null;
+        return model != null ? model.getInputSize() : null;
+    }
+
+    /**
+     * 已加载的模型
+     */
+    public List<AIInferenceDto.ModelInfo> getLoadedModels() {
+        Catalogue snapshot = current();
+        List<AIInferenceDto.ModelInfo> loaded = new ArrayList<>();
+        for (String name : snapshot.loaded) {
+            AIInferenceDto.ModelInfo model = snapshot.byName.get(name);
+            loaded.add(model != null ? copyOf(model) : named(name, true));
+        }
+        return loaded;
+    }
+
+    /**
+     * 推理服务器配置
+     */
+    public Map<String, Object> getConfig() {
+        return new LinkedHashMap<>(current().config);
+    }
+
+    /**
+     * 模型在指定节点加载成功后更新目录
+     */
+    public void markLoaded(String endpoint, String modelName) {
+        mutate(() -> endpointRouter.addModel(endpoint, modelName), snapshot -> {
+            AIInferenceDto.ModelInfo model = snapshot.byName.computeIfAbsent(modelName, name -> named(name, true));
+            model.setIsLoaded(true);
+            model.setLoadTime(LocalDateTime.now());
+            snapshot.loaded.add(modelName);
+        });
+        refreshAsync();
+    }
+
+    /**
+     * 模型在指定节点卸载成功后更新目录，其他节点仍加载该模型时保持已加载状态
+     */
+    public void markUnloaded(String endpoint, String modelName) {
+        mutate(() -> endpointRouter.removeModel(endpoint, modelName), snapshot -> {
+            if (!endpointRouter.endpointsWithModel(modelName).isEmpty()) {
+                return;
+            }
+            AIInferenceDto.ModelInfo model = snapshot.byName.get(modelName);
+            if (model != null) {
+                model.setIsLoaded(false);
+                model.setLoadTime(null);
+            }
+            snapshot.loaded.remove(modelName);
+        });
+        refreshAsync();
+    }
+
+    /**
+     * 配置更新成功后合并到本地配置
+     */
+    @SuppressWarnings("unchecked")
+    public void applyConfigUpdate(AIInferenceDto.ConfigUpdateRequest request) {
+        if (request.getValues() != null) {
+            mutate(() -> { }, snapshot -> {
+                if (request.getSection() == null) {
+                    snapshot.config.putAll(request.getValues());
+                    return;
+                }
+                Object section = snapshot.config.get(request.getSection());
+                Map<String, Object> merged = section instanceof Map
+                        ? new LinkedHashMap<>((Map<String, Object>) section) : new LinkedHashMap<>();
+                merged.putAll(request.getValues());
+                snapshot.config.put(request.getSection(), merged);
+            });
+        }
+        refreshAsync();
+    }
+
+    /**
+     * 目录状态
+     */
+    public Map<String, Object> getStatus() {
+        Catalogue snapshot = catalogue;
+        Map<String, Object> status = new HashMap<>();
+        status.put("initialized", snapshot != null);
+        status.put("refreshed_at", snapshot != null ? snapshot.refreshedAt : null);
+        status.put("age_ms", snapshot != null ? System.currentTimeMillis() - snapshot.refreshedAt : null);
+        status.put("model_count", snapshot != null ? snapshot.byName.size() : 0);
+        status.put("last_refresh_failed", lastRefreshFailed);
+        return status;
+    }
+
+    /**
+     * 在后台刷新目录
+     */
+    public void refreshAsync() {
+        refresh();
+    }
+
+    /**
+     * 拉取最新目录，已有刷新在进行时复用
+     */
+    private CompletableFuture<Catalogue> refresh() {
+        CompletableFuture<Catalogue> promise = new CompletableFuture<>();
+        CompletableFuture<Catalogue> existing = refreshing.compareAndExchange(null, promise);
+        if (existing != null) {
+            return existing;
+        }
+
+        long startVersion = currentVersion();
+        String primaryUrl = endpointRouter.primaryUrl();
+        CompletableFuture<List<AIInferenceDto.ModelInfo>> models = inferenceClient.get(primaryUrl + "/models",
+                inferenceClient.listType(AIInferenceDto.ModelInfo.class));
+        CompletableFuture<Map<String, Object>> config = inferenceClient.get(primaryUrl + "/config",
+                inferenceClient.mapType());
+
+        // 每个节点的已加载模型单独拉取，个别节点失败时保留其上一次的模型分布
+        List<String> endpointUrls = endpointRouter.getEndpointUrls();
+        List<CompletableFuture<List<AIInferenceDto.ModelInfo>>> loadedByEndpoint = new ArrayList<>();
+        for (String url : endpointUrls) {
+            loadedByEndpoint.add(inferenceClient.<List<AIInferenceDto.ModelInfo>>get(url + "/models/loaded",
+                            inferenceClient.listType(AIInferenceDto.ModelInfo.class))
+                    .thenApply(loaded -> {
+                        Set<String> names = new LinkedHashSet<>();
+                        if (loaded != null) {
+                            loaded.forEach(model -> names.add(model.getName()));
+                        }
+                        synchronized (this) {
+                            // 拉取开始后本地标记过加载/卸载时，节点分布以本地标记为准，等待下一次刷新
+                            if (mutationVersion == startVersion) {
+                                endpointRouter.updatePlacement(url, names);
+                            }
+                        }
+                        return loaded;
+                    })
+                    .exceptionally(error -> {
+                        logger.debug("拉取节点已加载模型失败: {}, {}", url, error.getMessage());
+                        return null;
+                    }));
+        }
+
+        List<CompletableFuture<?>> all = new ArrayList<>(loadedByEndpoint);
+        all.add(models);
+        all.add(config);
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            refreshing.set(null);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (!lastRefreshFailed) {
+                    logger.warn("刷新模型目录失败，继续使用缓存目录: {}", cause.getMessage());
+                } else {
+                    logger.debug("刷新模型目录失败: {}", cause.getMessage());
+                }
+                lastRefreshFailed = true;
+                promise.completeExceptionally(cause);
+                return;
+            }
+            Map<String, AIInferenceDto.ModelInfo> loaded = new LinkedHashMap<>();
+            for (CompletableFuture<List<AIInferenceDto.ModelInfo>> endpointLoaded : loadedByEndpoint) {
+                List<AIInferenceDto.ModelInfo> list = endpointLoaded.join();
+                if (list != null) {
+                    list.forEach(model -> loaded.putIfAbsent(model.getName(), model));
+                }
+            }
+            for (String url : endpointUrls) {
+                endpointRouter.loadedModels(url).forEach(name -> loaded.putIfAbsent(name, named(name, true)));
+            }
+            Catalogue fresh = new Catalogue(models.join(), new ArrayList<>(loaded.values()), config.join(),
+                    System.currentTimeMillis());
+            boolean outdated;
+            synchronized (this) {
+                outdated = mutationVersion != startVersion && catalogue != null;
+                if (!outdated) {
+                    catalogue = fresh;
+                }
+            }
+            if (outdated) {
+                logger.debug("模型目录拉取期间有本地修改，丢弃本次结果并重新拉取");
+                promise.complete(catalogue);
+                refreshAsync();
+                return;
+            }
+            if (lastRefreshFailed) {
+                logger.info("模型目录已恢复刷新: models={}", fresh.byName.size());
+            }
+            lastRefreshFailed = false;
+            promise.complete(fresh);
+        });
+        return promise;
+    }
+
+    /**
+     * 当前目录；过期时触发后台刷新，尚无目录时同步等待首次拉取
+     */
+    private Catalogue current() {
+        Catalogue snapshot = catalogue;
+        if (snapshot == null) {
+            return join(refresh());
+        }
+        if (System.currentTimeMillis() - snapshot.refreshedAt > staleAfterSeconds * 1000) {
+            refreshAsync();
+        }
+        return snapshot;
+    }
+
+    private synchronized long currentVersion() {
+        return mutationVersion;
+    }
+
+    /**
+     * 本地标记：在同一把锁内修改节点路由和目录并递增修改版本，与刷新结果的写入互斥
+     */
+    private synchronized void mutate(Runnable routerChange, Consumer<Catalogue> mutation) {
+        mutationVersion++;
+        routerChange.run();
+        update(mutation);
+    }
+
+    /**
+     * 以写时复制方式修改目录
+     */
+    private synchronized void update(Consumer<Catalogue> mutation) {
+        Catalogue snapshot = catalogue;
+        if (snapshot == null) {
+            return;
+        }
+        Catalogue copy = snapshot.copy();
+        mutation.accept(copy);
+        catalogue = copy;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    private static AIInferenceDto.ModelInfo named(String name, boolean loaded) {
+        AIInferenceDto.ModelInfo model = new AIInferenceDto.ModelInfo();
+        model.setName(name);
+        model.setIsLoaded(loaded);
+        return model;
+    }
+
+    private static AIInferenceDto.ModelInfo copyOf(AIInferenceDto.ModelInfo source) {
+        AIInferenceDto.ModelInfo model = new AIInferenceDto.ModelInfo();
+        model.setName(source.getName());
+        model.setType(source.getType());
+        model.setDescription(source.getDescription());
+        model.setVersion(source.getVersion());
+        model.setInputSize(source.getInputSize());
+        model.setClassNames(source.getClassNames());
+        model.setIsLoaded(source.getIsLoaded());
+        model.setLoadTime(source.getLoadTime());
+        model.setModelSize(source.getModelSize());
+        return model;
+    }
+
+    /**
+     * 某一时刻的模型目录
+     */
+    private static class Catalogue {
+        private final Map<String, AIInferenceDto.ModelInfo> byName;
+        private final Set<String> loaded;
+        private final Map<String, Object> config;
+        private final long refreshedAt;
+
+        private Catalogue(Map<String, AIInferenceDto.ModelInfo> byName, Set<String> loaded,
+                          Map<String, Object> config, long refreshedAt) {
+            this.byName = byName;
+            this.loaded = loaded;
+            this.config = config;
+            this.refreshedAt = refreshedAt;
+        }
+
+        Catalogue(List<AIInferenceDto.ModelInfo> models, List<AIInferenceDto.ModelInfo> loadedModels,
+                  Map<String, Object> config, long refreshedAt) {
+            this(new LinkedHashMap<>(), new LinkedHashSet<>(),
+                    config != null ? new LinkedHashMap<>(config) : new LinkedHashMap<>(), refreshedAt);
+            if (loadedModels != null) {
+                for (AIInferenceDto.ModelInfo model : loadedModels) {
+                    loaded.add(model.getName());
+                    byName.put(model.getName(), copyOf(model));
+                }
+            }
+            if (models != null) {
+                for (AIInferenceDto.ModelInfo model : models) {
+                    AIInferenceDto.ModelInfo entry = copyOf(model);
+                    entry.setIsLoaded(loaded.contains(model.getName()));
+                    AIInferenceDto.ModelInfo fromLoaded = byName.get(model.getName());
+                    if (fromLoaded != null && entry.getLoadTime() == null) {
+                        entry.setLoadTime(fromLoaded.getLoadTime());
+                    }
+                    byName.put(model.getName(), entry);
+                }
+            }
+        }
+
+        private Catalogue copy() {
+            Map<String, AIInferenceDto.ModelInfo> models = new LinkedHashMap<>();
+            byName.forEach((name, model) -> models.put(name, copyOf(model)));
+            return new Catalogue(models, new LinkedHashSet<>(loaded), new LinkedHashMap<>(config), refreshedAt);
+        }
+
+        private List<AIInferenceDto.ModelInfo> models() {
+            List<AIInferenceDto.ModelInfo> models = new ArrayList<>(byName.size());
+            byName.values().forEach(model -> models.add(copyOf(model)));
+            return models;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.vision.vision_platform_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 推理请求对冲
+ * 单张推理在模型近期耗时的p95内没有返回时，向另一个健康节点发送相同请求，取先成功的结果并取消另一个。
+ * 对冲请求占用令牌预算：每个普通请求积累 budget-percent% 个令牌，每次对冲消耗一个，
+ * 保证对冲带来的额外负载不超过设定比例。
+ */
+@Component
+public class InferenceRequestHedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceRequestHedger.class);
+
+    /**
+     * 每个模型保留的耗时样本数
+     */
+    private static final int LATENCY_SAMPLES = 256;
+
+    /**
+     * 令牌预算上限，允许短时间内的少量突发对冲
+     */
+    private static final double MAX_BUDGET_TOKENS = 10.0;
+
+    @Value("${ai.inference.hedging.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 启用对冲的模型，逗号分隔，为空表示全部模型；
+     * 写作 模型名:毫秒 时该模型使用固定的对冲延迟，不按耗时分位数计算
+     */
+    @Value("${ai.inference.hedging.models:}")
+    private String models;
+
+    @Value("${ai.inference.hedging.percentile:0.95}")
+    private double percentile;
+
+    /**
+     * 模型积累到该样本数之前不做对冲
+     */
+    @Value("${ai.inference.hedging.min-samples:20}")
+    private int minSamples;
+
+    @Value("${ai.inference.hedging.min-delay-ms:20}")
+    private long minDelayMs;
+
+    @Value("${ai.inference.hedging.budget-percent:5}")
+    private double budgetPercent;
+
+    private final InferenceEndpointRouter endpointRouter;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Long> fixedDelays = new HashMap<>();
+    private boolean allModels;
+    private final Map<String, ModelHedging> modelStates = new ConcurrentHashMap<>();
+    private double budgetTokens = MAX_BUDGET_TOKENS;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-inference-hedger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InferenceRequestHedger(InferenceEndpointRouter endpointRouter, MeterRegistry meterRegistry) {
+        this.endpointRouter = endpointRouter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String entry : models.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.lastIndexOf(':');
+            if (separator > 0) {
+                fixedDelays.put(trimmed.substring(0, separator).trim(),
+                        Long.parseLong(trimmed.substring(separator + 1).trim()));
+            } else {
+                fixedDelays.put(trimmed, null);
+            }
+        }
+        allModels = fixedDelays.isEmpty();
+        if (enabled) {
+            logger.info("推理请求对冲已启用, 模型: {}, 预算: {}%", allModels ? "全部" : fixedDelays.keySet(), budgetPercent);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 路由一次调用，必要时对冲到另一个节点
+     *
+     * @param modelName 目标模型
+     * @param call      以节点地址为参数发起调用，返回的Future被取消时应中止该调用
+     */
+    public <T> CompletableFuture<InferenceEndpointRouter.Routed<T>> route(
+            String modelName, Function<String, CompletableFuture<T>> call) {
+        if (!enabled || modelName == null || !(allModels || fixedDelays.containsKey(modelName))) {
+            return endpointRouter.route(modelName, call);
+        }
+
+        ModelHedging state = modelStates.computeIfAbsent(modelName, this::newModelHedging);
+        depositBudget();
+        long delayMs = state.hedgeDelayMs();
+
+        Attempt<T> primary = new Attempt<>(call);
+        long start = System.nanoTime();
+        // 每个请求只记录一个耗时样本
+        AtomicBoolean sampled = new AtomicBoolean();
+        CompletableFuture<InferenceEndpointRouter.Routed<T>> primaryFuture = endpointRouter.route(modelName, primary);
+        primaryFuture.whenComplete((routed, error) -> {
+            if (error == null && sampled.compareAndSet(false, true)) {
+                state.record((System.nanoTime() - start) / 1_000_000);
+            }
+        });
+        if (delayMs < 0) {
+            return primaryFuture;
+        }
+
+        CompletableFuture<InferenceEndpointRouter.Routed<T>> result = new CompletableFuture<>();
+        AtomicReference<Attempt<T>> hedge = new AtomicReference<>();
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (result.isDone() || primary.endpoint == null) {
+                return;
+            }
+            if (!withdrawBudget()) {
+                state.budgetExhausted.increment();
+                return;
+            }
+            Attempt<T> secondary = new Attempt<>(call);
+            CompletableFuture<InferenceEndpointRouter.Routed<T>> hedgeFuture =
+                    endpointRouter.routeAvoiding(modelName, primary.endpoint, secondary);
+            if (hedgeFuture == null) {
+                refundBudget();
+                return;
+            }
+            hedge.set(secondary);
+            state.sent.increment();
+            logger.debug("推理请求超过{}ms未返回，对冲到其他节点: 模型={}, 原节点={}",
+                    delayMs, modelName, primary.endpoint);
+            hedgeFuture.whenComplete((routed, error) -> {
+                if (error == null) {
+                    if (result.complete(routed)) {
+                        state.wins.increment();
+                        // 被取消的原请求正是慢的那部分，按已耗时记为截尾样本（实际耗时不小于此值），
+                        // 否则分位数只统计较快的请求而持续下降
+                        if (sampled.compareAndSet(false, true)) {
+                            state.record((System.nanoTime() - start) / 1_000_000);
+                        }
+                        primary.cancel();
+                    }
+                } else if (!firstError.compareAndSet(null, error) || primaryFuture.isDone()) {
+                    result.completeExceptionally(firstError.get());
+                }
+            });
+        }, delayMs, TimeUnit.MILLISECONDS);
+
+        primaryFuture.whenComplete((routed, error) -> {
+            if (error == null) {
+                timer.cancel(false);
+                if (result.complete(routed)) {
+                    Attempt<T> secondary = hedge.get();
+                    if (secondary != null) {
+                        secondary.cancel();
+                    }
+                }
+                return;
+            }
+            // 对冲请求仍在进行时等待其结果，否则直接失败
+            Attempt<T> secondary = hedge.get();
+            if (secondary == null) {
+                timer.cancel(false);
+                result.completeExceptionally(error);
+            } else if (!firstError.compareAndSet(null, error)) {
+                result.completeExceptionally(firstError.get());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 各模型的对冲状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("budget_percent", budgetPercent);
+        synchronized (this) {
+            status.put("budget_tokens", budgetTokens);
+        }
+        Map<String, Object> perModel = new HashMap<>();
+        modelStates.forEach((name, state) -> {
+            Map<String, Object> model = new HashMap<>();
+            model.put("hedge_delay_ms", state.hedgeDelayMs());
+            model.put("samples", state.sampleCount());
+            model.put("hedges_sent", (long) state.sent.count());
+            model.put("hedge_wins", (long) state.wins.count());
+            model.put("budget_exhausted", (long) state.budgetExhausted.count());
+            perModel.put(name, model);
+        });
+        status.put("models", perModel);
+        return status;
+    }
+
+    private ModelHedging newModelHedging(String modelName) {
+        return new ModelHedging(fixedDelays.get(modelName),
+                Counter.builder("ai.inference.hedge.sent").tag("model", modelName).register(meterRegistry),
+                Counter.builder("ai.inference.hedge.wins").tag("model", modelName).register(meterRegistry),
+                Counter.builder("ai.inference.hedge.budget_exhausted").tag("model", modelName).register(meterRegistry));
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + budgetPercent / 100.0);
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budgetTokens < 1.0) {
+            return false;
+        }
+        budgetTokens -= 1.0;
+        return true;
+    }
+
+    private synchronized void refundBudget() {
+        budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + 1.0);
+    }
+
+    /**
+     * 一次发往某个节点的调用，记录节点地址和底层Future以便取消
+     */
+    private static class Attempt<T> implements Function<String, CompletableFuture<T>> {
+        private final Function<String, CompletableFuture<T>> call;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile String endpoint;
+        private volatile CompletableFuture<T> future;
+
+        Attempt(Function<String, CompletableFuture<T>> call) {
+            this.call = call;
+        }
+
+        @Override
+        public CompletableFuture<T> apply(String url) {
+            endpoint = url;
+            CompletableFuture<T> sent = call.apply(url);
+            future = sent;
+            if (cancelled.get()) {
+                sent.cancel(true);
+            }
+            return sent;
+        }
+
+        void cancel() {
+            cancelled.set(true);
+            CompletableFuture<T> sent = future;
+            if (sent != null) {
+                sent.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 单个模型的耗时样本和对冲计数
+     */
+    private class ModelHedging {
+        private final Long fixedDelayMs;
+        private final Counter sent;
+        private final Counter wins;
+        private final Counter budgetExhausted;
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int position;
+        private int count;
+        private long cachedDelayMs = -1;
+        private int samplesSinceComputed;
+
+        ModelHedging(Long fixedDelayMs, Counter sent, Counter wins, Counter budgetExhausted) {
+            this.fixedDelayMs = fixedDelayMs;
+            this.sent = sent;
+            this.wins = wins;
+            this.budgetExhausted = budgetExhausted;
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[position] = latencyMs;
+            position = (position + 1) % LATENCY_SAMPLES;
+            count = Math.min(count + 1, LATENCY_SAMPLES);
+            samplesSinceComputed++;
+        }
+
+        synchronized int sampleCount() {
+            return count;
+        }
+
+        /**
+         * 对冲延迟，样本不足时返回-1表示不对冲；分位数每积累一定样本后重新计算
+         */
+        synchronized long hedgeDelayMs() {
+            if (fixedDelayMs != null) {
+                return fixedDelayMs;
+            }
+            if (count < minSamples) {
+                return -1;
+            }
+            if (cachedDelayMs < 0 || samplesSinceComputed >= 16) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.min(count - 1, Math.ceil(percentile * count) - 1);
+                cachedDelayMs = Math.max(minDelayMs, sorted[Math.max(0, index)]);
+                samplesSinceComputed = 0;
+            }
+            return cachedDelayMs;
+        }
+    }
+}
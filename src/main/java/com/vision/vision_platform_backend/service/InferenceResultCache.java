@@ -0,0 +1,256 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 推理结果缓存
+ * 以图片内容哈希和推理参数为键缓存成功的推理结果，
+ * 按条目数和估算内存占用做LRU淘汰，条目超过TTL后失效，模型重新加载或卸载时按模型失效。
+ * 每个模型维护一个代数，失效时加一；请求开始时取得代数，写入时代数已变化说明结果来自失效前的模型，丢弃不缓存
+ */
+@Component
+public class InferenceResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(InferenceResultCache.class);
+
+    @Value("${ai.inference.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.inference.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${ai.inference.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${ai.inference.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+    private final Map<String, Long> modelGenerations = new HashMap<>();
+    private long globalGeneration;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    public InferenceResultCache(MeterRegistry meterRegistry) {
+        this.hitCounter = Counter.builder("ai.inference.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("ai.inference.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictionCounter = Counter.builder("ai.inference.cache.evictions").register(meterRegistry);
+        Gauge.builder("ai.inference.cache.size", this, InferenceResultCache::size).register(meterRegistry);
+        Gauge.builder("ai.inference.cache.weight.bytes", this, InferenceResultCache::weight).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 构造缓存键
+     */
+    public String key(String imageHash, String modelName, String task, Double confidenceThreshold,
+                      Double nmsThreshold, Integer maxDetections, Boolean returnVisualization) {
+        return imageHash + "|" + modelName + "|" + task + "|" + confidenceThreshold + "|" + nmsThreshold + "|"
+                + maxDetections + "|" + returnVisualization;
+    }
+
+    /**
+     * 查询缓存，同时记录命中/未命中
+     */
+    public synchronized Optional<AIInferenceDto.InferenceResponse> get(String key) {
+        if (!enabled || key == null) {
+            return Optional.empty();
+        }
+        CacheEntry entry = entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+        hitCounter.increment();
+        return Optional.of(entry.response);
+    }
+
+    /**
+     * 模型当前的缓存代数，须在发起推理前取得，写入缓存时传回
+     * 未指定模型名的请求由服务器默认模型处理，任何模型失效都会改变其代数
+     */
+    public synchronized long generation(String modelName) {
+        return modelName == null ? globalGeneration : modelGenerations.getOrDefault(modelName, 0L);
+    }
+
+    /**
+     * 写入缓存，只缓存成功的结果；请求开始后模型已失效的结果不写入
+     */
+    public synchronized void put(String key, String modelName, long generation, AIInferenceDto.InferenceResponse response) {
+        if (!enabled || key == null || response == null || !Boolean.TRUE.equals(response.getSuccess())) {
+            return;
+        }
+        if (generation != generation(modelName)) {
+            return;
+        }
+        long weight = estimateWeight(response);
+        if (weight > maxWeightBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new CacheEntry(response, modelName, weight,
+                System.currentTimeMillis() + ttlSeconds * 1000));
+        totalWeight += weight;
+
+        Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeightBytes) && iterator.hasNext()) {
+            CacheEntry eldest = iterator.next().getValue();
+            iterator.remove();
+            totalWeight -= eldest.weight;
+            evictionCounter.increment();
+        }
+    }
+
+    /**
+     * 使指定模型的缓存失效
+     * 未指定模型名的请求由服务器默认模型处理，也一并失效
+     */
+    public synchronized void invalidateModel(String modelName) {
+        globalGeneration++;
+        if (modelName != null) {
+            modelGenerations.merge(modelName, 1L, Long::sum);
+        }
+        int before = entries.size();
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CacheEntry entry = iterator.next();
+            if (entry.modelName == null || Objects.equals(entry.modelName, modelName)) {
+                iterator.remove();
+                totalWeight -= entry.weight;
+            }
+        }
+        logger.info("推理结果缓存已按模型失效: model={}, removed={}", modelName, before - entries.size());
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        double hits = hitCounter.count();
+        double misses = missCounter.count();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("weight_bytes", totalWeight);
+        stats.put("hits", (long) hits);
+        stats.put("misses", (long) misses);
+        stats.put("evictions", (long) evictionCounter.count());
+        stats.put("hit_rate", hits + misses > 0 ? hits / (hits + misses) : 0.0);
+        return stats;
+    }
+
+    /**
+     * 计算输入流内容的SHA-256，流式读取，不保留完整副本
+     */
+    public static String sha256(InputStream inputStream) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 计算base64图片解码后内容的SHA-256，兼容data URI前缀
+     */
+    public static String sha256OfBase64(String imageData) {
+        if (imageData == null) {
+            return null;
+        }
+        int comma = imageData.indexOf("base64,");
+        String payload = comma >= 0 ? imageData.substring(comma + 7) : imageData;
+        try {
+            return HexFormat.of().formatHex(newDigest().digest(Base64.getMimeDecoder().decode(payload)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized long weight() {
+        return totalWeight;
+    }
+
+    private void remove(String key) {
+        CacheEntry removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    /**
+     * 粗略估算缓存条目占用的内存
+     */
+    private static long estimateWeight(AIInferenceDto.InferenceResponse response) {
+        long weight = 512;
+        if (response.getVisualizationImage() != null) {
+            weight += response.getVisualizationImage().length() * 2L;
+        }
+        if (response.getDetections() != null) {
+            weight += response.getDetections().size() * 160L;
+        }
+        if (response.getSegmentations() != null) {
+            for (AIInferenceDto.SegmentationResult segmentation : response.getSegmentations()) {
+                weight += 160L + (segmentation.getMask() != null ? segmentation.getMask().length() * 2L : 0);
+            }
+        }
+        return weight;
+    }
+
+    private static class CacheEntry {
+        private final AIInferenceDto.InferenceResponse response;
+        private final String modelName;
+        private final long weight;
+        private final long expiresAt;
+
+        CacheEntry(AIInferenceDto.InferenceResponse response, String modelName, long weight, long expiresAt) {
+            this.response = response;
+            this.modelName = modelName;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
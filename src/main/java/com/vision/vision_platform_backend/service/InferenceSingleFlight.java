@@ -0,0 +1,84 @@
+package com.vision.vision_platform_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 进行中推理请求合并
+ * 图片内容和推理参数相同的请求在前一个尚未完成时直接共享其结果，不再重复调用推理服务器。
+ * 只合并同一时刻进行中的调用，调用完成（无论成功失败）后立即移除，之后的请求重新发起；
+ * 与结果缓存不同，失败结果同样由等待中的请求共享。
+ */
+@Component
+public class InferenceSingleFlight {
+
+    @Value("${ai.inference.single-flight.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaderCounter;
+    private final Counter joinedCounter;
+
+    public InferenceSingleFlight(MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder("ai.inference.single_flight.requests").tag("role", "leader")
+                .register(meterRegistry);
+        this.joinedCounter = Counter.builder("ai.inference.single_flight.requests").tag("role", "joined")
+                .register(meterRegistry);
+        Gauge.builder("ai.inference.single_flight.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 执行调用，相同键的调用进行中时共享其结果
+     * 返回的Future是共享结果的副本，取消它不影响其他等待者
+     */
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        if (!enabled || key == null) {
+            return call.get();
+        }
+        CompletableFuture<T> promise = new CompletableFuture<>();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            joinedCounter.increment();
+            return existing.copy();
+        }
+
+        leaderCounter.increment();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            inFlight.remove(key, promise);
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(value);
+            }
+        });
+        return promise.copy();
+    }
+
+    public Map<String, Object> getStatus() {
+        return Map.of(
+                "enabled", enabled,
+                "in_flight", inFlight.size(),
+                "leaders", (long) leaderCounter.count(),
+                "joined", (long) joinedCounter.count()
+        );
+    }
+}
@@ -0,0 +1,405 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import com.vision.vision_platform_backend.repository.InferenceHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型驻留管理
+ * 根据推理历史（各模型总使用次数、按小时的使用分布）和实时请求量估计每个模型的需求：
+ * 需求达到阈值的模型视为热门，保证至少在一个节点上已加载；历史上在即将到来的时段有高峰的模型提前加载预热。
+ * 每个节点按 ModelInfo.modelSize 计算内存占用，不超过预算；空间不足时按最近使用时间从早到晚卸载非热门模型。
+ * 所有加载、卸载和放弃的决定都保留记录，可通过接口查看。
+ * 默认关闭：modelSize 是模型文件大小而非实际常驻内存，需按节点实际情况设置内存预算后再开启。
+ */
+@Service
+public class ModelResidencyManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelResidencyManager.class);
+
+    private static final int MAX_DECISIONS = 200;
+    private static final double LIVE_RATE_SMOOTHING = 0.3;
+
+    @Value("${ai.inference.residency.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.inference.residency.interval-seconds:60}")
+    private long intervalSeconds;
+
+    /**
+     * 单个节点可用于加载模型的内存预算
+     */
+    @Value("${ai.inference.residency.memory-budget-mb:4096}")
+    private long memoryBudgetMb;
+
+    /**
+     * 每分钟请求数达到该值的模型视为热门
+     */
+    @Value("${ai.inference.residency.hot-requests-per-minute:0.5}")
+    private double hotRequestsPerMinute;
+
+    /**
+     * 预热提前量：按该时间之后所在小时的历史请求量判断是否需要预热
+     */
+    @Value("${ai.inference.residency.prewarm-minutes:30}")
+    private long prewarmMinutes;
+
+    /**
+     * 统计按小时使用分布时回溯的天数
+     */
+    @Value("${ai.inference.residency.history-days:14}")
+    private int historyDays;
+
+    @Value("${ai.inference.residency.profile-refresh-minutes:60}")
+    private long profileRefreshMinutes;
+
+    private final AIInferenceService aiInferenceService;
+    private final InferenceModelRegistry modelRegistry;
+    private final InferenceEndpointRouter endpointRouter;
+    private final InferenceLatencyStats latencyStats;
+    private final InferenceHistoryRepository inferenceHistoryRepository;
+
+    private final Map<String, ModelDemand> demands = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> decisions = new ArrayDeque<>();
+    private volatile long profileLoadedAt;
+    private volatile LocalDateTime lastEvaluatedAt;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-model-residency");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ModelResidencyManager(AIInferenceService aiInferenceService,
+                                 InferenceModelRegistry modelRegistry,
+                                 InferenceEndpointRouter endpointRouter,
+                                 InferenceLatencyStats latencyStats,
+                                 InferenceHistoryRepository inferenceHistoryRepository) {
+        this.aiInferenceService = aiInferenceService;
+        this.modelRegistry = modelRegistry;
+        this.endpointRouter = endpointRouter;
+        this.latencyStats = latencyStats;
+        this.inferenceHistoryRepository = inferenceHistoryRepository;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::evaluateSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 驻留状态：预算、各节点占用、各模型需求及最近的决定
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", enabled);
+        status.put("memory_budget_mb", memoryBudgetMb);
+        status.put("hot_requests_per_minute", hotRequestsPerMinute);
+        status.put("last_evaluated_at", lastEvaluatedAt);
+
+        Map<String, Long> sizes = modelSizes(catalogue());
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        for (String url : endpointRouter.getEndpointUrls()) {
+            Map<String, Object> node = new HashMap<>();
+            node.put("url", url);
+            node.put("loaded_models", endpointRouter.loadedModels(url));
+            node.put("used_bytes", usedBytes(url, sizes));
+            nodes.add(node);
+        }
+        status.put("nodes", nodes);
+
+        List<Map<String, Object>> models = new ArrayList<>();
+        int hour = upcomingHour();
+        demands.forEach((name, demand) -> {
+            Map<String, Object> model = new HashMap<>();
+            model.put("model_name", name);
+            model.put("model_size", sizes.get(name));
+            model.put("live_requests_per_minute", demand.liveRate);
+            model.put("predicted_requests_per_minute", demand.predictedRate(hour, historyDays));
+            model.put("history_count", demand.historyCount);
+            model.put("last_used_at", demand.lastUsedAt > 0 ? toDateTime(demand.lastUsedAt) : null);
+            model.put("hot", isHot(demand, hour));
+            models.add(model);
+        });
+        status.put("models", models);
+        synchronized (decisions) {
+            status.put("decisions", new ArrayList<>(decisions));
+        }
+        return status;
+    }
+
+    private void evaluateSafely() {
+        try {
+            evaluate();
+        } catch (Exception e) {
+            logger.error("模型驻留评估失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 一次评估：更新需求，保证热门模型已加载，预算超出时卸载冷门模型
+     */
+    void evaluate() {
+        long now = System.currentTimeMillis();
+        if (now - profileLoadedAt >= TimeUnit.MINUTES.toMillis(profileRefreshMinutes)) {
+            loadHistoryProfile();
+            profileLoadedAt = now;
+        }
+        updateLiveRates(now);
+
+        List<AIInferenceDto.ModelInfo> catalogue = catalogue();
+        if (catalogue.isEmpty()) {
+            return;
+        }
+        Map<String, Long> sizes = modelSizes(catalogue);
+        int hour = upcomingHour();
+        long budget = memoryBudgetMb * 1024 * 1024;
+
+        List<String> hotModels = new ArrayList<>();
+        for (AIInferenceDto.ModelInfo model : catalogue) {
+            ModelDemand demand = demands.computeIfAbsent(model.getName(), k -> new ModelDemand());
+            if (isHot(demand, hour)) {
+                hotModels.add(model.getName());
+            }
+        }
+        hotModels.sort(Comparator.comparingDouble((String name) -> demands.get(name).score(hour, historyDays))
+                .thenComparingLong(name -> demands.get(name).historyCount)
+                .reversed());
+
+        for (String modelName : hotModels) {
+            if (!endpointRouter.endpointsWithModel(modelName).isEmpty()) {
+                continue;
+            }
+            ensureLoaded(modelName, hotModels, sizes, budget, hour);
+        }
+
+        for (String url : endpointRouter.getEndpointUrls()) {
+            if (usedBytes(url, sizes) > budget) {
+                evictUntilFits(url, 0, hotModels, sizes, budget, "超出内存预算");
+            }
+        }
+        lastEvaluatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * 在剩余空间最多的可用节点加载模型，空间不足时先卸载该节点上最久未使用的非热门模型
+     */
+    private void ensureLoaded(String modelName, List<String> hotModels, Map<String, Long> sizes, long budget, int hour) {
+        long size = sizes.getOrDefault(modelName, 0L);
+        String target = null;
+        long targetFree = Long.MIN_VALUE;
+        for (String url : endpointRouter.getEndpointUrls()) {
+            if (!endpointRouter.isAvailable(url)) {
+                continue;
+            }
+            long free = budget - usedBytes(url, sizes);
+            if (free > targetFree) {
+                target = url;
+                targetFree = free;
+            }
+        }
+        if (target == null) {
+            record("SKIP", modelName, null, "没有可用的推理节点");
+            return;
+        }
+        if (targetFree < size && !evictUntilFits(target, size, hotModels, sizes, budget, "为热门模型腾出空间: " + modelName)) {
+            record("SKIP", modelName, target, "内存预算不足");
+            return;
+        }
+
+        ModelDemand demand = demands.get(modelName);
+        String reason = demand.liveRate >= hotRequestsPerMinute
+                ? String.format("热门模型，实时请求 %.2f/分钟", demand.liveRate)
+                : String.format("预计高峰预热，历史同时段请求 %.2f/分钟", demand.predictedRate(hour, historyDays));
+        boolean loaded = aiInferenceService.loadModelOn(target, modelName);
+        record(loaded ? "LOAD" : "LOAD_FAILED", modelName, target, reason);
+    }
+
+    /**
+     * 按最近使用时间从早到晚卸载节点上的非热门模型，直到能放下指定大小
+     *
+     * @return 是否已腾出足够空间
+     */
+    private boolean evictUntilFits(String url, long required, List<String> hotModels, Map<String, Long> sizes,
+                                   long budget, String reason) {
+        List<String> candidates = new ArrayList<>();
+        for (String loaded : endpointRouter.loadedModels(url)) {
+            if (!hotModels.contains(loaded)) {
+                candidates.add(loaded);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(name -> demands.containsKey(name) ? demands.get(name).lastUsedAt : 0L));
+
+        for (String candidate : candidates) {
+            if (budget - usedBytes(url, sizes) >= required) {
+                break;
+            }
+            boolean unloaded = aiInferenceService.unloadModelFrom(url, candidate);
+            record(unloaded ? "UNLOAD" : "UNLOAD_FAILED", candidate, url, reason);
+        }
+        return budget - usedBytes(url, sizes) >= required;
+    }
+
+    private boolean isHot(ModelDemand demand, int hour) {
+        return demand.score(hour, historyDays) >= hotRequestsPerMinute;
+    }
+
+    /**
+     * 从推理历史加载各模型的总使用次数和按小时分布
+     */
+    private void loadHistoryProfile() {
+        Map<String, double[]> hourly = new HashMap<>();
+        for (Object[] row : inferenceHistoryRepository.countInferencesByModelAndHour(
+                LocalDateTime.now().minusDays(historyDays))) {
+            if (row[0] == null || row[1] == null) {
+                continue;
+            }
+            int hour = ((Number) row[1]).intValue();
+            if (hour >= 0 && hour < 24) {
+                hourly.computeIfAbsent((String) row[0], k -> new double[24])[hour] += ((Number) row[2]).doubleValue();
+            }
+        }
+        Map<String, Long> totals = new HashMap<>();
+        for (Object[] row : inferenceHistoryRepository.countInferencesByModel()) {
+            if (row[0] != null) {
+                totals.put((String) row[0], ((Number) row[1]).longValue());
+            }
+        }
+
+        Set<String> models = new HashSet<>(hourly.keySet());
+        models.addAll(totals.keySet());
+        for (String model : models) {
+            ModelDemand demand = demands.computeIfAbsent(model, k -> new ModelDemand());
+            demand.hourlyCounts = hourly.getOrDefault(model, new double[24]);
+            demand.historyCount = totals.getOrDefault(model, 0L);
+        }
+    }
+
+    /**
+     * 根据本地调用统计的增量更新各模型的实时请求速率和最近使用时间
+     */
+    private void updateLiveRates(long now) {
+        Map<String, Long> counts = latencyStats.requestCountsByModel();
+        for (Map.Entry<String, ModelDemand> entry : demands.entrySet()) {
+            counts.putIfAbsent(entry.getKey(), entry.getValue().lastCount);
+        }
+        counts.forEach((model, count) -> {
+            ModelDemand demand = demands.computeIfAbsent(model, k -> new ModelDemand());
+            long delta = Math.max(0, count - demand.lastCount);
+            double minutes = demand.lastSampleAt > 0 ? Math.max(1.0 / 60, (now - demand.lastSampleAt) / 60000.0) : 0;
+            if (minutes > 0) {
+                double rate = delta / minutes;
+                demand.liveRate = demand.liveRate + LIVE_RATE_SMOOTHING * (rate - demand.liveRate);
+            }
+            if (delta > 0) {
+                demand.lastUsedAt = now;
+            }
+            demand.lastCount = count;
+            demand.lastSampleAt = now;
+        });
+    }
+
+    private List<AIInferenceDto.ModelInfo> catalogue() {
+        try {
+            return modelRegistry.getModels();
+        } catch (Exception e) {
+            logger.debug("获取模型目录失败，跳过本次驻留评估: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static Map<String, Long> modelSizes(List<AIInferenceDto.ModelInfo> catalogue) {
+        Map<String, Long> sizes = new HashMap<>();
+        for (AIInferenceDto.ModelInfo model : catalogue) {
+            if (model.getName() != null) {
+                sizes.put(model.getName(), model.getModelSize() != null ? model.getModelSize() : 0L);
+            }
+        }
+        return sizes;
+    }
+
+    private long usedBytes(String url, Map<String, Long> sizes) {
+        long used = 0;
+        for (String model : endpointRouter.loadedModels(url)) {
+            used += sizes.getOrDefault(model, 0L);
+        }
+        return used;
+    }
+
+    private int upcomingHour() {
+        return LocalDateTime.now().plusMinutes(prewarmMinutes).getHour();
+    }
+
+    private void record(String action, String modelName, String endpoint, String reason) {
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("time", LocalDateTime.now());
+        decision.put("action", action);
+        decision.put("model_name", modelName);
+        decision.put("endpoint", endpoint);
+        decision.put("reason", reason);
+        logger.info("模型驻留决定: {} {} node={}, {}", action, modelName, endpoint, reason);
+        synchronized (decisions) {
+            decisions.addFirst(decision);
+            while (decisions.size() > MAX_DECISIONS) {
+                decisions.removeLast();
+            }
+        }
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 单个模型的需求估计
+     */
+    private static class ModelDemand {
+        private volatile double liveRate;
+        private volatile long lastCount;
+        private volatile long lastSampleAt;
+        private volatile long lastUsedAt;
+        private volatile long historyCount;
+        private volatile double[] hourlyCounts = new double[24];
+
+        /**
+         * 历史上该小时的平均每分钟请求数
+         */
+        double predictedRate(int hour, int days) {
+            return hourlyCounts[hour] / Math.max(1, days) / 60.0;
+        }
+
+        double score(int hour, int days) {
+            return Math.max(liveRate, predictedRate(hour, days));
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.vision.vision_platform_backend.service;
+
+import com.vision.vision_platform_backend.dto.AIInferenceDto;
+import com.vision.vision_platform_backend.dto.SpooledText;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 可视化图片存储
+ * 推理服务器返回的base64可视化图片解码一次后以二进制写入本地磁盘，按内容SHA-256寻址，
+ * 相同图片只存一份；推理响应中只保留图片ID和访问地址，由图片接口直接从磁盘文件发送。
+ * 推理历史中保存的是图片地址，因此图片的保留期不短于推理历史的保留期：
+ * 超过两者中较长者（历史保留期另加1天余量）未再产生的图片由后台定时删除，推理历史永久保留时图片也不删除。
+ * 多实例部署时存储目录须为所有实例共享的路径（如NFS挂载），否则图片地址在其他实例上返回404。
+ */
+@Component
+public class VisualizationImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(VisualizationImageStore.class);
+
+    private static final Pattern IMAGE_ID = Pattern.compile("[0-9a-f]{64}");
+
+    public static final String IMAGE_URL_PREFIX = "/api/ai/visualizations/";
+
+    @Value("${ai.inference.visualization.store-enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.inference.visualization.store-dir:./data/visualizations}")
+    private String storeDir;
+
+    /**
+     * 图片至少保留的天数
+     */
+    @Value("${ai.inference.visualization.retention-days:7}")
+    private long retentionDays;
+
+    /**
+     * 推理历史保留天数，0表示永久保留
+     */
+    @Value("${ai.inference.history.partition.retention-days:0}")
+    private long historyRetentionDays;
+
+    private Path root;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-visualization-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(storeDir).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            logger.error("创建可视化图片目录失败，可视化图片将内联返回: {}, {}", root, e.getMessage());
+            enabled = false;
+            return;
+        }
+        long effectiveDays = effectiveRetentionDays();
+        if (effectiveDays > 0) {
+            scheduler.scheduleWithFixedDelay(() -> purgeExpired(effectiveDays), 1, 60, TimeUnit.MINUTES);
+        }
+        logger.info("可视化图片存储目录: {}, 保留天数: {}", root, effectiveDays > 0 ? effectiveDays : "永久（与推理历史一致）");
+    }
+
+    /**
+     * 推理历史可能引用的图片不删除：历史永久保留时返回0（不清理），否则取图片与历史保留期中较长者
+     */
+    private long effectiveRetentionDays() {
+        if (historyRetentionDays <= 0) {
+            return 0;
+        }
+        return Math.max(retentionDays, historyRetentionDays + 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 将推理响应中的内联可视化图片转存到磁盘，响应改为携带图片ID和访问地址
+     * 转存失败时保留内联图片
+     */
+    public void externalize(AIInferenceDto.InferenceResponse response) {
+        if (!enabled || response == null || response.getVisualizationImage() == null) {
+            return;
+        }
+        try {
+            String imageId = store(response.getVisualizationImage());
+            response.setVisualizationImageId(imageId);
+            response.setVisualizationImageUrl(IMAGE_URL_PREFIX + imageId);
+            response.setVisualizationImage(null);
+        } catch (Exception e) {
+            logger.warn("可视化图片转存失败，保留内联图片: {}", e.getMessage());
+        }
+    }
+
+    public void externalize(List<AIInferenceDto.InferenceResponse> responses) {
+        if (responses != null) {
+            for (AIInferenceDto.InferenceResponse response : responses) {
+                externalize(response);
+            }
+        }
+    }
+
+    /**
+     * 按图片ID查找文件
+     */
+    public Optional<Path> find(String imageId) {
+        if (!enabled || imageId == null || !IMAGE_ID.matcher(imageId).matches()) {
+            return Optional.empty();
+        }
+        Path file = pathOf(imageId);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * 根据文件头判断图片类型
+     */
+    public String contentType(Path file) {
+        byte[] header = new byte[12];
+        int read = 0;
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            read = inputStream.readNBytes(header, 0, header.length);
+        } catch (IOException e) {
+            logger.debug("读取可视化图片文件头失败: {}, {}", file, e.getMessage());
+        }
+        if (read >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (read >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        if (read >= 3 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F') {
+            return "image/gif";
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * 边解码边计算哈希写入临时文件，再按哈希移动到最终位置；已存在相同内容时只刷新修改时间
+     */
+    private String store(SpooledText base64) throws IOException {
+        Path temp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (Reader reader = new BufferedReader(base64.openReader());
+                 InputStream decoded = Base64.getMimeDecoder().wrap(new AsciiInputStream(skipDataUriPrefix(reader)));
+                 OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                decoded.transferTo(out);
+            }
+            String imageId = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(imageId);
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target)) {
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            } else {
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException ignored) {
+                    // 并发写入了相同内容
+                }
+            }
+            return imageId;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path pathOf(String imageId) {
+        return root.resolve(imageId.substring(0, 2)).resolve(imageId);
+    }
+
+    /**
+     * 跳过 data:image/png;base64, 形式的前缀
+     */
+    private static Reader skipDataUriPrefix(Reader reader) throws IOException {
+        reader.mark(256);
+        char[] head = new char[256];
+        int read = reader.read(head);
+        reader.reset();
+        if (read > 5 && new String(head, 0, 5).equals("data:")) {
+            for (int i = 0; i < read; i++) {
+                if (head[i] == ',') {
+                    reader.skip(i + 1L);
+                    break;
+                }
+            }
+        }
+        return reader;
+    }
+
+    private void purgeExpired(long days) {
+        Instant cutoff = Instant.now().minus(days, ChronoUnit.DAYS);
+        int deleted = 0;
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path bucket : buckets) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+                    for (Path file : files) {
+                        if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                            deleted++;
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("清理过期可视化图片失败: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("已清理过期可视化图片: {} 个", deleted);
+        }
+    }
+
+    /**
+     * 将base64字符流按ASCII转换为字节流
+     */
+    private static class AsciiInputStream extends InputStream {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+
+        AsciiInputStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return reader.read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int count = reader.read(buffer, 0, Math.min(length, buffer.length));
+            for (int i = 0; i < count; i++) {
+                bytes[offset + i] = (byte) buffer[i];
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
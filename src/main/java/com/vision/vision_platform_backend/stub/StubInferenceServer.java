@@ -0,0 +1,620 @@
+package com.vision.vision_platform_backend.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 推理服务器替身
+ * 实现与MindSpore推理服务器相同的HTTP接口（/health、/inference、/batch_inference、
+ * /models、/models/loaded、/models/load、/models/unload、/config、/stats），
+ * 另提供 ai.inference.upload.multipart-enabled 开启后使用的 /inference/upload、/batch_inference/upload
+ * （正式推理服务器需另行实现这两个接口），
+ * 返回随机生成但格式一致的结果，用于在没有真实推理服务器时对推理链路做压测。
+ * 响应延迟、失败率、卡死率、模型加载耗时、检测框数量、可视化图片和掩码大小均可配置；
+ * 随机数按固定种子和请求序号生成，相同请求顺序下结果可复现。
+ * 延迟到期后才把响应交给处理线程发送，模拟的延迟不占用处理线程。
+ *
+ * 嵌入运行：设置 ai.inference.stub.enabled=true，由 {@link StubInferenceServerLauncher} 随应用启动；
+ * 独立运行：java -cp &lt;classpath&gt; com.vision.vision_platform_backend.stub.StubInferenceServer --port=8001 --latency-median-ms=30
+ */
+public class StubInferenceServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubInferenceServer.class);
+
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, StubModel> models = new ConcurrentHashMap<>();
+    private final Map<String, Object> config = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder totalRequests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder totalImages = new LongAdder();
+    private final DoubleAdder totalInferenceTime = new DoubleAdder();
+    private final String visualizationPayload;
+    private final String maskPayload;
+
+    private HttpServer server;
+    private ExecutorService handlerPool;
+    private ScheduledExecutorService responder;
+    private volatile long startTime;
+    private volatile long lastRequestTime;
+
+    public StubInferenceServer(Settings settings) {
+        this.settings = settings;
+        for (String spec : settings.models.split(",")) {
+            StubModel model = StubModel.parse(spec.trim());
+            if (model != null) {
+                models.put(model.name, model);
+            }
+        }
+        for (String name : settings.preloaded.split(",")) {
+            StubModel model = models.get(name.trim());
+            if (model != null) {
+                model.loaded = true;
+                model.loadTime = 0.0;
+            }
+        }
+        config.put("inference", new LinkedHashMap<>(Map.of("confidence_threshold", 0.5, "nms_threshold", 0.4,
+                "max_detections", 100)));
+        config.put("server", new LinkedHashMap<>(Map.of("stub", true)));
+        this.visualizationPayload = payload(settings.visualizationBytes, settings.seed);
+        this.maskPayload = payload(settings.maskBytes, settings.seed + 1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = new Properties();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int eq = option.indexOf('=');
+            if (eq > 0) {
+                properties.setProperty(option.substring(0, eq), option.substring(eq + 1));
+            }
+        }
+        StubInferenceServer stub = new StubInferenceServer(Settings.from(properties::getProperty));
+        stub.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::stop, "stub-inference-shutdown"));
+    }
+
+    public synchronized void start() throws IOException {
+        AtomicInteger counter = new AtomicInteger();
+        handlerPool = Executors.newFixedThreadPool(settings.threads, runnable -> {
+            Thread thread = new Thread(runnable, "stub-inference-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        responder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stub-inference-responder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(settings.host, settings.port), 1024);
+        server.setExecutor(handlerPool);
+        server.createContext("/health", exchange -> handle(exchange, this::health));
+        server.createContext("/inference", exchange -> handle(exchange, this::inference));
+        server.createContext("/batch_inference", exchange -> handle(exchange, this::inference));
+        server.createContext("/models", exchange -> handle(exchange, this::models));
+        server.createContext("/config", exchange -> handle(exchange, this::config));
+        server.createContext("/stats", exchange -> handle(exchange, this::stats));
+        server.start();
+        startTime = System.currentTimeMillis();
+        logger.info("推理服务器替身已启动: http://{}:{}, 模型: {}", settings.host, getPort(), models.keySet());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            responder.shutdownNow();
+            handlerPool.shutdownNow();
+            server = null;
+            logger.info("推理服务器替身已停止");
+        }
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : settings.port;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try {
+            Reply reply = handler.handle(exchange);
+            if (reply.delayMs > 0) {
+                responder.schedule(() -> handlerPool.execute(() -> send(exchange, reply)),
+                        reply.delayMs, TimeUnit.MILLISECONDS);
+            } else {
+                send(exchange, reply);
+            }
+        } catch (Exception e) {
+            send(exchange, new Reply(500, Map.of("detail", String.valueOf(e.getMessage())), 0));
+        }
+    }
+
+    private void send(HttpExchange exchange, Reply reply) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(reply.body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            logger.debug("推理服务器替身发送响应失败: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Reply health(HttpExchange exchange) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "healthy");
+        body.put("stub", true);
+        body.put("models_loaded", models.values().stream().filter(model -> model.loaded).count());
+        body.put("uptime", (System.currentTimeMillis() - startTime) / 1000.0);
+        return new Reply(200, body, 0);
+    }
+
+    private Reply models(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (path.equals("/models") || path.equals("/models/")) {
+            List<Map<String, Object>> all = new ArrayList<>();
+            models.values().forEach(model -> all.add(model.describe()));
+            return new Reply(200, all, 0);
+        }
+        if (path.equals("/models/loaded")) {
+            List<Map<String, Object>> loaded = new ArrayList<>();
+            models.values().stream().filter(model -> model.loaded).forEach(model -> loaded.add(model.describe()));
+            return new Reply(200, loaded, 0);
+        }
+        if ("POST".equals(method) && (path.equals("/models/load") || path.equals("/models/unload"))) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String name = request.path("model_name").asText(null);
+            StubModel model = name != null ? models.get(name) : null;
+            if (model == null) {
+                return new Reply(404, Map.of("detail", "模型不存在: " + name), 0);
+            }
+            if (path.equals("/models/unload")) {
+                model.loaded = false;
+                return new Reply(200, Map.of("success", true, "message", "模型已卸载: " + name), 0);
+            }
+            long delay = model.loaded ? 0 : settings.modelLoadMs;
+            markLoaded(model, delay);
+            return new Reply(200, Map.of("success", true, "message", "模型已加载: " + name), delay);
+        }
+        StubModel model = models.get(path.substring("/models/".length()));
+        return model != null ? new Reply(200, model.describe(), 0)
+                : new Reply(404, Map.of("detail", "模型不存在"), 0);
+    }
+
+    private Reply config(HttpExchange exchange) throws IOException {
+        if ("PUT".equals(exchange.getRequestMethod()) || "POST".equals(exchange.getRequestMethod())) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String section = request.path("section").asText("inference");
+            @SuppressWarnings("unchecked")
+            Map<String, Object> values = objectMapper.convertValue(request.path("values"), Map.class);
+            if (values != null) {
+                config.compute(section, (key, existing) -> {
+                    Map<String, Object> merged = new LinkedHashMap<>();
+                    if (existing instanceof Map<?, ?> map) {
+                        map.forEach((k, v) -> merged.put(String.valueOf(k), v));
+                    }
+                    merged.putAll(values);
+                    return merged;
+                });
+            }
+            return new Reply(200, Map.of("success", true), 0);
+        }
+        return new Reply(200, config, 0);
+    }
+
+    private Reply stats(HttpExchange exchange) {
+        if (exchange.getRequestURI().getPath().equals("/stats/reset")) {
+            totalRequests.reset();
+            failedRequests.reset();
+            totalImages.reset();
+            totalInferenceTime.reset();
+            startTime = System.currentTimeMillis();
+            return new Reply(200, Map.of("success", true), 0);
+        }
+        long requests = totalRequests.sum();
+        long failed = failedRequests.sum();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("total_requests", requests);
+        body.put("successful_requests", requests - failed);
+        body.put("failed_requests", failed);
+        body.put("total_images", totalImages.sum());
+        body.put("total_inference_time", totalInferenceTime.sum());
+        body.put("average_inference_time", requests - failed > 0 ? totalInferenceTime.sum() / (requests - failed) : 0.0);
+        body.put("start_time", Instant.ofEpochMilli(startTime).toString());
+        body.put("last_request_time", lastRequestTime > 0 ? Instant.ofEpochMilli(lastRequestTime).toString() : null);
+        return new Reply(200, body, 0);
+    }
+
+    /**
+     * /inference、/inference/upload、/batch_inference、/batch_inference/upload
+     */
+    private Reply inference(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        boolean batch = path.startsWith("/batch_inference");
+        boolean upload = path.endsWith("/upload");
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        List<byte[]> images = new ArrayList<>();
+        if (upload) {
+            parseMultipart(exchange, fields, images);
+        } else {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            request.fields().forEachRemaining(entry -> {
+                if (entry.getValue().isValueNode()) {
+                    fields.put(entry.getKey(), entry.getValue().asText());
+                }
+            });
+            if (batch) {
+                request.path("images").forEach(image -> images.add(decodeBase64(image.asText())));
+            } else {
+                images.add(decodeBase64(request.path("image_data").asText("")));
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(settings.seed + sequence.getAndIncrement() * 0x9E3779B97F4A7C15L);
+        totalRequests.increment();
+        totalImages.add(images.size());
+        lastRequestTime = System.currentTimeMillis();
+
+        String modelName = fields.getOrDefault("model_name", settings.defaultModel);
+        StubModel model = models.get(modelName);
+        if (model == null) {
+            failedRequests.increment();
+            return new Reply(404, Map.of("detail", "模型不存在: " + modelName), 0);
+        }
+
+        long delay = settings.sampleLatencyMs(random) + settings.batchPerImageMs * Math.max(0, images.size() - 1);
+        if (!model.loaded) {
+            if (!settings.autoLoad) {
+                failedRequests.increment();
+                return new Reply(400, Map.of("detail", "模型未加载: " + modelName), 0);
+            }
+            delay += settings.modelLoadMs;
+            markLoaded(model, settings.modelLoadMs);
+        }
+        if (random.nextDouble() < settings.stallRate) {
+            delay += settings.stallMs;
+        }
+        if (random.nextDouble() < settings.failureRate) {
+            failedRequests.increment();
+            return new Reply(500, Map.of("detail", "模拟推理失败"), delay);
+        }
+
+        double inferenceTime = delay / 1000.0;
+        totalInferenceTime.add(inferenceTime);
+        boolean visualize = Boolean.parseBoolean(fields.getOrDefault("return_visualization", "false"));
+        String task = fields.getOrDefault("task", "detect");
+        List<Map<String, Object>> results = new ArrayList<>(images.size());
+        for (byte[] image : images) {
+            results.add(result(model, task, image, inferenceTime / images.size(), visualize, random));
+        }
+        return new Reply(200, batch ? results : results.get(0), delay);
+    }
+
+    private Map<String, Object> result(StubModel model, String task, byte[] image, double inferenceTime,
+                                       boolean visualize, SplittableRandom random) {
+        int[] size = imageSize(image);
+        boolean segment = task.startsWith("segment");
+        int count = settings.detectionsPerImage > 0 ? random.nextInt(settings.detectionsPerImage * 2 + 1) : 0;
+        List<Map<String, Object>> objects = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double x1 = random.nextDouble() * size[0] * 0.9;
+            double y1 = random.nextDouble() * size[1] * 0.9;
+            double x2 = Math.min(size[0], x1 + (0.02 + random.nextDouble() * 0.3) * size[0]);
+            double y2 = Math.min(size[1], y1 + (0.02 + random.nextDouble() * 0.3) * size[1]);
+            int classId = random.nextInt(model.classNames.size());
+            Map<String, Object> object = new LinkedHashMap<>();
+            object.put("bbox", List.of(round(x1), round(y1), round(x2), round(y2)));
+            object.put("confidence", round(0.3 + random.nextDouble() * 0.7));
+            object.put("class_id", classId);
+            object.put("class_name", model.classNames.get(classId));
+            if (segment) {
+                object.put("mask", maskPayload);
+            }
+            objects.add(object);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("task", task);
+        result.put("model_name", model.name);
+        result.put("inference_time", inferenceTime);
+        result.put("image_size", List.of(size[0], size[1]));
+        result.put(segment ? "segmentations" : "detections", objects);
+        if (visualize && visualizationPayload != null) {
+            result.put("visualization_image", visualizationPayload);
+        }
+        return result;
+    }
+
+    /**
+     * 首次加载完成前到达的请求同样承担加载耗时
+     */
+    private void markLoaded(StubModel model, long delayMs) {
+        responder.schedule(() -> {
+            model.loaded = true;
+            model.loadTime = delayMs / 1000.0;
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 解析multipart/form-data请求体，表单字段写入fields，文件内容写入files
+     */
+    private static void parseMultipart(HttpExchange exchange, Map<String, String> fields, List<byte[]> files)
+            throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        int index = contentType != null ? contentType.indexOf("boundary=") : -1;
+        if (index < 0) {
+            throw new IOException("缺少multipart boundary");
+        }
+        byte[] delimiter = ("--" + contentType.substring(index + "boundary=".length()).replace("\"", ""))
+                .getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+
+        int position = indexOf(body, delimiter, 0);
+        while (position >= 0) {
+            int partStart = position + delimiter.length;
+            if (partStart + 1 < body.length && body[partStart] == '-' && body[partStart + 1] == '-') {
+                break;
+            }
+            partStart += 2;
+            int headerEnd = indexOf(body, HEADER_END, partStart);
+            int next = headerEnd >= 0 ? indexOf(body, delimiter, headerEnd) : -1;
+            if (next < 0) {
+                break;
+            }
+            String headers = new String(body, partStart, headerEnd - partStart, StandardCharsets.UTF_8);
+            int contentStart = headerEnd + HEADER_END.length;
+            int contentEnd = Math.max(contentStart, next - 2);
+            if (headers.contains("filename=")) {
+                byte[] content = new byte[contentEnd - contentStart];
+                System.arraycopy(body, contentStart, content, 0, content.length);
+                files.add(content);
+            } else {
+                String name = headerValue(headers, "name=\"");
+                if (name != null) {
+                    fields.put(name, new String(body, contentStart, contentEnd - contentStart, StandardCharsets.UTF_8));
+                }
+            }
+            position = next;
+        }
+    }
+
+    private static String headerValue(String headers, String prefix) {
+        int start = headers.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+        start += prefix.length();
+        int end = headers.indexOf('"', start);
+        return end > start ? headers.substring(start, end) : null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = Math.max(0, from); i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] decodeBase64(String data) {
+        try {
+            int comma = data.startsWith("data:") ? data.indexOf(',') : -1;
+            return Base64.getMimeDecoder().decode(comma >= 0 ? data.substring(comma + 1) : data);
+        } catch (IllegalArgumentException e) {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * 只读取图片文件头获取尺寸，无法识别时按640x640处理
+     */
+    private static int[] imageSize(byte[] image) {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    return new int[]{reader.getWidth(0), reader.getHeight(0)};
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // 按默认尺寸处理
+        }
+        return new int[]{640, 640};
+    }
+
+    private static String payload(int bytes, long seed) {
+        if (bytes <= 0) {
+            return null;
+        }
+        byte[] data = new byte[bytes];
+        new SplittableRandom(seed).nextBytes(data);
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Reply handle(HttpExchange exchange) throws IOException;
+    }
+
+    private record Reply(int status, Object body, long delayMs) {
+    }
+
+    /**
+     * 替身中的模型
+     */
+    private static class StubModel {
+        private final String name;
+        private final String type;
+        private final int inputSize;
+        private final long modelSize;
+        private final List<String> classNames;
+        private volatile boolean loaded;
+        private volatile Double loadTime;
+
+        StubModel(String name, String type, int inputSize, long modelSize) {
+            this.name = name;
+            this.type = type;
+            this.inputSize = inputSize;
+            this.modelSize = modelSize;
+            this.classNames = List.of("person", "bicycle", "car", "motorcycle", "bus",
+                    "truck", "traffic light", "stop sign", "dog", "cat");
+        }
+
+        /**
+         * 名称:类型:输入尺寸:模型大小（字节），后三项可省略
+         */
+        static StubModel parse(String spec) {
+            if (spec.isEmpty()) {
+                return null;
+            }
+            String[] parts = spec.split(":");
+            String type = parts.length > 1 ? parts[1] : "detection";
+            int inputSize = parts.length > 2 ? Integer.parseInt(parts[2]) : 640;
+            long modelSize = parts.length > 3 ? Long.parseLong(parts[3]) : 0L;
+            return new StubModel(parts[0], type, inputSize, modelSize);
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("name", name);
+            info.put("type", type);
+            info.put("description", "推理服务器替身模型");
+            info.put("version", "stub");
+            info.put("input_size", List.of(inputSize, inputSize));
+            info.put("class_names", classNames);
+            info.put("is_loaded", loaded);
+            info.put("load_time", loadTime);
+            info.put("model_size", modelSize);
+            return info;
+        }
+    }
+
+    /**
+     * 替身配置，嵌入运行时取自 ai.inference.stub.* 属性，独立运行时取自 --key=value 参数
+     */
+    public static class Settings {
+        private String host;
+        private int port;
+        private int threads;
+        private long seed;
+        private String models;
+        private String preloaded;
+        private String defaultModel;
+        private boolean autoLoad;
+        private String latencyDistribution;
+        private double latencyMedianMs;
+        private double latencySpread;
+        private long batchPerImageMs;
+        private double failureRate;
+        private double stallRate;
+        private long stallMs;
+        private long modelLoadMs;
+        private int detectionsPerImage;
+        private int visualizationBytes;
+        private int maskBytes;
+
+        public static Settings from(Function<String, String> lookup) {
+            Settings settings = new Settings();
+            settings.host = get(lookup, "host", "127.0.0.1");
+            settings.port = Integer.parseInt(get(lookup, "port", "8000"));
+            settings.threads = Integer.parseInt(get(lookup, "threads", "8"));
+            settings.seed = Long.parseLong(get(lookup, "seed", "42"));
+            settings.models = get(lookup, "models",
+                    "yolov5s:detection:640:14500000,yolov5m:detection:640:42000000,deeplabv3:segmentation:512:160000000");
+            settings.preloaded = get(lookup, "preloaded", "yolov5s");
+            settings.defaultModel = get(lookup, "default-model", "yolov5s");
+            settings.autoLoad = Boolean.parseBoolean(get(lookup, "auto-load", "true"));
+            settings.latencyDistribution = get(lookup, "latency-distribution", "lognormal");
+            settings.latencyMedianMs = Double.parseDouble(get(lookup, "latency-median-ms", "40"));
+            settings.latencySpread = Double.parseDouble(get(lookup, "latency-spread", "0.4"));
+            settings.batchPerImageMs = Long.parseLong(get(lookup, "batch-per-image-ms", "8"));
+            settings.failureRate = Double.parseDouble(get(lookup, "failure-rate", "0"));
+            settings.stallRate = Double.parseDouble(get(lookup, "stall-rate", "0"));
+            settings.stallMs = Long.parseLong(get(lookup, "stall-ms", "30000"));
+            settings.modelLoadMs = Long.parseLong(get(lookup, "model-load-ms", "2000"));
+            settings.detectionsPerImage = Integer.parseInt(get(lookup, "detections-per-image", "5"));
+            settings.visualizationBytes = Integer.parseInt(get(lookup, "visualization-bytes", "0"));
+            settings.maskBytes = Integer.parseInt(get(lookup, "mask-bytes", "4096"));
+            return settings;
+        }
+
+        public int getPort() { return port; }
+
+        /**
+         * 按配置的分布抽取一次延迟：fixed 固定为中位数；uniform 在中位数上下 spread 比例内均匀分布；
+         * lognormal 以中位数为尺度、spread 为对数标准差；exponential 以中位数换算均值
+         */
+        long sampleLatencyMs(SplittableRandom random) {
+            double value = switch (latencyDistribution) {
+                case "fixed" -> latencyMedianMs;
+                case "uniform" -> latencyMedianMs * (1 + latencySpread * (2 * random.nextDouble() - 1));
+                case "exponential" -> -latencyMedianMs / Math.log(2) * Math.log(1 - random.nextDouble());
+                default -> latencyMedianMs * Math.exp(latencySpread * random.nextGaussian());
+            };
+            return Math.max(0, Math.round(value));
+        }
+
+        private static String get(Function<String, String> lookup, String key, String defaultValue) {
+            String value = lookup.apply(key);
+            return value != null && !value.isBlank() ? value.trim() : defaultValue;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.vision.vision_platform_backend.stub;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * 随应用启动推理服务器替身
+ * 仅在 ai.inference.stub.enabled=true 时创建；ai.inference.server.url 指向替身端口即可在本机压测推理链路
+ */
+@Component
+@ConditionalOnProperty(name = "ai.inference.stub.enabled", havingValue = "true")
+public class StubInferenceServerLauncher {
+
+    private static final String PREFIX = "ai.inference.stub.";
+
+    private final StubInferenceServer server;
+
+    public StubInferenceServerLauncher(Environment environment) {
+        this.server = new StubInferenceServer(StubInferenceServer.Settings.from(
+                key -> environment.getProperty(PREFIX + key)));
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("推理服务器替身启动失败: " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop();
+    }
+}
@@ -0,0 +1,9 @@
+-- 推理历史游标分页索引（PostgreSQL，生产环境 ddl-auto=none 时在部署新版本前执行一次，可重复执行）
+-- 分页按 (created_at, id) 定位下一页，缺少索引时每次翻页都要对全表排序。
+-- 适用于未分区的 inference_history；执行过 inference_history_partitioning.sql 的分区表已建有这两个索引，无需执行。
+-- 使用 CONCURRENTLY 建索引不锁写入，须在事务之外逐条执行（psql 默认自动提交即可）。
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_inference_history_created_id
+    ON inference_history (created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_inference_history_user_created_id
+    ON inference_history (user_id, created_at, id);
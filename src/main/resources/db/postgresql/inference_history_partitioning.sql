@@ -0,0 +1,96 @@
+-- 将 inference_history 转换为按 created_at 范围分区的表（PostgreSQL 11+）
+-- 在维护窗口内执行一次；之后 InferenceHistoryPartitionManager 负责预建新分区并按保留天数删除/分离旧分区。
+-- 分区表的主键和唯一约束必须包含分区键，task_id 的全局唯一性改由未分区的 inference_history_task 表
+-- 及 inference_history 上的行级触发器保证；删除/分离分区时 InferenceHistoryPartitionManager 同步清理该表。
+
+BEGIN;
+
+-- 主键序列，与 inference_history_sequence.sql 相同（已执行过时不受影响）
+CREATE SEQUENCE IF NOT EXISTS inference_history_seq INCREMENT BY 50;
+SELECT setval('inference_history_seq',
+              GREATEST((SELECT last_value FROM inference_history_seq),
+                       (SELECT COALESCE(MAX(id), 0) + 1 FROM inference_history)));
+
+ALTER TABLE inference_history RENAME TO inference_history_legacy;
+ALTER INDEX IF EXISTS idx_inference_history_created_id RENAME TO idx_inference_history_legacy_created_id;
+ALTER INDEX IF EXISTS idx_inference_history_user_created_id RENAME TO idx_inference_history_legacy_user_created_id;
+
+CREATE TABLE inference_history (
+    id                     BIGINT       NOT NULL DEFAULT nextval('inference_history_seq'),
+    task_id                VARCHAR(255) NOT NULL,
+    inference_type         VARCHAR(255) NOT NULL,
+    model_name             VARCHAR(255) NOT NULL,
+    confidence_threshold   DOUBLE PRECISION,
+    original_filename      VARCHAR(255),
+    file_size              BIGINT,
+    image_path             VARCHAR(255),
+    inference_result       TEXT,
+    detected_objects_count INTEGER,
+    processing_time        BIGINT,
+    status                 VARCHAR(255) NOT NULL,
+    error_message          VARCHAR(255),
+    user_id                BIGINT,
+    username               VARCHAR(255),
+    device_info            VARCHAR(255),
+    inference_server       VARCHAR(255),
+    created_at             TIMESTAMP(6) NOT NULL,
+    updated_at             TIMESTAMP(6),
+    tags                   VARCHAR(255),
+    notes                  VARCHAR(255),
+    is_deleted             BOOLEAN,
+    result_rating          INTEGER,
+    is_favorite            BOOLEAN,
+    PRIMARY KEY (id, created_at),
+    UNIQUE (task_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX idx_inference_history_created_id ON inference_history (created_at, id);
+CREATE INDEX idx_inference_history_user_created_id ON inference_history (user_id, created_at, id);
+
+-- task_id 全局唯一：插入时登记，重复时触发唯一约束冲突；删除记录时注销
+CREATE TABLE inference_history_task (
+    task_id    VARCHAR(255) PRIMARY KEY,
+    created_at TIMESTAMP(6) NOT NULL
+);
+CREATE INDEX idx_inference_history_task_created ON inference_history_task (created_at);
+
+CREATE OR REPLACE FUNCTION inference_history_task_guard() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO inference_history_task (task_id, created_at) VALUES (NEW.task_id, NEW.created_at);
+        RETURN NEW;
+    END IF;
+    DELETE FROM inference_history_task WHERE task_id = OLD.task_id;
+    RETURN OLD;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_inference_history_task_insert AFTER INSERT ON inference_history
+    FOR EACH ROW EXECUTE FUNCTION inference_history_task_guard();
+CREATE TRIGGER trg_inference_history_task_delete AFTER DELETE ON inference_history
+    FOR EACH ROW EXECUTE FUNCTION inference_history_task_guard();
+
+-- 按月为已有数据及未来三个月建立分区，命名与 InferenceHistoryPartitionManager 一致
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE((SELECT MIN(created_at) FROM inference_history_legacy), now()))::DATE;
+    last_month  DATE := (date_trunc('month', now()) + INTERVAL '3 months')::DATE;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF inference_history FOR VALUES FROM (%L) TO (%L)',
+                       'inference_history_p' || to_char(month_start, 'YYYYMMDD'),
+                       month_start, (month_start + INTERVAL '1 month')::DATE);
+        month_start := (month_start + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+INSERT INTO inference_history SELECT
+    id, task_id, inference_type, model_name, confidence_threshold, original_filename, file_size, image_path,
+    inference_result, detected_objects_count, processing_time, status, error_message, user_id, username,
+    device_info, inference_server, created_at, updated_at, tags, notes, is_deleted, result_rating, is_favorite
+FROM inference_history_legacy;
+
+COMMIT;
+
+-- 核对数据后删除旧表：
+-- DROP TABLE inference_history_legacy;
@@ -0,0 +1,22 @@
+-- 推理历史按小时统计汇总表（PostgreSQL，生产环境 ddl-auto=none 时在部署新版本前执行一次，可重复执行）
+-- 表不存在时应用启动后会停用汇总，统计接口回退为扫描原始表。
+-- 建表后首次启动时汇总表为空会自动回填，也可调用 POST /api/inference-history/rollups/backfill 重新回填。
+
+CREATE TABLE IF NOT EXISTS inference_history_rollup (
+    id                     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    bucket_hour            TIMESTAMP(6) NOT NULL,
+    user_id                BIGINT,
+    model_name             VARCHAR(255) NOT NULL,
+    inference_type         VARCHAR(255) NOT NULL,
+    status                 VARCHAR(255) NOT NULL,
+    inference_count        BIGINT       NOT NULL,
+    processing_time_sum    BIGINT       NOT NULL,
+    processing_time_count  BIGINT       NOT NULL,
+    detected_objects_sum   BIGINT       NOT NULL,
+    detected_objects_count BIGINT       NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_inference_history_rollup_bucket
+    ON inference_history_rollup (bucket_hour, model_name, inference_type, status, user_id);
+CREATE INDEX IF NOT EXISTS idx_inference_history_rollup_user_bucket
+    ON inference_history_rollup (user_id, bucket_hour);
@@ -0,0 +1,9 @@
+-- 推理历史主键序列（PostgreSQL，生产环境 ddl-auto=none 时在部署新版本前执行一次，可重复执行）
+-- InferenceHistory 主键改为从 inference_history_seq 按 50 个一块预分配，批量写入才能合并为JDBC批量插入；
+-- 序列步长必须与实体的 allocationSize 一致，起始值越过已有的最大ID。
+
+CREATE SEQUENCE IF NOT EXISTS inference_history_seq INCREMENT BY 50;
+
+SELECT setval('inference_history_seq',
+              GREATEST((SELECT last_value FROM inference_history_seq),
+                       (SELECT COALESCE(MAX(id), 0) + 1 FROM inference_history)));
@@ -0,0 +1,13 @@
+-- 推理历史关键词索引表（PostgreSQL，生产环境 ddl-auto=none 时在部署新版本前执行一次，可重复执行）
+-- 表不存在时应用启动后会停用关键词索引，关键词搜索回退为 LIKE 扫描。
+-- 建表并部署后须调用一次 POST /api/inference-history/text-index/rebuild 为已有记录建立索引，
+-- 进度见 GET /api/inference-history/text-index/status；重建完成前，早于部署时间的记录搜不到。
+
+CREATE TABLE IF NOT EXISTS inference_history_token (
+    token      VARCHAR(64) NOT NULL,
+    history_id BIGINT      NOT NULL,
+    PRIMARY KEY (token, history_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_inference_history_token_token ON inference_history_token (token, history_id);
+CREATE INDEX IF NOT EXISTS idx_inference_history_token_history ON inference_history_token (history_id);